@@ -0,0 +1,50 @@
+/*
+ * RV32IM results that aren't a single Java operator, shared by every engine
+ * so they can't drift apart. Division never traps: dividing by zero gives -1
+ * (all ones) and leaves the dividend as the remainder, and MIN_VALUE / -1
+ * overflows back to MIN_VALUE with remainder 0, which Java already does.
+ */
+final class Arithmetic {
+
+    private Arithmetic() {
+    }
+
+    static int div(int a, int b) {
+        return b == 0 ? -1 : a / b;
+    }
+
+    static int divu(int a, int b) {
+        return b == 0 ? -1 : Integer.divideUnsigned(a, b);
+    }
+
+    static int rem(int a, int b) {
+        return b == 0 ? a : a % b;
+    }
+
+    static int remu(int a, int b) {
+        return b == 0 ? a : Integer.remainderUnsigned(a, b);
+    }
+
+    /* Upper 32 bits of the 64-bit product, both operands signed */
+    static int mulh(int a, int b) {
+        return (int) (((long) a * b) >> 32);
+    }
+
+    /* Upper 32 bits of the 64-bit product, a signed and b unsigned */
+    static int mulhsu(int a, int b) {
+        return (int) (((long) a * (b & 0xffffffffL)) >> 32);
+    }
+
+    /* Upper 32 bits of the 64-bit product, both operands unsigned */
+    static int mulhu(int a, int b) {
+        return (int) (((a & 0xffffffffL) * (b & 0xffffffffL)) >>> 32);
+    }
+
+    static int slt(int a, int b) {
+        return a < b ? 1 : 0;
+    }
+
+    static int sltu(int a, int b) {
+        return Integer.compareUnsigned(a, b) < 0 ? 1 : 0;
+    }
+}
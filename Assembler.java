@@ -0,0 +1,506 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * Single-pass assembler: source is read once, a line at a time, straight
+ * into decoded operand tables and data memory. Nothing is re-scanned.
+ *
+ * Lines split into fields on whitespace and commas, and '#' starts a comment
+ * anywhere outside a string literal. .equiv symbols live in a symbol table and
+ * are substituted into operands one identifier at a time, so a symbol never
+ * replaces part of a longer name; a .equiv has to come before the lines that
+ * use it. References to labels that aren't defined yet are recorded and
+ * patched once the whole source has been read.
+ *
+ * .data and .text switch sections. Data is laid out from DATA_BASE in source
+ * order, instructions from address 0, and execution starts at the label
+ * named by .globl (address 0 without one).
+ */
+final class Assembler {
+
+    static final int DATA_BASE = 0x10000000;
+
+    // Where a label reference is patched once the label is known
+    private static final int TARGET = 0; // target[index]
+    private static final int IMM = 1;    // imm[index]
+    private static final int WORD = 2;   // data word at address index
+
+    private static final class Fixup {
+        final int kind;
+        final int index;
+        final String label;
+
+        Fixup(int kind, int index, String label) {
+            this.kind = kind;
+            this.index = index;
+            this.label = label;
+        }
+    }
+
+    final HashMap<String, Integer> labels = new HashMap<String, Integer>();
+    boolean needsInput; // calls $input, so it can only be run up to that call
+
+    private final Memory memory;          // null when only normalizing
+    private final StringBuilder normalized; // canonical text, or null
+    private final HashMap<String, String> equivs = new HashMap<String, String>();
+    private final ArrayList<Fixup> fixups = new ArrayList<Fixup>();
+    private final ArrayList<String> fields = new ArrayList<String>();
+
+    private boolean inText = true;
+    private int dataAddress = DATA_BASE;
+    private String entry;
+
+    // Decoded tables, grown as instructions arrive
+    private int length;
+    private int[] op = new int[64];
+    private int[] rd = new int[64];
+    private int[] rs1 = new int[64];
+    private int[] rs2 = new int[64];
+    private int[] imm = new int[64];
+    private int[] target = new int[64];
+    private String[] text = new String[64];
+
+    /* Assembler that lays data out in memory */
+    Assembler(Memory memory) {
+        this(memory, null);
+    }
+
+    private Assembler(Memory memory, StringBuilder normalized) {
+        this.memory = memory;
+        this.normalized = normalized;
+    }
+
+    /* Source reduced to its fields after .equiv substitution, one statement per line */
+    static String normalize(CharSequence source) {
+        Assembler assembler = new Assembler(null, new StringBuilder(source.length()));
+        assembler.assemble(source);
+        return assembler.normalized.toString();
+    }
+
+    void assemble(CharSequence source) {
+        int start = 0;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                line(source, start, i);
+                start = i + 1;
+            }
+        }
+        line(source, start, source.length());
+    }
+
+    void assemble(Reader source) throws IOException {
+        BufferedReader lines = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            line(line, 0, line.length());
+        }
+    }
+
+    /* Assemble a file by mapping it, scanning its bytes as ISO-8859-1 characters */
+    void assemble(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to assemble");
+            }
+            assemble(new MappedChars(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        }
+    }
+
+    /* Patch forward references and hand back the decoded program */
+    DecodedProgram finish() {
+        for (Fixup fixup : fixups) {
+            Integer address = labels.get(fixup.label);
+            if (fixup.kind == WORD) {
+                if (address != null && memory != null) {
+                    memory.storeWord(fixup.index, address);
+                }
+            } else if (address == null) {
+                // Fails the same way an unknown instruction does, once reached
+                op[fixup.index] = Opcode.UNKNOWN.ordinal();
+            } else if (fixup.kind == TARGET) {
+                target[fixup.index] = address;
+            } else {
+                imm[fixup.index] = address;
+            }
+        }
+        fixups.clear();
+        if (memory != null) {
+            memory.layOut(DATA_BASE, dataAddress);
+        }
+        Integer start = entry == null ? null : labels.get(entry);
+        return new DecodedProgram(length, Arrays.copyOf(op, length), Arrays.copyOf(rd, length),
+                                  Arrays.copyOf(rs1, length), Arrays.copyOf(rs2, length), Arrays.copyOf(imm, length),
+                                  Arrays.copyOf(target, length), Arrays.copyOf(text, length),
+                                  0, start == null ? 0 : start);
+    }
+
+    /* Split one line into fields and assemble it */
+    private void line(CharSequence source, int start, int end) {
+        fields.clear();
+        int i = start;
+        while (i < end) {
+            char c = source.charAt(i);
+            if (c == '#') {
+                break;
+            }
+            if (c <= ' ' || c == ',') {
+                i++;
+                continue;
+            }
+            int from = i;
+            if (c == '"') {
+                for (i++; i < end && source.charAt(i) != '"'; i++) {
+                    if (source.charAt(i) == '\\') {
+                        i++;
+                    }
+                }
+                i = Math.min(i + 1, end);
+            } else {
+                while (i < end && (c = source.charAt(i)) > ' ' && c != ',' && c != '#' && c != '"') {
+                    i++;
+                }
+            }
+            fields.add(source.subSequence(from, i).toString());
+        }
+        if (!fields.isEmpty()) {
+            statement();
+        }
+    }
+
+    private void statement() {
+        int next = 0;
+        while (next < fields.size() && isLabel(fields.get(next))) {
+            String label = fields.get(next);
+            labels.put(label.substring(0, label.length() - 1), inText ? length * 4 : dataAddress);
+            next++;
+        }
+        if (next == fields.size()) {
+            record();
+            return;
+        }
+
+        String first = fields.get(next);
+        if (first.equals(".equiv")) {
+            if (fields.size() - next >= 3) {
+                equivs.put(fields.get(next + 1), substitute(fields.get(next + 2)));
+            }
+            return;
+        }
+        for (int f = next + 1; f < fields.size(); f++) {
+            fields.set(f, substitute(fields.get(f)));
+        }
+        record();
+
+        if (first.equals(".data")) {
+            inText = false;
+        } else if (first.equals(".text")) {
+            inText = true;
+        } else if (first.equals(".globl") || first.equals(".global")) {
+            if (next + 1 < fields.size()) {
+                entry = fields.get(next + 1);
+            }
+        } else if (first.startsWith(".")) {
+            if (!inText) {
+                data(first, next + 1);
+            }
+        } else if (inText) {
+            instruction(next);
+        }
+    }
+
+    private static boolean isLabel(String field) {
+        return field.length() > 1 && field.endsWith(":") && field.charAt(0) != '"';
+    }
+
+    /* Append the current fields to the normalized text */
+    private void record() {
+        if (normalized != null) {
+            normalized.append(String.join(" ", fields)).append('\n');
+        }
+    }
+
+    /* Field with every identifier that names a .equiv replaced by its value */
+    private String substitute(String field) {
+        if (equivs.isEmpty() || field.charAt(0) == '"') {
+            return field;
+        }
+        StringBuilder out = null;
+        int copied = 0;
+        int i = 0;
+        while (i < field.length()) {
+            if (!isIdentifier(field.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < field.length() && isIdentifier(field.charAt(i))) {
+                i++;
+            }
+            String value = equivs.get(field.substring(start, i));
+            if (value != null) {
+                if (out == null) {
+                    out = new StringBuilder(field.length() + value.length());
+                }
+                out.append(field, copied, start).append(value);
+                copied = i;
+            }
+        }
+        return out == null ? field : out.append(field, copied, field.length()).toString();
+    }
+
+    private static boolean isIdentifier(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$';
+    }
+
+    /* Lay out a .word or .string directive; other data directives are ignored */
+    private void data(String directive, int operands) {
+        if (directive.equals(".word")) {
+            for (int f = operands; f < fields.size(); f++) {
+                String value = fields.get(f);
+                if (isNumber(value)) {
+                    try {
+                        storeWord(dataAddress, immediate(value));
+                    } catch (NumberFormatException e) {
+                        // left as zero, like any word that can't be resolved
+                    }
+                } else {
+                    Integer address = labels.get(value);
+                    if (address != null) {
+                        storeWord(dataAddress, address);
+                    } else {
+                        fixups.add(new Fixup(WORD, dataAddress, value));
+                    }
+                }
+                dataAddress += 4;
+            }
+        } else if (directive.equals(".string") && operands < fields.size()) {
+            String literal = fields.get(operands);
+            int end = literal.length() > 1 && literal.endsWith("\"") ? literal.length() - 1 : literal.length();
+            int count = end - 1;
+            if (memory != null) {
+                for (int b = 0; b < count; b++) {
+                    char c = literal.charAt(b + 1);
+                    memory.storeByte(dataAddress + b, c < 0x80 ? c : '?');
+                }
+            }
+            // Null terminate and pad out to a whole word; fresh memory is already zero
+            dataAddress += count + 4 - (count % 4);
+        }
+    }
+
+    private void storeWord(int address, int value) {
+        if (memory != null) {
+            memory.storeWord(address, value);
+        }
+    }
+
+    /* Decode fields[from..] as the instruction at address 4 * length */
+    private void instruction(int from) {
+        if (length == op.length) {
+            grow();
+        }
+        int i = length++;
+        String[] fields = this.fields.subList(from, this.fields.size()).toArray(new String[0]);
+        StringBuilder line = new StringBuilder(fields[0]);
+        for (int f = 1; f < fields.length; f++) {
+            line.append(f == 1 ? " " : ", ").append(fields[f]);
+        }
+        text[i] = line.toString();
+
+        Opcode code = Opcode.lookup(fields[0]);
+        if (code == Opcode.JAL && fields[fields.length - 1].equals("$input")) {
+            code = Opcode.INPUT;
+            needsInput = true;
+        }
+        try {
+            switch (code.format) {
+                case R:
+                    rd[i] = register(fields[1]);
+                    rs1[i] = register(fields[2]);
+                    rs2[i] = register(fields[3]);
+                    break;
+                case I:
+                    rd[i] = register(fields[1]);
+                    rs1[i] = register(fields[2]);
+                    imm[i] = immediate(fields[3]);
+                    break;
+                case RD_IMM:
+                    rd[i] = register(fields[1]);
+                    imm[i] = immediate(fields[2]);
+                    break;
+                case RD_RS:
+                    rd[i] = register(fields[1]);
+                    rs1[i] = register(fields[2]);
+                    break;
+                case RD_LABEL:
+                    rd[i] = register(fields[1]);
+                    target[i] = label(fields[2], TARGET, i);
+                    break;
+                case LOAD:
+                    rd[i] = register(fields[1]);
+                    address(i, fields[2]);
+                    break;
+                case STORE:
+                    rs2[i] = register(fields[1]);
+                    address(i, fields[2]);
+                    break;
+                case BRANCH:
+                    rs1[i] = register(fields[1]);
+                    rs2[i] = register(fields[2]);
+                    target[i] = label(fields[3], TARGET, i);
+                    break;
+                case BRANCH_ZERO:
+                    rs1[i] = register(fields[1]);
+                    target[i] = label(fields[2], TARGET, i);
+                    break;
+                case JAL:
+                    if (fields.length > 2) {
+                        rd[i] = register(fields[1]);
+                        target[i] = label(fields[2], TARGET, i);
+                    } else {
+                        rd[i] = Registers.RA;
+                        target[i] = label(fields[1], TARGET, i);
+                    }
+                    break;
+                case J:
+                    target[i] = label(fields[1], TARGET, i);
+                    break;
+                case JR:
+                    rs1[i] = register(fields[1]);
+                    break;
+                case JALR:
+                    if (fields.length == 2) {
+                        rd[i] = Registers.RA;
+                        rs1[i] = register(fields[1]);
+                    } else if (fields[2].contains("(")) {
+                        rd[i] = register(fields[1]);
+                        address(i, fields[2]);
+                    } else {
+                        rd[i] = register(fields[1]);
+                        rs1[i] = register(fields[2]);
+                        imm[i] = fields.length > 3 ? immediate(fields[3]) : 0;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // Malformed operands fail the same way an unknown instruction does, once reached
+            code = Opcode.UNKNOWN;
+        }
+        op[i] = code.ordinal();
+    }
+
+    private void grow() {
+        int capacity = op.length * 2;
+        op = Arrays.copyOf(op, capacity);
+        rd = Arrays.copyOf(rd, capacity);
+        rs1 = Arrays.copyOf(rs1, capacity);
+        rs2 = Arrays.copyOf(rs2, capacity);
+        imm = Arrays.copyOf(imm, capacity);
+        target = Arrays.copyOf(target, capacity);
+        text = Arrays.copyOf(text, capacity);
+    }
+
+    /* Split an imm(reg) operand, or resolve a bare label to an absolute address */
+    private void address(int i, String field) {
+        int open = field.indexOf('(');
+        if (open < 0) {
+            rs1[i] = Registers.ZERO;
+            imm[i] = label(field, IMM, i);
+            return;
+        }
+        rs1[i] = register(field.substring(open + 1, field.indexOf(')')));
+        String offset = field.substring(0, open);
+        if (offset.length() == 0) {
+            imm[i] = 0;
+            return;
+        }
+        int split = Math.max(offset.lastIndexOf('+'), offset.lastIndexOf('-'));
+        if (split <= 0) {
+            imm[i] = immediate(offset);
+        } else if (offset.charAt(split) == '+') {
+            imm[i] = immediate(offset.substring(0, split)) + immediate(offset.substring(split + 1));
+        } else {
+            imm[i] = immediate(offset.substring(0, split)) - immediate(offset.substring(split + 1));
+        }
+    }
+
+    private static int register(String name) {
+        int index = Registers.index(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("unknown register " + name);
+        }
+        return index;
+    }
+
+    /* Address of a label, or 0 and a fixup to patch it once it's defined */
+    private int label(String name, int kind, int i) {
+        Integer address = labels.get(name);
+        if (address == null) {
+            fixups.add(new Fixup(kind, i, name));
+            return 0;
+        }
+        return address;
+    }
+
+    private static boolean isNumber(String field) {
+        int start = field.startsWith("-") ? 1 : 0;
+        return start < field.length() && Character.isDigit(field.charAt(start));
+    }
+
+    /* Parse a decimal or 0x-prefixed hex immediate */
+    static int immediate(String field) {
+        int start = field.startsWith("-") ? 1 : 0;
+        int radix = 10;
+        if (field.length() > start + 2 && field.charAt(start) == '0'
+                && (field.charAt(start + 1) == 'x' || field.charAt(start + 1) == 'X')) {
+            radix = 16;
+            start += 2;
+        }
+        if (start == field.length() || field.length() - start > 16 || Character.digit(field.charAt(start), radix) < 0) {
+            throw new NumberFormatException("bad immediate " + field);
+        }
+        long value = Long.parseLong(field, start, field.length(), radix);
+        return (int) (field.startsWith("-") ? -value : value);
+    }
+
+    /* Read-only ISO-8859-1 view of a mapped file, scanned without decoding it into one String */
+    private static final class MappedChars implements CharSequence {
+        private final ByteBuffer bytes;
+
+        MappedChars(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            byte[] slice = new byte[end - start];
+            bytes.get(start, slice);
+            return new String(slice, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Precomputes many programs at once on a fixed number of worker threads.
+ * Every job builds its own RiscVInterpreter, so no interpreter state is shared
+ * between jobs. Cancelling a job's future interrupts its worker, and the run
+ * stops at its next cancellation check with Status.CANCELLED.
+ *
+ * A config with a slice budget time-slices its jobs: each time a run is
+ * suspended it goes to the back of the queue, so long programs take turns
+ * with short ones instead of holding on to a worker.
+ */
+public class BatchPrecomputer implements AutoCloseable {
+
+    /* Aggregate counts over every job that has finished so far */
+    public static class Stats {
+        public final int completed;
+        public final int failed;
+        public final int cancelled;
+        public final long cycles;
+        public final long busyNanos;
+        public final long elapsedNanos;
+
+        Stats(int completed, int failed, int cancelled, long cycles, long busyNanos, long elapsedNanos) {
+            this.completed = completed;
+            this.failed = failed;
+            this.cancelled = cancelled;
+            this.cycles = cycles;
+            this.busyNanos = busyNanos;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /* Programs finished per second of wall time */
+        public double programsPerSecond() {
+            return elapsedNanos == 0 ? 0 : completed * 1e9 / elapsedNanos;
+        }
+
+        /* Interpreted instructions per second of wall time, across all workers */
+        public double cyclesPerSecond() {
+            return elapsedNanos == 0 ? 0 : cycles * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d completed, %d failed, %d cancelled, %.0f programs/s, %.0f cycles/s",
+                                 completed, failed, cancelled, programsPerSecond(), cyclesPerSecond());
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final long started = System.nanoTime();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    /* One worker per available core */
+    public BatchPrecomputer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchPrecomputer(int parallelism) {
+        final AtomicInteger threads = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "precompute-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                                          new LinkedBlockingQueue<Runnable>(), factory);
+    }
+
+    /* One program, run a slice at a time until it ends */
+    private final class Job extends CompletableFuture<RiscVInterpreter> implements Runnable {
+        private final String program;
+        private final RiscVInterpreter.Config config;
+        private RiscVInterpreter vm;
+        private Thread runner; // worker running the current slice, guarded by this
+
+        Job(String program, RiscVInterpreter.Config config) {
+            this.program = program;
+            this.config = config;
+        }
+
+        Job(RiscVInterpreter vm) {
+            this.program = null;
+            this.config = vm.config;
+            this.vm = vm;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            long start = System.nanoTime();
+            boolean suspended = false;
+            try {
+                if (vm == null) {
+                    vm = RiscVInterpreter.load(program, config);
+                }
+                vm.execute();
+                suspended = vm.status == RiscVInterpreter.Status.SUSPENDED;
+                if (!suspended) {
+                    cycles.addAndGet(vm.cycles);
+                    if (vm.status == RiscVInterpreter.Status.CANCELLED) {
+                        cancelled.incrementAndGet();
+                    } else if (!vm.worked) {
+                        failed.incrementAndGet();
+                    }
+                    completed.incrementAndGet();
+                    complete(vm);
+                }
+            } catch (Throwable e) {
+                // Errors too, or a caller waiting in join() would wait forever
+                failed.incrementAndGet();
+                completed.incrementAndGet();
+                completeExceptionally(e);
+                if (e instanceof Error) {
+                    throw (Error) e;
+                }
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                busyNanos.addAndGet(System.nanoTime() - start);
+            }
+            if (suspended) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    complete(vm); // shut down mid-run; hand back the suspended run
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning) {
+                synchronized (this) {
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+
+    /* Queue one program; its config (including the cycle budget) applies to this job only */
+    public Future<RiscVInterpreter> submit(String program, RiscVInterpreter.Config config) {
+        Job job = new Job(program, config);
+        executor.execute(job);
+        return job;
+    }
+
+    /* Queue a loaded interpreter, e.g. one fork of a shared template; it runs under its own config */
+    public Future<RiscVInterpreter> submit(RiscVInterpreter vm) {
+        Job job = new Job(vm);
+        executor.execute(job);
+        return job;
+    }
+
+    /* Queue every program with the same config; futures come back in input order */
+    public List<Future<RiscVInterpreter>> submitAll(Collection<String> programs, RiscVInterpreter.Config config) {
+        List<Future<RiscVInterpreter>> futures = new ArrayList<Future<RiscVInterpreter>>(programs.size());
+        for (String program : programs) {
+            futures.add(submit(program, config));
+        }
+        return futures;
+    }
+
+    /* Cancel everything still queued or running */
+    public void cancelAll(List<Future<RiscVInterpreter>> futures) {
+        for (Future<RiscVInterpreter> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(completed.get(), failed.get(), cancelled.get(), cycles.get(), busyNanos.get(),
+                         System.nanoTime() - started);
+    }
+
+    /* Stop the workers, interrupting any job still running */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
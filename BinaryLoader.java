@@ -0,0 +1,286 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/*
+ * Loads RV32 machine code: a 32-bit little-endian RISC-V ELF executable, or a
+ * flat binary image at a chosen base address. The file is memory-mapped,
+ * loadable segments are copied into interpreter memory at their link
+ * addresses, and executable code is decoded word by word straight into the
+ * operand tables the engines run; no assembly text is involved.
+ *
+ * Instructions decode onto the interpreter's opcode set. auipc becomes an li
+ * of the address it computes and fence a no-op; encodings the engines can't
+ * execute decode as UNKNOWN, which fails the run only if one is reached.
+ */
+final class BinaryLoader {
+
+    private static final int EM_RISCV = 243;
+    private static final int PT_LOAD = 1;
+    private static final int PF_X = 1;
+    private static final int SHT_SYMTAB = 2;
+
+    private BinaryLoader() {
+    }
+
+    /* Load an ELF executable, recording its symbols as labels */
+    static DecodedProgram elf(Path file, Memory memory, Map<String, Integer> labels) throws IOException {
+        ByteBuffer elf = map(file);
+        if (elf.limit() < 52 || elf.getInt(0) != 0x464c457f || elf.get(4) != 1 || elf.get(5) != 1
+                || (elf.getShort(18) & 0xffff) != EM_RISCV) {
+            throw new IOException(file + " is not a 32-bit little-endian RISC-V ELF file");
+        }
+        int entry = elf.getInt(24);
+        int phoff = elf.getInt(28);
+        int phentsize = elf.getShort(42) & 0xffff;
+        int phnum = elf.getShort(44) & 0xffff;
+
+        // Copy every loadable segment, and take the span of the executable ones as text
+        long textStart = Long.MAX_VALUE;
+        long textEnd = Long.MIN_VALUE;
+        long imageStart = Long.MAX_VALUE;
+        long imageEnd = Long.MIN_VALUE;
+        for (int p = 0; p < phnum; p++) {
+            int header = phoff + p * phentsize;
+            if (elf.getInt(header) != PT_LOAD) {
+                continue;
+            }
+            int offset = elf.getInt(header + 4);
+            int vaddr = elf.getInt(header + 8);
+            int filesz = elf.getInt(header + 16);
+            if (Integer.toUnsignedLong(offset) + Integer.toUnsignedLong(filesz) > elf.limit()) {
+                throw new IOException(file + " has a segment past the end of the file");
+            }
+            copy(elf, offset, filesz, vaddr, memory); // memory past filesz is already zero
+            imageStart = Math.min(imageStart, Integer.toUnsignedLong(vaddr));
+            int memsz = elf.getInt(header + 20);
+            imageEnd = Math.max(imageEnd, Integer.toUnsignedLong(vaddr) + Integer.toUnsignedLong(memsz));
+            if ((elf.getInt(header + 24) & PF_X) != 0) {
+                textStart = Math.min(textStart, Integer.toUnsignedLong(vaddr) & ~3L);
+                textEnd = Math.max(textEnd, Integer.toUnsignedLong(vaddr) + Integer.toUnsignedLong(filesz));
+            }
+        }
+        if (textStart >= textEnd) {
+            throw new IOException(file + " has no executable segment");
+        }
+        symbols(elf, labels);
+        memory.layOut((int) imageStart, (int) imageEnd);
+        return decode(memory, (int) textStart, (int) ((textEnd - textStart + 3) / 4), entry);
+    }
+
+    /* Load a raw image at base, all of it decoded as code starting at base */
+    static DecodedProgram flat(Path file, int base, Memory memory) throws IOException {
+        ByteBuffer image = map(file);
+        copy(image, 0, image.limit(), base, memory);
+        memory.layOut(base, base + image.limit());
+        return decode(memory, base, (image.limit() + 3) / 4, base);
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to load");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /* Copy size bytes from a buffer into memory, a word at a time where aligned */
+    private static void copy(ByteBuffer from, int offset, int size, int address, Memory memory) {
+        int b = 0;
+        for (; b < size && ((address + b) & 3) != 0; b++) {
+            memory.storeByte(address + b, from.get(offset + b));
+        }
+        for (; b + 4 <= size; b += 4) {
+            memory.storeWord(address + b, from.getInt(offset + b));
+        }
+        for (; b < size; b++) {
+            memory.storeByte(address + b, from.get(offset + b));
+        }
+    }
+
+    /* Named function, object and untyped symbols from .symtab, if the file has one */
+    private static void symbols(ByteBuffer elf, Map<String, Integer> labels) {
+        int shoff = elf.getInt(32);
+        int shentsize = elf.getShort(46) & 0xffff;
+        int shnum = elf.getShort(48) & 0xffff;
+        for (int s = 0; shoff != 0 && s < shnum; s++) {
+            int section = shoff + s * shentsize;
+            if (elf.getInt(section + 4) != SHT_SYMTAB) {
+                continue;
+            }
+            int offset = elf.getInt(section + 16);
+            int size = elf.getInt(section + 20);
+            int strings = elf.getInt(shoff + elf.getInt(section + 24) * shentsize + 16);
+            for (int sym = offset; sym + 16 <= offset + size; sym += 16) {
+                int type = elf.get(sym + 12) & 0xf;
+                int shndx = elf.getShort(sym + 14) & 0xffff;
+                int name = elf.getInt(sym);
+                if (name != 0 && shndx != 0 && type <= 2) {
+                    labels.putIfAbsent(string(elf, strings + name), elf.getInt(sym + 4));
+                }
+            }
+        }
+    }
+
+    private static String string(ByteBuffer elf, int at) {
+        StringBuilder name = new StringBuilder();
+        for (int c = elf.get(at); c != 0; c = elf.get(++at)) {
+            name.append((char) (c & 0xff));
+        }
+        return name.toString();
+    }
+
+    /* Decode count words of code starting at base */
+    private static DecodedProgram decode(Memory memory, int base, int count, int entry) {
+        int[] op = new int[count];
+        int[] rd = new int[count];
+        int[] rs1 = new int[count];
+        int[] rs2 = new int[count];
+        int[] imm = new int[count];
+        int[] target = new int[count];
+        String[] text = new String[count];
+        for (int i = 0; i < count; i++) {
+            int address = base + 4 * i;
+            int word = memory.loadWord(address);
+            int d = (word >>> 7) & 31;
+            int s1 = (word >>> 15) & 31;
+            int s2 = (word >>> 20) & 31;
+            int funct3 = (word >>> 12) & 7;
+            int funct7 = word >>> 25;
+            Opcode code = Opcode.UNKNOWN;
+            switch (word & 0x7f) {
+                case 0x37: // lui
+                    code = Opcode.LUI;
+                    imm[i] = word >>> 12;
+                    break;
+                case 0x17: // auipc, whose result is known once the address is
+                    code = Opcode.LI;
+                    imm[i] = address + (word & 0xfffff000);
+                    break;
+                case 0x6f: // jal
+                    code = d == 0 ? Opcode.J : Opcode.JAL;
+                    target[i] = address + ((word >> 31 << 20) | (word & 0xff000) | ((word >>> 9) & 0x800)
+                                           | ((word >>> 20) & 0x7fe));
+                    break;
+                case 0x67: // jalr
+                    if (funct3 == 0) {
+                        code = Opcode.JALR;
+                        imm[i] = word >> 20;
+                    }
+                    break;
+                case 0x63: // branches
+                    code = branch(funct3);
+                    target[i] = address + ((word >> 31 << 12) | ((word << 4) & 0x800) | ((word >>> 20) & 0x7e0)
+                                           | ((word >>> 7) & 0x1e));
+                    break;
+                case 0x03: // loads
+                    code = load(funct3);
+                    imm[i] = word >> 20;
+                    break;
+                case 0x23: // stores
+                    code = funct3 == 0 ? Opcode.SB : funct3 == 1 ? Opcode.SH : funct3 == 2 ? Opcode.SW : Opcode.UNKNOWN;
+                    imm[i] = (word >> 25 << 5) | d;
+                    break;
+                case 0x13: // register-immediate arithmetic
+                    code = immediate(funct7, funct3);
+                    imm[i] = funct3 == 1 || funct3 == 5 ? s2 : word >> 20;
+                    break;
+                case 0x33: // register-register arithmetic
+                    code = arithmetic(funct7, funct3);
+                    break;
+                case 0x0f: // fence
+                    code = Opcode.ADDI;
+                    d = 0;
+                    s1 = 0;
+                    break;
+                case 0x73:
+                    if (word == 0x73) {
+                        code = Opcode.ECALL;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            op[i] = code.ordinal();
+            rd[i] = d;
+            rs1[i] = s1;
+            rs2[i] = s2;
+            if (code == Opcode.UNKNOWN) {
+                text[i] = String.format(".word 0x%08x", word);
+            }
+        }
+        return new DecodedProgram(count, op, rd, rs1, rs2, imm, target, text, base, entry);
+    }
+
+    private static Opcode branch(int funct3) {
+        switch (funct3) {
+            case 0: return Opcode.BEQ;
+            case 1: return Opcode.BNE;
+            case 4: return Opcode.BLT;
+            case 5: return Opcode.BGE;
+            case 6: return Opcode.BLTU;
+            case 7: return Opcode.BGEU;
+            default: return Opcode.UNKNOWN;
+        }
+    }
+
+    private static Opcode load(int funct3) {
+        switch (funct3) {
+            case 0: return Opcode.LB;
+            case 1: return Opcode.LH;
+            case 2: return Opcode.LW;
+            case 4: return Opcode.LBU;
+            case 5: return Opcode.LHU;
+            default: return Opcode.UNKNOWN;
+        }
+    }
+
+    private static Opcode immediate(int funct7, int funct3) {
+        switch (funct3) {
+            case 0: return Opcode.ADDI;
+            case 1: return funct7 == 0 ? Opcode.SLLI : Opcode.UNKNOWN;
+            case 2: return Opcode.SLTI;
+            case 3: return Opcode.SLTIU;
+            case 4: return Opcode.XORI;
+            case 5: return funct7 == 0 ? Opcode.SRLI : funct7 == 0x20 ? Opcode.SRAI : Opcode.UNKNOWN;
+            case 6: return Opcode.ORI;
+            default: return Opcode.ANDI;
+        }
+    }
+
+    private static Opcode arithmetic(int funct7, int funct3) {
+        if (funct7 == 0) {
+            switch (funct3) {
+                case 0: return Opcode.ADD;
+                case 1: return Opcode.SLL;
+                case 2: return Opcode.SLT;
+                case 3: return Opcode.SLTU;
+                case 4: return Opcode.XOR;
+                case 5: return Opcode.SRL;
+                case 6: return Opcode.OR;
+                default: return Opcode.AND;
+            }
+        }
+        if (funct7 == 0x20) {
+            return funct3 == 0 ? Opcode.SUB : funct3 == 5 ? Opcode.SRA : Opcode.UNKNOWN;
+        }
+        if (funct7 == 1) {
+            switch (funct3) {
+                case 0: return Opcode.MUL;
+                case 1: return Opcode.MULH;
+                case 2: return Opcode.MULHSU;
+                case 3: return Opcode.MULHU;
+                case 4: return Opcode.DIV;
+                case 5: return Opcode.DIVU;
+                case 6: return Opcode.REM;
+                default: return Opcode.REMU;
+            }
+        }
+        return Opcode.UNKNOWN;
+    }
+}
@@ -0,0 +1,815 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Second execution tier. The interpreter reports every jump into an address;
+ * once an address has been entered often enough, the straight-line block
+ * starting there is translated into JVM bytecode and loaded as a hidden
+ * class, so HotSpot can register allocate and optimize it. Inside the
+ * generated method registers live in locals, and a block whose terminating
+ * branch jumps back to its own entry keeps looping without returning.
+ *
+ * Only instructions without interpreter side effects are translated. A block
+ * stops in front of ecall, jr, jalr or anything unknown, and returns the
+ * address of that instruction so the interpreter runs it. Each pass through
+ * a block is charged every instruction in it, and a pass only starts if the
+ * remaining budget covers it, so cycle counts match the interpreter exactly.
+ * A load or store that faults ends the block early, with the registers
+ * written back and the instructions before it charged, and the interpreter
+ * steps that instruction again to raise the fault itself.
+ */
+final class BlockJit {
+
+    // Returned by enter() when the interpreter should run the instruction itself
+    static final long NOT_COMPILED = -1L;
+
+    // Entries into an address before its block is compiled
+    static final int THRESHOLD = 50;
+
+    // Longest block translated in one method
+    private static final int MAX_BLOCK = 64;
+
+    // Distinct blocks kept loaded for reuse by later runs
+    private static final int MAX_LOADED = 4096;
+
+    private static final MethodType BLOCK_TYPE = MethodType.methodType(long.class, int[].class, Memory.class, int.class);
+
+    // Loaded blocks keyed by their class file, so rerunning a program skips code generation
+    private static final ConcurrentHashMap<ByteBuffer, MethodHandle> LOADED = new ConcurrentHashMap<ByteBuffer, MethodHandle>();
+
+    private final DecodedProgram program;
+    private final int[] entries;
+    private final int[] lengths;
+    private final MethodHandle[] compiled;
+    private final boolean[] rejected;
+
+    BlockJit(DecodedProgram program) {
+        this.program = program;
+        entries = new int[program.length];
+        lengths = new int[program.length];
+        compiled = new MethodHandle[program.length];
+        rejected = new boolean[program.length];
+    }
+
+    /*
+     * Note a jump to instruction i, and run its compiled block if it has one.
+     * Returns the cycles used in the upper half and the next address in the
+     * lower half, or NOT_COMPILED.
+     */
+    long enter(int i, int[] regs, Memory memory, int budget) {
+        if (i < 0 || i >= program.length) {
+            return NOT_COMPILED;
+        }
+        MethodHandle block = compiled[i];
+        if (block == null) {
+            if (rejected[i] || ++entries[i] < THRESHOLD) {
+                return NOT_COMPILED;
+            }
+            block = compile(i);
+            if (block == null) {
+                rejected[i] = true;
+                return NOT_COMPILED;
+            }
+            compiled[i] = block;
+        }
+        if (budget < lengths[i]) {
+            return NOT_COMPILED;
+        }
+        try {
+            long exit = (long) block.invokeExact(regs, memory, budget);
+            // Faulted on its first instruction without doing anything, so leave that to the interpreter
+            return exit == (program.address(i) & 0xffffffffL) ? NOT_COMPILED : exit;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /* Instructions in the block compiled at i */
+    int length(int i) {
+        return lengths[i];
+    }
+
+    /* Translate and load the block starting at instruction i, or null if it can't be */
+    private MethodHandle compile(int i) {
+        int end = i;
+        boolean terminated = false;
+        while (end < program.length && end - i < MAX_BLOCK) {
+            Opcode op = Opcode.VALUES[program.op[end]];
+            if (isTerminator(op)) {
+                end++;
+                terminated = true;
+                break;
+            }
+            if (!isStraightLine(op)) {
+                break;
+            }
+            end++;
+        }
+        if (end == i) {
+            return null;
+        }
+        lengths[i] = end - i;
+        try {
+            byte[] bytes = new BlockWriter(program, i, end, terminated).toClassFile();
+            ByteBuffer key = ByteBuffer.wrap(bytes);
+            MethodHandle block = LOADED.get(key);
+            if (block == null) {
+                MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+                block = lookup.findStatic(lookup.lookupClass(), "run", BLOCK_TYPE);
+                if (LOADED.size() < MAX_LOADED) {
+                    LOADED.putIfAbsent(key, block);
+                }
+            }
+            return block;
+        } catch (ReflectiveOperationException | LinkageError | IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isTerminator(Opcode op) {
+        switch (op.format) {
+            case BRANCH:
+            case BRANCH_ZERO:
+            case J:
+            case JAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isStraightLine(Opcode op) {
+        switch (op) {
+            case LUI:
+            case ADD:
+            case MV:
+            case ADDI:
+            case SW:
+            case LI:
+            case LW:
+            case LA:
+            case XOR:
+            case DIV:
+            case SLLI:
+            case SRLI:
+            case MUL:
+            case OR:
+            case AND:
+            case SUB:
+            case LB:
+            case SB:
+            case REM:
+            case SLT:
+            case SLTU:
+            case SLTI:
+            case SLTIU:
+            case ANDI:
+            case ORI:
+            case XORI:
+            case SLL:
+            case SRL:
+            case SRA:
+            case SRAI:
+            case MULH:
+            case MULHSU:
+            case MULHU:
+            case DIVU:
+            case REMU:
+            case LH:
+            case LHU:
+            case LBU:
+            case SH:
+            case AUIPC:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * Emits a class file holding one method,
+     *     static long run(int[] regs, Memory memory, int budget)
+     * Class file version 49 is used so no stack map frames are needed.
+     */
+    private static final class BlockWriter {
+
+        // Local variable slots after regs (0) and memory (1)
+        private static final int BUDGET = 2;
+        private static final int USED = 3;
+        private static final int FIRST_REG = 4;
+        private static final int NEXT = FIRST_REG + Registers.COUNT;
+        private static final int CURRENT = NEXT + 1; // offset in the block of the latest load or store
+
+        private final DecodedProgram program;
+        private final int start;
+        private final int end;
+        private final boolean terminated;
+
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final DataOutputStream poolOut = new DataOutputStream(pool);
+        private final HashMap<String, Integer> constants = new HashMap<String, Integer>();
+        private int poolCount = 1;
+
+        private byte[] code = new byte[256];
+        private int length;
+        private final ArrayList<int[]> fixups = new ArrayList<int[]>(); // {branch position, label}
+        private final ArrayList<Integer> labels = new ArrayList<Integer>();
+        private int[] handler; // {start, end, handler position, catch type}
+
+        BlockWriter(DecodedProgram program, int start, int end, boolean terminated) {
+            this.program = program;
+            this.start = start;
+            this.end = end;
+            this.terminated = terminated;
+        }
+
+        byte[] toClassFile() throws IOException {
+            int thisClass = classConstant("RiscVBlock");
+            int superClass = classConstant("java/lang/Object");
+            int methodName = utf8("run");
+            int methodType = utf8("([ILMemory;I)J");
+            int codeName = utf8("Code");
+            emitMethod();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(0x0030); // final, super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(1); // methods
+            out.writeShort(0x0008); // static
+            out.writeShort(methodName);
+            out.writeShort(methodType);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(20 + length);
+            out.writeShort(8); // max stack
+            out.writeShort(CURRENT + 1); // max locals
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(1); // exception table
+            for (int entry : handler) {
+                out.writeShort(entry);
+            }
+            out.writeShort(0); // code attributes
+            out.writeShort(0); // class attributes
+            return bytes.toByteArray();
+        }
+
+        private void emitMethod() throws IOException {
+            boolean[] used = new boolean[Registers.COUNT];
+            boolean[] written = new boolean[Registers.COUNT];
+            for (int i = start; i < end; i++) {
+                used[program.rs1[i]] = true;
+                used[program.rs2[i]] = true;
+                used[program.rd[i]] = true;
+                written[program.rd[i]] = true;
+            }
+            used[0] = false;
+            written[0] = false;
+
+            // Pull every register the block touches into a local
+            for (int reg = 1; reg < Registers.COUNT; reg++) {
+                if (used[reg]) {
+                    op(0x2a); // aload_0
+                    push(reg);
+                    op(0x2e); // iaload
+                    op(0x36, FIRST_REG + reg); // istore
+                }
+            }
+            push(0);
+            op(0x36, USED);
+            push(0);
+            op(0x36, CURRENT);
+
+            int loop = label();
+            int exitAtEntry = label();
+            int exit = label();
+
+            // Only start a pass if the whole block fits in the remaining budget
+            place(loop);
+            op(0x15, BUDGET);
+            op(0x15, USED);
+            op(0x64); // isub
+            push(end - start);
+            jump(0xa1, exitAtEntry); // if_icmplt
+
+            for (int i = start; i < end; i++) {
+                emitInstruction(i, loop, exit);
+            }
+            if (!terminated) {
+                op(0x84, USED, end - start); // iinc
+                push(program.address(end));
+                op(0x36, NEXT);
+                jump(0xa7, exit);
+            }
+
+            place(exitAtEntry);
+            push(program.address(start));
+            op(0x36, NEXT);
+
+            // Write back registers and pack (cycles used, next address) into a long
+            place(exit);
+            for (int reg = 1; reg < Registers.COUNT; reg++) {
+                if (written[reg]) {
+                    op(0x2a);
+                    push(reg);
+                    op(0x15, FIRST_REG + reg);
+                    op(0x4f); // iastore
+                }
+            }
+            op(0x15, USED);
+            op(0x85); // i2l
+            push(32);
+            op(0x79); // lshl
+            op(0x15, NEXT);
+            op(0x85);
+            push(-1);
+            op(0x85);
+            push(32);
+            op(0x7d); // lushr
+            op(0x7f); // land
+            op(0x81); // lor
+            op(0xad); // lreturn
+
+            // A fault stops at its load or store: charge what came before and leave the interpreter to step it
+            handler = new int[] {labels.get(loop), length, length, classConstant("Memory$Fault")};
+            op(0x57); // pop
+            op(0x15, USED);
+            op(0x15, CURRENT);
+            op(0x60); // iadd
+            op(0x36, USED);
+            push(program.address(start));
+            op(0x15, CURRENT);
+            op(0x05); // iconst_2
+            op(0x78); // ishl
+            op(0x60);
+            op(0x36, NEXT);
+            jump(0xa7, exit);
+
+            for (int[] fixup : fixups) {
+                int offset = labels.get(fixup[1]) - fixup[0];
+                code[fixup[0] + 1] = (byte) (offset >> 8);
+                code[fixup[0] + 2] = (byte) offset;
+            }
+        }
+
+        private void emitInstruction(int i, int loop, int exit) throws IOException {
+            int rd = program.rd[i];
+            int rs1 = program.rs1[i];
+            int rs2 = program.rs2[i];
+            int imm = program.imm[i];
+            int target = program.target[i];
+            Opcode opcode = Opcode.VALUES[program.op[i]];
+            if (opcode.format == Opcode.Format.LOAD || opcode.format == Opcode.Format.STORE) {
+                push(i - start);
+                op(0x36, CURRENT);
+            }
+            switch (opcode) {
+                case LUI:
+                    push(imm << 12);
+                    store(rd);
+                    break;
+                case LI:
+                    push(imm);
+                    store(rd);
+                    break;
+                case LA:
+                    push(target);
+                    store(rd);
+                    break;
+                case MV:
+                    load(rs1);
+                    store(rd);
+                    break;
+                case ADDI:
+                    load(rs1);
+                    push(imm);
+                    op(0x60);
+                    store(rd);
+                    break;
+                case SLLI:
+                    load(rs1);
+                    push(imm);
+                    op(0x78); // ishl
+                    store(rd);
+                    break;
+                case SRLI:
+                    load(rs1);
+                    push(imm);
+                    op(0x7c); // iushr
+                    store(rd);
+                    break;
+                case SRAI:
+                    immediate(0x7a, rd, rs1, imm); // ishr
+                    break;
+                case ANDI:
+                    immediate(0x7e, rd, rs1, imm);
+                    break;
+                case ORI:
+                    immediate(0x80, rd, rs1, imm);
+                    break;
+                case XORI:
+                    immediate(0x82, rd, rs1, imm);
+                    break;
+                case AUIPC:
+                    push(program.address(i) + (imm << 12));
+                    store(rd);
+                    break;
+                case ADD:
+                    arithmetic(0x60, rd, rs1, rs2);
+                    break;
+                case SUB:
+                    arithmetic(0x64, rd, rs1, rs2);
+                    break;
+                case MUL:
+                    arithmetic(0x68, rd, rs1, rs2);
+                    break;
+                case DIV:
+                    helper("div", rd, rs1, rs2);
+                    break;
+                case AND:
+                    arithmetic(0x7e, rd, rs1, rs2);
+                    break;
+                case OR:
+                    arithmetic(0x80, rd, rs1, rs2);
+                    break;
+                case XOR:
+                    arithmetic(0x82, rd, rs1, rs2);
+                    break;
+                case SLL:
+                    arithmetic(0x78, rd, rs1, rs2);
+                    break;
+                case SRL:
+                    arithmetic(0x7c, rd, rs1, rs2);
+                    break;
+                case SRA:
+                    arithmetic(0x7a, rd, rs1, rs2);
+                    break;
+                case REM:
+                    helper("rem", rd, rs1, rs2);
+                    break;
+                case DIVU:
+                    helper("divu", rd, rs1, rs2);
+                    break;
+                case REMU:
+                    helper("remu", rd, rs1, rs2);
+                    break;
+                case MULH:
+                    helper("mulh", rd, rs1, rs2);
+                    break;
+                case MULHSU:
+                    helper("mulhsu", rd, rs1, rs2);
+                    break;
+                case MULHU:
+                    helper("mulhu", rd, rs1, rs2);
+                    break;
+                case SLT:
+                    helper("slt", rd, rs1, rs2);
+                    break;
+                case SLTU:
+                    helper("sltu", rd, rs1, rs2);
+                    break;
+                case SLTI:
+                    load(rs1);
+                    push(imm);
+                    invokeStatic("slt");
+                    store(rd);
+                    break;
+                case SLTIU:
+                    load(rs1);
+                    push(imm);
+                    invokeStatic("sltu");
+                    store(rd);
+                    break;
+                case LW:
+                    memoryAddress(rs1, imm);
+                    invoke("loadWord", "(I)I");
+                    store(rd);
+                    break;
+                case LB:
+                    memoryAddress(rs1, imm);
+                    invoke("loadByte", "(I)I");
+                    store(rd);
+                    break;
+                case LH:
+                    memoryAddress(rs1, imm);
+                    invoke("loadHalf", "(I)I");
+                    store(rd);
+                    break;
+                case LHU:
+                    memoryAddress(rs1, imm);
+                    invoke("loadHalf", "(I)I");
+                    push(0xffff);
+                    op(0x7e);
+                    store(rd);
+                    break;
+                case LBU:
+                    memoryAddress(rs1, imm);
+                    invoke("loadByte", "(I)I");
+                    push(0xff);
+                    op(0x7e);
+                    store(rd);
+                    break;
+                case SH:
+                    memoryAddress(rs1, imm);
+                    load(rs2);
+                    invoke("storeHalf", "(II)V");
+                    break;
+                case SW:
+                    memoryAddress(rs1, imm);
+                    load(rs2);
+                    invoke("storeWord", "(II)V");
+                    break;
+                case SB:
+                    memoryAddress(rs1, imm);
+                    load(rs2);
+                    invoke("storeByte", "(II)V");
+                    break;
+                case JAL:
+                    push(program.address(i + 1));
+                    store(rd);
+                    op(0x84, USED, end - start);
+                    goTo(target, loop, exit);
+                    break;
+                case J:
+                    op(0x84, USED, end - start);
+                    goTo(target, loop, exit);
+                    break;
+                default:
+                    // Conditional branch ending the block
+                    op(0x84, USED, end - start);
+                    int taken = label();
+                    branch(opcode, rs1, rs2, taken);
+                    push(program.address(i + 1));
+                    op(0x36, NEXT);
+                    jump(0xa7, exit);
+                    place(taken);
+                    goTo(target, loop, exit);
+                    break;
+            }
+        }
+
+        /* Jump to target: loop again if it is this block, otherwise leave */
+        private void goTo(int target, int loop, int exit) {
+            if (target == program.address(start)) {
+                jump(0xa7, loop);
+            } else {
+                push(target);
+                op(0x36, NEXT);
+                jump(0xa7, exit);
+            }
+        }
+
+        private void branch(Opcode opcode, int rs1, int rs2, int taken) {
+            switch (opcode) {
+                case BEQ:
+                    compare(rs1, rs2, false, 0x9f, taken);
+                    break;
+                case BNE:
+                    compare(rs1, rs2, false, 0xa0, taken);
+                    break;
+                case BLT:
+                    compare(rs1, rs2, false, 0xa1, taken);
+                    break;
+                case BGE:
+                    compare(rs1, rs2, false, 0xa2, taken);
+                    break;
+                case BLTU:
+                    compare(rs1, rs2, true, 0xa1, taken);
+                    break;
+                case BGEU:
+                    compare(rs1, rs2, true, 0xa2, taken);
+                    break;
+                case BEQZ:
+                    load(rs1);
+                    jump(0x99, taken);
+                    break;
+                case BNEZ:
+                    load(rs1);
+                    jump(0x9a, taken);
+                    break;
+                case BLTZ:
+                    load(rs1);
+                    jump(0x9b, taken);
+                    break;
+                case BGEZ:
+                    load(rs1);
+                    jump(0x9c, taken);
+                    break;
+                case BGTZ:
+                    load(rs1);
+                    jump(0x9d, taken);
+                    break;
+                default: // BLEZ
+                    load(rs1);
+                    jump(0x9e, taken);
+                    break;
+            }
+        }
+
+        /* Compare two registers, flipping sign bits first for unsigned comparisons */
+        private void compare(int rs1, int rs2, boolean unsigned, int opcode, int taken) {
+            load(rs1);
+            if (unsigned) {
+                push(Integer.MIN_VALUE);
+                op(0x82);
+            }
+            load(rs2);
+            if (unsigned) {
+                push(Integer.MIN_VALUE);
+                op(0x82);
+            }
+            jump(opcode, taken);
+        }
+
+        private void arithmetic(int opcode, int rd, int rs1, int rs2) {
+            load(rs1);
+            load(rs2);
+            op(opcode);
+            store(rd);
+        }
+
+        private void immediate(int opcode, int rd, int rs1, int imm) {
+            load(rs1);
+            push(imm);
+            op(opcode);
+            store(rd);
+        }
+
+        /* Two registers through one of the Arithmetic helpers */
+        private void helper(String name, int rd, int rs1, int rs2) {
+            load(rs1);
+            load(rs2);
+            invokeStatic(name);
+            store(rd);
+        }
+
+        private void memoryAddress(int base, int offset) {
+            op(0x2b); // aload_1
+            load(base);
+            push(offset);
+            op(0x60);
+        }
+
+        private void invoke(String name, String type) {
+            int method = methodConstant("Memory", name, type);
+            op(0xb6); // invokevirtual
+            u2(method);
+        }
+
+        private void invokeStatic(String name) {
+            int method = methodConstant("Arithmetic", name, "(II)I");
+            op(0xb8); // invokestatic
+            u2(method);
+        }
+
+        private void load(int reg) {
+            if (reg == 0) {
+                push(0);
+            } else {
+                op(0x15, FIRST_REG + reg);
+            }
+        }
+
+        /* Store the top of stack to a register, dropping writes to x0 */
+        private void store(int reg) {
+            if (reg == 0) {
+                op(0x57); // pop
+            } else {
+                op(0x36, FIRST_REG + reg);
+            }
+        }
+
+        private void push(int value) {
+            if (value >= -1 && value <= 5) {
+                op(0x03 + value); // iconst
+            } else if (value == (byte) value) {
+                op(0x10, value & 0xff); // bipush
+            } else if (value == (short) value) {
+                op(0x11); // sipush
+                u2(value);
+            } else {
+                op(0x13); // ldc_w
+                u2(integerConstant(value));
+            }
+        }
+
+        private int label() {
+            labels.add(-1);
+            return labels.size() - 1;
+        }
+
+        private void place(int label) {
+            labels.set(label, length);
+        }
+
+        private void jump(int opcode, int label) {
+            fixups.add(new int[] {length, label});
+            op(opcode);
+            u2(0);
+        }
+
+        private void op(int... bytes) {
+            for (int b : bytes) {
+                if (length == code.length) {
+                    byte[] grown = new byte[code.length * 2];
+                    System.arraycopy(code, 0, grown, 0, length);
+                    code = grown;
+                }
+                code[length++] = (byte) b;
+            }
+        }
+
+        private void u2(int value) {
+            op((value >> 8) & 0xff, value & 0xff);
+        }
+
+        private int utf8(String value) {
+            Integer index = constants.get("U" + value);
+            if (index == null) {
+                try {
+                    poolOut.writeByte(1);
+                    poolOut.writeUTF(value);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                index = poolCount++;
+                constants.put("U" + value, index);
+            }
+            return index;
+        }
+
+        private int integerConstant(int value) {
+            Integer index = constants.get("I" + value);
+            if (index == null) {
+                try {
+                    poolOut.writeByte(3);
+                    poolOut.writeInt(value);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                index = poolCount++;
+                constants.put("I" + value, index);
+            }
+            return index;
+        }
+
+        private int classConstant(String name) {
+            Integer index = constants.get("C" + name);
+            if (index == null) {
+                int nameIndex = utf8(name);
+                try {
+                    poolOut.writeByte(7);
+                    poolOut.writeShort(nameIndex);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                index = poolCount++;
+                constants.put("C" + name, index);
+            }
+            return index;
+        }
+
+        private int methodConstant(String owner, String name, String type) {
+            String key = "M" + owner + "." + name + type;
+            Integer index = constants.get(key);
+            if (index == null) {
+                int ownerIndex = classConstant(owner);
+                int nameIndex = utf8(name);
+                int typeIndex = utf8(type);
+                try {
+                    poolOut.writeByte(12);
+                    poolOut.writeShort(nameIndex);
+                    poolOut.writeShort(typeIndex);
+                    int nameAndType = poolCount++;
+                    poolOut.writeByte(10);
+                    poolOut.writeShort(ownerIndex);
+                    poolOut.writeShort(nameAndType);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                index = poolCount++;
+                constants.put(key, index);
+            }
+            return index;
+        }
+    }
+}
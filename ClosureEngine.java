@@ -0,0 +1,571 @@
+/*
+ * Executes a decoded program as basic blocks of pre-bound handler objects
+ * ("closure compilation"). Operands are captured when a block is first
+ * entered, so running it is just a walk down an array of handlers. Frequent
+ * instruction sequences are fused into superinstructions that do the work of
+ * several handlers in one call.
+ *
+ * Output, register and memory state match runProgram() exactly, including
+ * where the cycle cap cuts a program off.
+ */
+final class ClosureEngine {
+
+    // Longest run of instructions compiled into one block
+    private static final int MAX_BLOCK = 64;
+
+    /* One instruction, or a fused run of them; returns the address to continue at */
+    private interface Handler {
+        int run(int pc);
+    }
+
+    /* Straight-line code from an entry address up to and including its first control transfer */
+    private static final class Block {
+        final Handler[] handlers;
+        final int[] faultsAt; // per handler, instructions of the block before the one in it that can fault
+        final int cycles;
+        Handler[] single; // one handler per instruction, for running out the last few cycles
+
+        Block(Handler[] handlers, int[] faultsAt, int cycles) {
+            this.handlers = handlers;
+            this.faultsAt = faultsAt;
+            this.cycles = cycles;
+        }
+    }
+
+    private final RiscVInterpreter vm;
+    private final DecodedProgram program;
+    private final int[] r;
+    private final Memory memory;
+    private final Block[] blocks;
+    private final Idioms idioms;
+
+    ClosureEngine(RiscVInterpreter vm) {
+        this.vm = vm;
+        this.program = vm.program;
+        this.r = vm.regs;
+        this.memory = vm.memory;
+        this.blocks = new Block[program.length];
+        this.idioms = vm.idioms();
+    }
+
+    /* Run from the interpreter's pc until the program exits or hits the cycle cap */
+    void run() {
+        int pc = vm.pc;
+        int cycles = vm.cycles;
+        int maxCycles = vm.stop;
+        Divergence divergence = vm.divergence;
+        int nextPoll = vm.nextPoll(cycles);
+        int start = pc;
+        Block block = null; // while running a whole block, which one, and the handler in it
+        int k = 0;
+        try {
+            while (vm.active && cycles < maxCycles) {
+                if (cycles >= nextPoll) {
+                    nextPoll = vm.nextPoll(cycles);
+                    if (vm.interrupted()) {
+                        break;
+                    }
+                    if (divergence != null && divergence.repeats(pc, r, memory)) {
+                        vm.diverge();
+                        break;
+                    }
+                }
+                if (!program.contains(pc)) {
+                    // Jumped or ran off the end outside the text
+                    vm.fault(new Memory.Fault(pc, false));
+                    break;
+                }
+                int limit = Math.min(maxCycles, nextPoll);
+                long exit = idioms.run(program.index(pc), r, memory, limit - cycles);
+                if (exit != Idioms.NOT_RUN) {
+                    cycles += (int) (exit >>> 32);
+                    pc = (int) exit;
+                    continue;
+                }
+                start = pc;
+                block = block(program.index(pc));
+                int end = start + 4 * block.cycles;
+                boolean whole = cycles + block.cycles <= limit;
+                if (whole) {
+                    Handler[] handlers = block.handlers;
+                    for (k = 0; k < handlers.length; k++) {
+                        pc = handlers[k].run(pc);
+                    }
+                    cycles += block.cycles;
+                } else {
+                    // Not enough budget for the whole block, so step it one instruction at a time
+                    if (block.single == null) {
+                        block.single = compile(program.index(pc), block.cycles, false, null);
+                    }
+                    Handler[] single = block.single;
+                    block = null; // cycles and pc are kept up to date here
+                    int n = 0;
+                    for (; n < single.length && cycles < limit; n++) {
+                        pc = single[n].run(pc);
+                        cycles += 1;
+                    }
+                    whole = n == single.length;
+                }
+                // The block's last instruction jumped to itself, so will keep doing so
+                if (divergence != null && whole && pc == end - 4 && divergence.spins(program.index(pc))) {
+                    vm.diverge();
+                    break;
+                }
+            }
+        } catch (Memory.Fault e) {
+            if (block != null) {
+                // Stop on the faulting instruction, charging those before it, as stepping would have
+                pc = start + 4 * block.faultsAt[k];
+                cycles += block.faultsAt[k];
+            }
+            vm.fault(e);
+        }
+        vm.pc = pc;
+        vm.cycles = cycles;
+    }
+
+    private Block block(int start) {
+        Block block = blocks[start];
+        if (block == null) {
+            int end = start;
+            while (end < program.length && end - start < MAX_BLOCK && !endsBlock(Opcode.VALUES[program.op[end]])) {
+                end++;
+            }
+            int cycles = Math.min(end + 1, program.length) - start;
+            int[] faultsAt = new int[cycles];
+            block = new Block(compile(start, cycles, true, faultsAt), faultsAt, cycles);
+            blocks[start] = block;
+        }
+        return block;
+    }
+
+    private static boolean endsBlock(Opcode op) {
+        switch (op.format) {
+            case BRANCH:
+            case BRANCH_ZERO:
+            case JAL:
+            case J:
+            case JR:
+            case JALR:
+                return true;
+            default:
+                return op == Opcode.ECALL || op == Opcode.UNKNOWN || op == Opcode.INPUT;
+        }
+    }
+
+    /*
+     * Build handlers for count instructions from start, fusing sequences if
+     * asked, and note in faultsAt where in the block each one can fault
+     */
+    private Handler[] compile(int start, int count, boolean fuse, int[] faultsAt) {
+        Handler[] handlers = new Handler[count];
+        int n = 0;
+        int i = start;
+        while (i < start + count) {
+            int fused = fuse ? fused(i, start + count) : 0;
+            if (faultsAt != null) {
+                // Superinstructions touch memory at most once: lw first, ecall second, the array load third
+                Opcode op = Opcode.VALUES[program.op[i]];
+                faultsAt[n] = i - start + (fused == 0 ? 0 : op == Opcode.LI ? 1 : op == Opcode.SLLI ? 2 : 0);
+            }
+            if (fused > 0) {
+                handlers[n++] = superinstruction(i);
+                i += fused;
+            } else {
+                handlers[n++] = handler(i);
+                i++;
+            }
+        }
+        Handler[] result = new Handler[n];
+        System.arraycopy(handlers, 0, result, 0, n);
+        return result;
+    }
+
+    /* Length of the superinstruction starting at i, or 0 if none applies */
+    private int fused(int i, int end) {
+        int[] op = program.op;
+        int[] rd = program.rd;
+        Opcode first = Opcode.VALUES[op[i]];
+        Opcode second = i + 1 < end ? Opcode.VALUES[op[i + 1]] : null;
+        if (first == Opcode.ADDI && (second == Opcode.BNE || second == Opcode.BLT) && rd[i] != 0) {
+            return 2;
+        }
+        if (first == Opcode.LW && second == Opcode.ADDI && rd[i] != 0 && rd[i + 1] != 0) {
+            return 2;
+        }
+        if (first == Opcode.LI && second == Opcode.ECALL && rd[i] != 0) {
+            return 2;
+        }
+        if (first == Opcode.SLLI && second == Opcode.ADD && i + 2 < end && op[i + 2] == Opcode.LW.ordinal()
+                && rd[i] != 0 && rd[i + 1] != 0 && rd[i + 2] != 0
+                && (program.rs1[i + 1] == rd[i] || program.rs2[i + 1] == rd[i])
+                && program.rs1[i + 2] == rd[i + 1]) {
+            return 3;
+        }
+        return 0;
+    }
+
+    private Handler superinstruction(int i) {
+        final int[] r = this.r;
+        final Memory memory = this.memory;
+        final int d1 = program.rd[i];
+        final int a1 = program.rs1[i];
+        final int imm1 = program.imm[i];
+        final int d2 = program.rd[i + 1];
+        final int a2 = program.rs1[i + 1];
+        final int b2 = program.rs2[i + 1];
+        final int imm2 = program.imm[i + 1];
+        final int target2 = program.target[i + 1];
+        switch (Opcode.VALUES[program.op[i]]) {
+            case ADDI:
+                // Loop back-edge: bump the induction variable, then test it
+                if (program.op[i + 1] == Opcode.BNE.ordinal()) {
+                    return pc -> {
+                        r[d1] = r[a1] + imm1;
+                        return r[a2] != r[b2] ? target2 : pc + 8;
+                    };
+                }
+                return pc -> {
+                    r[d1] = r[a1] + imm1;
+                    return r[a2] < r[b2] ? target2 : pc + 8;
+                };
+            case LW:
+                return pc -> {
+                    r[d1] = memory.loadWord(r[a1] + imm1);
+                    r[d2] = r[a2] + imm2;
+                    return pc + 8;
+                };
+            case LI:
+                final RiscVInterpreter vm = this.vm;
+                return pc -> {
+                    r[d1] = imm1;
+                    vm.ecall();
+                    return pc + 8;
+                };
+            default:
+                // slli + add + lw: array element load
+                final int d3 = program.rd[i + 2];
+                final int a3 = program.rs1[i + 2];
+                final int imm3 = program.imm[i + 2];
+                return pc -> {
+                    r[d1] = r[a1] << imm1;
+                    r[d2] = r[a2] + r[b2];
+                    r[d3] = memory.loadWord(r[a3] + imm3);
+                    return pc + 12;
+                };
+        }
+    }
+
+    /* Handler for the single instruction at index i */
+    private Handler handler(final int i) {
+        final int[] r = this.r;
+        final Memory memory = this.memory;
+        final RiscVInterpreter vm = this.vm;
+        final int rd = program.rd[i];
+        final int rs1 = program.rs1[i];
+        final int rs2 = program.rs2[i];
+        final int imm = program.imm[i];
+        final int target = program.target[i];
+        Opcode op = Opcode.VALUES[program.op[i]];
+
+        // Writes to x0 are dropped, so most instructions targeting it do nothing
+        if (rd == 0 && writesRd(op)) {
+            return pc -> pc + 4;
+        }
+
+        // A load into x0 still reads memory, which can fault, so only its value is dropped
+        if (rd == 0 && op.format == Opcode.Format.LOAD) {
+            switch (op) {
+                case LW:
+                    return pc -> {
+                        memory.loadWord(r[rs1] + imm);
+                        return pc + 4;
+                    };
+                case LH:
+                case LHU:
+                    return pc -> {
+                        memory.loadHalf(r[rs1] + imm);
+                        return pc + 4;
+                    };
+                default:
+                    return pc -> {
+                        memory.loadByte(r[rs1] + imm);
+                        return pc + 4;
+                    };
+            }
+        }
+
+        switch (op) {
+            case LUI:
+                return pc -> {
+                    r[rd] = imm << 12;
+                    return pc + 4;
+                };
+            case ADD:
+                return pc -> {
+                    r[rd] = r[rs1] + r[rs2];
+                    return pc + 4;
+                };
+            case JAL:
+                if (rd == 0) {
+                    return pc -> target;
+                }
+                return pc -> {
+                    r[rd] = pc + 4;
+                    return target;
+                };
+            case MV:
+                return pc -> {
+                    r[rd] = r[rs1];
+                    return pc + 4;
+                };
+            case ADDI:
+                return pc -> {
+                    r[rd] = r[rs1] + imm;
+                    return pc + 4;
+                };
+            case SW:
+                return pc -> {
+                    memory.storeWord(r[rs1] + imm, r[rs2]);
+                    return pc + 4;
+                };
+            case LI:
+                return pc -> {
+                    r[rd] = imm;
+                    return pc + 4;
+                };
+            case LW:
+                return pc -> {
+                    r[rd] = memory.loadWord(r[rs1] + imm);
+                    return pc + 4;
+                };
+            case ECALL:
+                return pc -> {
+                    vm.ecall();
+                    return pc + 4;
+                };
+            case BEQ:
+                return pc -> r[rs1] == r[rs2] ? target : pc + 4;
+            case BNE:
+                return pc -> r[rs1] != r[rs2] ? target : pc + 4;
+            case BLT:
+                return pc -> r[rs1] < r[rs2] ? target : pc + 4;
+            case BGE:
+                return pc -> r[rs1] >= r[rs2] ? target : pc + 4;
+            case BLTU:
+                return pc -> Integer.compareUnsigned(r[rs1], r[rs2]) < 0 ? target : pc + 4;
+            case BGEU:
+                return pc -> Integer.compareUnsigned(r[rs1], r[rs2]) >= 0 ? target : pc + 4;
+            case BEQZ:
+                return pc -> r[rs1] == 0 ? target : pc + 4;
+            case BNEZ:
+                return pc -> r[rs1] != 0 ? target : pc + 4;
+            case BGTZ:
+                return pc -> r[rs1] > 0 ? target : pc + 4;
+            case BGEZ:
+                return pc -> r[rs1] >= 0 ? target : pc + 4;
+            case BLEZ:
+                return pc -> r[rs1] <= 0 ? target : pc + 4;
+            case BLTZ:
+                return pc -> r[rs1] < 0 ? target : pc + 4;
+            case JR:
+                return pc -> r[rs1];
+            case LA:
+                return pc -> {
+                    r[rd] = target;
+                    return pc + 4;
+                };
+            case J:
+                return pc -> target;
+            case XOR:
+                return pc -> {
+                    r[rd] = r[rs1] ^ r[rs2];
+                    return pc + 4;
+                };
+            case DIV:
+                return pc -> {
+                    r[rd] = Arithmetic.div(r[rs1], r[rs2]);
+                    return pc + 4;
+                };
+            case SLLI:
+                return pc -> {
+                    r[rd] = r[rs1] << imm;
+                    return pc + 4;
+                };
+            case SRLI:
+                return pc -> {
+                    r[rd] = r[rs1] >>> imm;
+                    return pc + 4;
+                };
+            case JALR:
+                if (rd == 0) {
+                    return pc -> r[rs1] + imm;
+                }
+                return pc -> {
+                    int jump = r[rs1] + imm;
+                    r[rd] = pc + 4;
+                    return jump;
+                };
+            case MUL:
+                return pc -> {
+                    r[rd] = r[rs1] * r[rs2];
+                    return pc + 4;
+                };
+            case OR:
+                return pc -> {
+                    r[rd] = r[rs1] | r[rs2];
+                    return pc + 4;
+                };
+            case AND:
+                return pc -> {
+                    r[rd] = r[rs1] & r[rs2];
+                    return pc + 4;
+                };
+            case SUB:
+                return pc -> {
+                    r[rd] = r[rs1] - r[rs2];
+                    return pc + 4;
+                };
+            case LB:
+                return pc -> {
+                    r[rd] = memory.loadByte(r[rs1] + imm);
+                    return pc + 4;
+                };
+            case SB:
+                return pc -> {
+                    memory.storeByte(r[rs1] + imm, r[rs2]);
+                    return pc + 4;
+                };
+            case REM:
+                return pc -> {
+                    r[rd] = Arithmetic.rem(r[rs1], r[rs2]);
+                    return pc + 4;
+                };
+            case SLT:
+                return pc -> {
+                    r[rd] = Arithmetic.slt(r[rs1], r[rs2]);
+                    return pc + 4;
+                };
+            case SLTU:
+                return pc -> {
+                    r[rd] = Arithmetic.sltu(r[rs1], r[rs2]);
+                    return pc + 4;
+                };
+            case SLTI:
+                return pc -> {
+                    r[rd] = Arithmetic.slt(r[rs1], imm);
+                    return pc + 4;
+                };
+            case SLTIU:
+                return pc -> {
+                    r[rd] = Arithmetic.sltu(r[rs1], imm);
+                    return pc + 4;
+                };
+            case ANDI:
+                return pc -> {
+                    r[rd] = r[rs1] & imm;
+                    return pc + 4;
+                };
+            case ORI:
+                return pc -> {
+                    r[rd] = r[rs1] | imm;
+                    return pc + 4;
+                };
+            case XORI:
+                return pc -> {
+                    r[rd] = r[rs1] ^ imm;
+                    return pc + 4;
+                };
+            case SLL:
+                return pc -> {
+                    r[rd] = r[rs1] << r[rs2];
+                    return pc + 4;
+                };
+            case SRL:
+                return pc -> {
+                    r[rd] = r[rs1] >>> r[rs2];
+                    return pc + 4;
+                };
+            case SRA:
+                return pc -> {
+                    r[rd] = r[rs1] >> r[rs2];
+                    return pc + 4;
+                };
+            case SRAI:
+                return pc -> {
+                    r[rd] = r[rs1] >> imm;
+                    return pc + 4;
+                };
+            case MULH:
+                return pc -> {
+                    r[rd] = Arithmetic.mulh(r[rs1], r[rs2]);
+                    return pc + 4;
+                };
+            case MULHSU:
+                return pc -> {
+                    r[rd] = Arithmetic.mulhsu(r[rs1], r[rs2]);
+                    return pc + 4;
+                };
+            case MULHU:
+                return pc -> {
+                    r[rd] = Arithmetic.mulhu(r[rs1], r[rs2]);
+                    return pc + 4;
+                };
+            case DIVU:
+                return pc -> {
+                    r[rd] = Arithmetic.divu(r[rs1], r[rs2]);
+                    return pc + 4;
+                };
+            case REMU:
+                return pc -> {
+                    r[rd] = Arithmetic.remu(r[rs1], r[rs2]);
+                    return pc + 4;
+                };
+            case LH:
+                return pc -> {
+                    r[rd] = memory.loadHalf(r[rs1] + imm);
+                    return pc + 4;
+                };
+            case LHU:
+                return pc -> {
+                    r[rd] = memory.loadHalf(r[rs1] + imm) & 0xffff;
+                    return pc + 4;
+                };
+            case LBU:
+                return pc -> {
+                    r[rd] = memory.loadByte(r[rs1] + imm) & 0xff;
+                    return pc + 4;
+                };
+            case SH:
+                return pc -> {
+                    memory.storeHalf(r[rs1] + imm, r[rs2]);
+                    return pc + 4;
+                };
+            case AUIPC:
+                final int offset = imm << 12;
+                return pc -> {
+                    r[rd] = pc + offset;
+                    return pc + 4;
+                };
+            default:
+                return pc -> {
+                    vm.fail(i);
+                    return pc + 4;
+                };
+        }
+    }
+
+    /* Whether an instruction's only effect is writing rd */
+    private static boolean writesRd(Opcode op) {
+        switch (op.format) {
+            case R:
+            case I:
+            case RD_IMM:
+            case RD_RS:
+            case RD_LABEL:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Instruction list compiled once, by the Assembler or the BinaryLoader, into
+ * flat operand tables, so the run loop never has to look at instruction text.
+ * Entry i describes the instruction at address textBase + 4 * i.
+ */
+final class DecodedProgram {
+
+    final int[] op;     // Opcode ordinal
+    final int[] rd;     // destination register number
+    final int[] rs1;    // first source register (base register for loads and stores)
+    final int[] rs2;    // second source register (value register for stores)
+    final int[] imm;    // immediate, memory offset or absolute label address
+    final int[] target; // resolved branch / jump / la address
+    final int length;
+    final int textBase; // address of the first instruction
+    final int entry;    // address execution starts at
+
+    // Source line of each instruction; null where it is rebuilt from the tables
+    private final String[] text;
+
+    DecodedProgram(int length, int[] op, int[] rd, int[] rs1, int[] rs2, int[] imm, int[] target, String[] text,
+                   int textBase, int entry) {
+        this.length = length;
+        this.op = op;
+        this.rd = rd;
+        this.rs1 = rs1;
+        this.rs2 = rs2;
+        this.imm = imm;
+        this.target = target;
+        this.text = text;
+        this.textBase = textBase;
+        this.entry = entry;
+    }
+
+    /* Table index of the instruction at an address */
+    int index(int address) {
+        return (address - textBase) >> 2;
+    }
+
+    /* Address of the instruction at a table index */
+    int address(int i) {
+        return textBase + 4 * i;
+    }
+
+    /* Whether an address holds one of the program's instructions */
+    boolean contains(int address) {
+        return ((address - textBase) & 3) == 0 && Integer.compareUnsigned(address - textBase, 4 * length) < 0;
+    }
+
+    /* Assembly text of instruction i */
+    String text(int i) {
+        return text[i] != null ? text[i] : disassemble(i);
+    }
+
+    /* Render instruction i back into assembly from its operand tables */
+    private String disassemble(int i) {
+        Opcode code = Opcode.VALUES[op[i]];
+        if (code == Opcode.UNKNOWN) {
+            return "unknown";
+        }
+        if (code == Opcode.INPUT) {
+            return "jal $input";
+        }
+        String[] names = Registers.ABI_NAMES;
+        String at = String.format("0x%x", target[i]);
+        switch (code.format) {
+            case R:
+                return code.mnemonic + " " + names[rd[i]] + ", " + names[rs1[i]] + ", " + names[rs2[i]];
+            case I:
+                return code.mnemonic + " " + names[rd[i]] + ", " + names[rs1[i]] + ", " + imm[i];
+            case RD_IMM:
+                return code.mnemonic + " " + names[rd[i]] + ", " + imm[i];
+            case RD_RS:
+                return code.mnemonic + " " + names[rd[i]] + ", " + names[rs1[i]];
+            case RD_LABEL:
+                return code.mnemonic + " " + names[rd[i]] + ", " + at;
+            case LOAD:
+                return code.mnemonic + " " + names[rd[i]] + ", " + imm[i] + "(" + names[rs1[i]] + ")";
+            case STORE:
+                return code.mnemonic + " " + names[rs2[i]] + ", " + imm[i] + "(" + names[rs1[i]] + ")";
+            case BRANCH:
+                return code.mnemonic + " " + names[rs1[i]] + ", " + names[rs2[i]] + ", " + at;
+            case BRANCH_ZERO:
+                return code.mnemonic + " " + names[rs1[i]] + ", " + at;
+            case JAL:
+                return code.mnemonic + " " + names[rd[i]] + ", " + at;
+            case J:
+                return code.mnemonic + " " + at;
+            case JR:
+                return code.mnemonic + " " + names[rs1[i]];
+            case JALR:
+                return code.mnemonic + " " + names[rd[i]] + ", " + imm[i] + "(" + names[rs1[i]] + ")";
+            default:
+                return code.mnemonic;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.Arrays;
+
+/*
+ * Spots runs that can never end. The machine is deterministic and reads no
+ * input while it runs, so once pc, registers, memory and the break are all
+ * back to what they were at some earlier moment, it will go round the same
+ * states forever.
+ *
+ * The engines show the state to repeats() at every multiple of INTERVAL
+ * cycles, the same states whichever engine runs, and it looks for a repeat
+ * with Brent's algorithm: one checkpoint, moved to the current state
+ * whenever the number of looks since it reaches the next power of two, so a
+ * cycle of any length is found within a few times its length in looks.
+ * The checkpoint's memory is a copy-on-write copy, so comparing against it
+ * only reads the pages written since, and registers are compared first.
+ * Separately, an instruction that jumps to itself and has just done so, a
+ * branch or a j or jal, will keep doing so; spins() catches that the first
+ * time round.
+ */
+final class Divergence {
+
+    // Cycles between looks at the machine state
+    static final int INTERVAL = 1 << 10;
+
+    // Branches and jumps whose target is their own address
+    private final boolean[] selfLoop;
+
+    // Checkpoint
+    private int pc;
+    private final int[] regs = new int[Registers.COUNT];
+    private Memory memory;
+
+    private int looks; // since the checkpoint moved
+    private int power = 1;
+
+    Divergence(DecodedProgram program) {
+        selfLoop = new boolean[program.length];
+        for (int i = 0; i < program.length; i++) {
+            Opcode.Format format = Opcode.VALUES[program.op[i]].format;
+            selfLoop[i] = program.target[i] == program.address(i) && (format == Opcode.Format.BRANCH
+                || format == Opcode.Format.BRANCH_ZERO || format == Opcode.Format.J || format == Opcode.Format.JAL);
+        }
+    }
+
+    /* Whether instruction i, which just jumped to itself, will never do anything else */
+    boolean spins(int i) {
+        return i >= 0 && i < selfLoop.length && selfLoop[i];
+    }
+
+    /* Whether the machine is in a state it was in at an earlier look */
+    boolean repeats(int pc, int[] r, Memory current) {
+        if (memory != null && pc == this.pc && Arrays.equals(r, regs) && current.same(memory)) {
+            return true;
+        }
+        if (++looks >= power) {
+            this.pc = pc;
+            System.arraycopy(r, 0, regs, 0, regs.length);
+            memory = current.copy();
+            looks = 0;
+            power = power < 1 << 30 ? power << 1 : power;
+        }
+        return false;
+    }
+}
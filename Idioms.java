@@ -0,0 +1,380 @@
+/*
+ * Bulk execution of the loops compilers emit for memset, memcpy and strlen.
+ * Each loop is recognized once from the decoded program by its shape, and
+ * when the interpreter jumps to its head, as many whole iterations as the
+ * budget allows are done at once over Memory's pages: fill, move or a
+ * word-at-a-time scan for the terminating zero. Registers, memory and the
+ * cycles charged end up exactly as stepping each instruction would leave them.
+ *
+ * Shapes, with any number of other registers stepped by addi in the body:
+ *     FILL  sb/sw v, off(p); addi p, p, width; ...; bne/bnez/blt/bltu on an addi'd register
+ *     COPY  lb/lbu/lw t, off(s); sb/sw t, off(d); addi s, s, width; addi d, d, width; ...; likewise
+ *     SCAN  lb/lbu t, off(p); addi p, p, 1; ...; bnez t, head
+ *     SCAN_EXIT  lb/lbu t, off(p); beqz t, out; addi p, p, 1; ...; j head
+ * in any order for the addis and the memory operations, except that a copy
+ * loads before it stores. A run that would need anything more general, such
+ * as an unaligned word access, an overlap a forward copy would smear, or an
+ * address range that wraps, is left to the engine.
+ */
+final class Idioms {
+
+    // Returned by run() when the engine should execute the head instruction itself
+    static final long NOT_RUN = -1L;
+
+    // Longest loop body recognized
+    private static final int MAX_BODY = 8;
+
+    private enum Kind {
+        FILL, COPY, SCAN, SCAN_EXIT
+    }
+
+    /* One recognized loop */
+    private static final class Loop {
+        Kind kind;
+        int length;         // instructions in the body
+        int exit;           // address after the loop, or the beqz target for SCAN_EXIT
+        int[] induction;    // registers stepped each iteration
+        int[] step;
+        int[] stepAt;       // body position of each register's addi
+        Opcode load;
+        int loadBase;
+        int loadOffset;
+        int loadAt;
+        int value;          // register loaded into, or stored from for FILL
+        int width;
+        int storeBase;
+        int storeOffset;
+        int storeAt;
+        Opcode branch;      // BNE, BLT or BLTU; counter on the left or the right
+        int counter;        // index into induction of the register the branch tests
+        int limit;          // the register it is tested against
+        boolean counterLeft;
+    }
+
+    private final DecodedProgram program;
+    private final Loop[] loops;
+
+    Idioms(DecodedProgram program) {
+        this.program = program;
+        this.loops = new Loop[program.length];
+        for (int b = 0; b < program.length; b++) {
+            Opcode op = Opcode.VALUES[program.op[b]];
+            if (!program.contains(program.target[b]) || op.format != Opcode.Format.BRANCH
+                    && op.format != Opcode.Format.BRANCH_ZERO && op != Opcode.J) {
+                continue;
+            }
+            int head = program.index(program.target[b]);
+            if (head <= b && b - head < MAX_BODY && loops[head] == null) {
+                loops[head] = recognize(head, b);
+            }
+        }
+    }
+
+    /* Match the loop from head back-branching at b, or null */
+    private Loop recognize(int head, int b) {
+        Loop loop = new Loop();
+        loop.length = b - head + 1;
+        loop.exit = program.address(b + 1);
+        int[] stepOf = new int[Registers.COUNT];
+        int[] stepAt = new int[Registers.COUNT];
+        int written = 0;
+        int loads = 0;
+        int stores = 0;
+        Opcode last = Opcode.VALUES[program.op[b]];
+        for (int i = head; i < b; i++) {
+            Opcode op = Opcode.VALUES[program.op[i]];
+            int rd = program.rd[i];
+            int rs1 = program.rs1[i];
+            if (op == Opcode.ADDI && rd == rs1 && rd != 0 && program.imm[i] != 0 && (written & 1 << rd) == 0) {
+                stepOf[rd] = program.imm[i];
+                stepAt[rd] = i - head;
+                written |= 1 << rd;
+            } else if ((op == Opcode.LB || op == Opcode.LBU || op == Opcode.LW) && loads++ == 0 && rd != 0
+                    && (written & 1 << rd) == 0) {
+                loop.load = op;
+                loop.value = rd;
+                loop.loadBase = rs1;
+                loop.loadOffset = program.imm[i];
+                loop.loadAt = i - head;
+                written |= 1 << rd;
+            } else if ((op == Opcode.SB || op == Opcode.SW) && stores++ == 0) {
+                loop.width = op == Opcode.SW ? 4 : 1;
+                loop.storeBase = rs1;
+                loop.storeOffset = program.imm[i];
+                loop.storeAt = i - head;
+                if (loop.load == null) {
+                    loop.value = program.rs2[i];
+                } else if (program.rs2[i] != loop.value) {
+                    return null;
+                }
+            } else if (op == Opcode.BEQZ && i == head + 1 && last == Opcode.J && loop.load != null
+                    && program.rs1[i] == loop.value && outside(program.target[i], head, b)) {
+                loop.exit = program.target[i];
+            } else {
+                return null;
+            }
+        }
+
+        // Everything written but the loaded value is an induction register
+        int inductions = Integer.bitCount(written & ~(loop.load == null ? 0 : 1 << loop.value));
+        loop.induction = new int[inductions];
+        loop.step = new int[inductions];
+        loop.stepAt = new int[inductions];
+        int n = 0;
+        for (int reg = 1; reg < Registers.COUNT; reg++) {
+            if (stepOf[reg] != 0) {
+                loop.induction[n] = reg;
+                loop.step[n] = stepOf[reg];
+                loop.stepAt[n] = stepAt[reg];
+                n++;
+            }
+        }
+        if (n != inductions) {
+            return null;
+        }
+
+        if (last == Opcode.J) {
+            if (loop.exit == program.address(b + 1) || loop.load == Opcode.LW || stores > 0
+                    || step(loop, loop.loadBase) != 1 || loop.loadAt != 0) {
+                return null;
+            }
+            loop.kind = Kind.SCAN_EXIT;
+            return loop;
+        }
+        int rs1 = program.rs1[b];
+        int rs2 = last.format == Opcode.Format.BRANCH_ZERO ? 0 : program.rs2[b];
+        if (loop.load != null && stores == 0) {
+            // Scan: loops while the byte just loaded isn't zero
+            if (loop.load == Opcode.LW || step(loop, loop.loadBase) != 1
+                    || !(last == Opcode.BNEZ && rs1 == loop.value
+                         || last == Opcode.BNE && (rs1 == loop.value && rs2 == 0 || rs2 == loop.value && rs1 == 0))) {
+                return null;
+            }
+            loop.kind = Kind.SCAN;
+            return loop;
+        }
+        if (stores != 1) {
+            return null;
+        }
+        if (loop.load != null) {
+            int loadWidth = loop.load == Opcode.LW ? 4 : 1;
+            if (loadWidth != loop.width || loop.loadAt > loop.storeAt || loop.loadBase == loop.storeBase
+                    || step(loop, loop.loadBase) != loop.width) {
+                return null;
+            }
+            loop.kind = Kind.COPY;
+        } else {
+            if ((written & 1 << loop.value) != 0) {
+                return null;
+            }
+            loop.kind = Kind.FILL;
+        }
+        if (step(loop, loop.storeBase) != loop.width) {
+            return null;
+        }
+
+        // The branch tests an induction register against one the body leaves alone
+        switch (last) {
+            case BNEZ:
+                loop.branch = Opcode.BNE;
+                break;
+            case BGTZ:
+                loop.branch = Opcode.BLT;
+                rs2 = rs1;
+                rs1 = 0;
+                break;
+            case BNE:
+            case BLT:
+            case BLTU:
+                loop.branch = last;
+                break;
+            default:
+                return null;
+        }
+        int left = index(loop, rs1);
+        int right = index(loop, rs2);
+        if (left >= 0 && right < 0 && (written & 1 << rs2) == 0) {
+            loop.counter = left;
+            loop.limit = rs2;
+            loop.counterLeft = true;
+        } else if (right >= 0 && left < 0 && (written & 1 << rs1) == 0) {
+            loop.counter = right;
+            loop.limit = rs1;
+            loop.counterLeft = false;
+        } else {
+            return null;
+        }
+        return loop;
+    }
+
+    private boolean outside(int address, int head, int b) {
+        int i = program.index(address);
+        return !program.contains(address) || i < head || i > b;
+    }
+
+    private static int index(Loop loop, int reg) {
+        for (int n = 0; n < loop.induction.length; n++) {
+            if (loop.induction[n] == reg) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    private static int step(Loop loop, int reg) {
+        int n = index(loop, reg);
+        return n < 0 ? 0 : loop.step[n];
+    }
+
+    /*
+     * Run whole iterations of the loop headed by instruction i, within budget
+     * cycles. Returns the cycles used in the upper half and the next address
+     * in the lower half, or NOT_RUN.
+     */
+    long run(int i, int[] r, Memory memory, int budget) {
+        if (i < 0 || i >= loops.length) {
+            return NOT_RUN;
+        }
+        Loop loop = loops[i];
+        if (loop == null) {
+            return NOT_RUN;
+        }
+        switch (loop.kind) {
+            case SCAN:
+            case SCAN_EXIT:
+                return scan(loop, i, r, memory, budget);
+            default:
+                return bulk(loop, i, r, memory, budget);
+        }
+    }
+
+    private long scan(Loop loop, int i, int[] r, Memory memory, int budget) {
+        int start = address(loop, r, loop.loadBase, loop.loadOffset, loop.loadAt);
+        int most = budget / loop.length;
+        if (most == 0) {
+            return NOT_RUN;
+        }
+        int found = memory.nonZero(start, most);
+        if (found < 0) {
+            found = -1 - found; // the engine steps into the fault
+        } else if (found < most) {
+            if (loop.kind == Kind.SCAN) {
+                // The iteration loading the zero runs to the end and falls through
+                advance(loop, r, found + 1);
+                r[loop.value] = 0;
+                return finish((long) loop.length * (found + 1), loop.exit);
+            }
+            if ((long) loop.length * found + 2 <= budget) {
+                // The zero is loaded, and beqz leaves
+                advance(loop, r, found);
+                r[loop.value] = 0;
+                return finish((long) loop.length * found + 2, loop.exit);
+            }
+        }
+        if (found == 0) {
+            return NOT_RUN;
+        }
+        int lastByte = memory.loadByte(start + found - 1);
+        advance(loop, r, found);
+        r[loop.value] = loop.load == Opcode.LBU ? lastByte & 0xff : lastByte;
+        return finish((long) loop.length * found, program.address(i));
+    }
+
+    private long bulk(Loop loop, int i, int[] r, Memory memory, int budget) {
+        long trips = trips(loop, r);
+        long n = Math.min(trips, budget / loop.length);
+        int width = loop.width;
+        int to = address(loop, r, loop.storeBase, loop.storeOffset, loop.storeAt);
+        int from = loop.load == null ? 0 : address(loop, r, loop.loadBase, loop.loadOffset, loop.loadAt);
+        // Stay clear of address wrap-around, unaligned words and smearing copies
+        n = Math.min(n, ((1L << 32) - Integer.toUnsignedLong(to)) / width);
+        if (loop.load != null) {
+            n = Math.min(n, ((1L << 32) - Integer.toUnsignedLong(from)) / width);
+            long gap = Integer.toUnsignedLong(to) - Integer.toUnsignedLong(from);
+            if (gap > 0 && gap < n * width) {
+                return NOT_RUN;
+            }
+        }
+        if (n <= 0 || width == 4 && ((to | from) & 3) != 0) {
+            return NOT_RUN;
+        }
+        int bytes = loop.load == null ? memory.fill(to, (int) n * width, width, r[loop.value])
+            : memory.move(to, from, (int) n * width);
+        if (bytes < n * width) {
+            // Stopped short of a page that faults; the engine steps into it
+            n = bytes / width;
+            if (n == 0) {
+                return NOT_RUN;
+            }
+        }
+        if (loop.load != null) {
+            // What the final iteration loaded, which no store of the copy overwrote
+            int at = from + bytes - width;
+            r[loop.value] = loop.load == Opcode.LW ? memory.loadWord(at)
+                : loop.load == Opcode.LBU ? memory.loadByte(at) & 0xff : memory.loadByte(at);
+        }
+        advance(loop, r, (int) n);
+        return finish(loop.length * n, n == trips ? loop.exit : program.address(i));
+    }
+
+    /* Iterations until the branch falls through, or Long.MAX_VALUE if it is too far off to count */
+    private static long trips(Loop loop, int[] r) {
+        long k = loop.step[loop.counter];
+        int c = r[loop.induction[loop.counter]];
+        int z = r[loop.limit];
+        if (loop.branch == Opcode.BNE) {
+            // Smallest n >= 1 with c + k * n == z, mod 2^32
+            long distance = Integer.toUnsignedLong(k > 0 ? z - c : c - z);
+            long magnitude = Math.abs(k);
+            if (Long.bitCount(magnitude) != 1) {
+                return 0;
+            }
+            if (distance % magnitude != 0) {
+                return Long.MAX_VALUE; // never equal
+            }
+            return (distance == 0 ? 1L << 32 : distance) / magnitude;
+        }
+        boolean unsigned = loop.branch == Opcode.BLTU;
+        long cv = unsigned ? Integer.toUnsignedLong(c) : c;
+        long zv = unsigned ? Integer.toUnsignedLong(z) : z;
+        long min = unsigned ? 0 : Integer.MIN_VALUE;
+        long max = unsigned ? 0xffffffffL : Integer.MAX_VALUE;
+        long n;
+        if (loop.counterLeft && k > 0) {
+            // Loops while c + k * n < z
+            n = zv - cv <= k ? 1 : (zv - cv + k - 1) / k;
+            if (cv + k * n > max) {
+                return 0;
+            }
+        } else if (!loop.counterLeft && k < 0) {
+            // Loops while z < c + k * n
+            n = cv - zv <= -k ? 1 : (cv - zv - k - 1) / -k;
+            if (cv + k * n < min) {
+                return 0;
+            }
+        } else {
+            return 0; // runs until the counter wraps
+        }
+        return n;
+    }
+
+    /* Address of a load or store in the first iteration, after any addi before it in the body */
+    private static int address(Loop loop, int[] r, int base, int offset, int at) {
+        int n = index(loop, base);
+        int value = r[base];
+        if (n >= 0 && loop.stepAt[n] < at) {
+            value += loop.step[n];
+        }
+        return value + offset;
+    }
+
+    private static void advance(Loop loop, int[] r, int iterations) {
+        for (int n = 0; n < loop.induction.length; n++) {
+            r[loop.induction[n]] += loop.step[n] * iterations;
+        }
+    }
+
+    private static long finish(long cycles, int next) {
+        return cycles << 32 | (next & 0xffffffffL);
+    }
+}
@@ -0,0 +1,349 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Memoizes calls made with jal ra whose results depend only on a0-a7. Each
+ * call is watched as it runs: what registers it reads before writing them,
+ * and where it loads and stores. A call is pure if, by the time it returns
+ * to its return address with sp back where it was,
+ *     - it read no registers but a0-a7, sp and ra,
+ *     - it made no ecall,
+ *     - it only touched memory in its own stack frame, [sp, sp at entry), and
+ *       only read words of it that it had written itself, and
+ *     - none of the registers it leaves changed hold a value derived from sp
+ *       or ra, other than ra restored to the return address, and
+ *     - no branch or indirect jump it took or skipped read such a value, as
+ *       then what it computed depends on sp.
+ * A pure call's changed registers and cycle count are kept under (target,
+ * a0-a7) in a bounded LRU map. A later call with the same key sets those
+ * registers, charges the same cycles and carries on at the return address,
+ * so output and cycle counts match a run without the memo. Only the skipped
+ * call's dead stack frame is left unwritten.
+ *
+ * Nested calls are watched at once: a callee's summary is folded into its
+ * caller when it returns, or when it is answered from the memo. Taint (derived
+ * from sp or ra) is tracked per register, and per stack word while any call
+ * is being watched. A target found impure once is not watched again; its
+ * instructions count towards whichever call is watching it.
+ */
+final class Memo {
+
+    private static final int MAX_DEPTH = 256;
+    private static final int SP = 1 << Registers.SP;
+    private static final int RA = 1 << Registers.RA;
+    private static final int ARGS = 0xff << Registers.A0;
+    private static final int FREE_READS = ARGS | SP | RA | 1 << Registers.ZERO;
+
+    /* A call being watched */
+    private static final class Frame {
+        int target;
+        int returnPc;
+        int entrySp;
+        int entryCycles;
+        final int[] args = new int[8];
+        long serial;     // orders frames, to tell stack words a frame wrote from older garbage
+        int read;        // registers read before being written
+        int written;
+        int tainted;     // registers holding values derived from sp or ra at entry
+        boolean impure;  // made an ecall, touched memory outside every watched frame or branched on sp
+        int highest;     // highest address accessed, unsigned, to tell whether it stayed in its own frame
+    }
+
+    /* Target and a0-a7 of a call */
+    private static final class Key {
+        int target;
+        final int[] args;
+
+        Key(int target, int[] args) {
+            this.target = target;
+            this.args = args;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * target + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).target == target && Arrays.equals(((Key) other).args, args);
+        }
+    }
+
+    /* What a pure call left behind */
+    private static final class Result {
+        final int read;
+        final int written;
+        final int[] values;       // of the written registers, in register order
+        final boolean raRestored; // ra is set back to the return address
+        final int cycles;         // from the jal through the return, inclusive
+
+        Result(int read, int written, int[] values, boolean raRestored, int cycles) {
+            this.read = read;
+            this.written = written;
+            this.values = values;
+            this.raRestored = raRestored;
+            this.cycles = cycles;
+        }
+    }
+
+    private final DecodedProgram program;
+    private final int[] r;
+    private final LinkedHashMap<Key, Result> results;
+    private final Key probe = new Key(0, new int[8]);
+
+    // Call targets, by instruction index, that have turned out impure
+    private final boolean[] impure;
+
+    private final Frame[] frames = new Frame[MAX_DEPTH];
+    private int depth;
+    private long serials;
+
+    // Stack words stored while watching: serial of the storing frame << 1 | tainted
+    private final HashMap<Integer, Long> words = new HashMap<Integer, Long>();
+
+    long hits; // calls answered from the memo
+
+    Memo(DecodedProgram program, int[] regs, final int capacity) {
+        this.program = program;
+        this.r = regs;
+        this.impure = new boolean[program.length];
+        this.results = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /*
+     * Watch instruction i at pc before it executes. Returns the cycles to
+     * charge if it was a call answered from the memo, its registers already
+     * set, and 0 if the instruction should execute as usual
+     */
+    int step(int i, int pc, int cycles, int budget) {
+        Opcode code = Opcode.VALUES[program.op[i]];
+        int rd = program.rd[i];
+        int rs1 = program.rs1[i];
+        int rs2 = program.rs2[i];
+        if (code == Opcode.JAL && rd == Registers.RA) {
+            return call(program.target[i], pc, cycles, budget);
+        }
+        if (depth == 0) {
+            return 0;
+        }
+        Frame f = frames[depth - 1];
+        switch (code.format) {
+            case R:
+                use(f, rs1);
+                use(f, rs2);
+                define(f, rd, tainted(f, rs1) || tainted(f, rs2));
+                break;
+            case I:
+            case RD_RS:
+                use(f, rs1);
+                define(f, rd, tainted(f, rs1));
+                break;
+            case RD_IMM:
+            case RD_LABEL:
+            case JAL:
+                define(f, rd, false);
+                break;
+            case LOAD:
+                use(f, rs1);
+                define(f, rd, load(f, r[rs1] + program.imm[i]));
+                break;
+            case STORE:
+                use(f, rs1);
+                use(f, rs2);
+                store(f, r[rs1] + program.imm[i], tainted(f, rs2));
+                break;
+            case BRANCH:
+                use(f, rs1);
+                use(f, rs2);
+                f.impure |= tainted(f, rs1) || tainted(f, rs2);
+                break;
+            case BRANCH_ZERO:
+                use(f, rs1);
+                f.impure |= tainted(f, rs1);
+                break;
+            case JR:
+                use(f, rs1);
+                if (r[rs1] == f.returnPc) {
+                    complete(f, cycles);
+                } else {
+                    f.impure |= tainted(f, rs1);
+                }
+                break;
+            case JALR:
+                use(f, rs1);
+                if (rd == Registers.ZERO && r[rs1] + program.imm[i] == f.returnPc) {
+                    complete(f, cycles);
+                } else {
+                    f.impure |= tainted(f, rs1);
+                    define(f, rd, false);
+                }
+                break;
+            case J:
+                break;
+            default:
+                f.impure = true; // ecall, or an instruction that ends the run
+                break;
+        }
+        return 0;
+    }
+
+    /* A jal ra: answer it from the memo, or start watching it */
+    private int call(int target, int pc, int cycles, int budget) {
+        System.arraycopy(r, Registers.A0, probe.args, 0, 8);
+        probe.target = target;
+        Result result = results.get(probe);
+        Frame caller = depth > 0 ? frames[depth - 1] : null;
+        if (caller != null) {
+            define(caller, Registers.RA, false);
+        }
+        // Only skip a call that would have returned within the budget
+        if (result != null && result.cycles <= budget - cycles) {
+            int k = 0;
+            for (int reg = 1; reg < Registers.COUNT; reg++) {
+                if ((result.written & 1 << reg) != 0) {
+                    r[reg] = result.values[k++];
+                }
+            }
+            if (result.raRestored) {
+                r[Registers.RA] = pc + 4;
+            }
+            if (caller != null) {
+                fold(caller, result.read, result.written, 0, result.raRestored);
+            }
+            hits++;
+            return result.cycles;
+        }
+        if (depth < MAX_DEPTH && program.contains(target) && !impure[program.index(target)]) {
+            Frame f = frames[depth];
+            if (f == null) {
+                f = new Frame();
+                frames[depth] = f;
+            }
+            depth++;
+            f.target = target;
+            f.returnPc = pc + 4;
+            f.entrySp = r[Registers.SP];
+            f.entryCycles = cycles;
+            System.arraycopy(r, Registers.A0, f.args, 0, 8);
+            f.serial = ++serials;
+            f.read = 0;
+            f.written = 0;
+            f.tainted = SP | RA;
+            f.impure = false;
+            f.highest = 0;
+        }
+        return 0;
+    }
+
+    /* f is returning; memoize it if it was pure, and fold it into its caller */
+    private void complete(Frame f, int cycles) {
+        depth--;
+        boolean raRestored = r[Registers.RA] == f.returnPc;
+        int leaked = f.tainted & f.written & ~SP & (raRestored ? ~RA : ~0);
+        boolean pure = !f.impure && r[Registers.SP] == f.entrySp && (f.read & ~FREE_READS) == 0 && leaked == 0
+            && Integer.compareUnsigned(f.highest, f.entrySp) < 0;
+        int written = f.written & ~SP;
+        if (pure) {
+            int[] values = new int[Integer.bitCount(written)];
+            int k = 0;
+            for (int reg = 1; reg < Registers.COUNT; reg++) {
+                if ((written & 1 << reg) != 0) {
+                    values[k++] = r[reg];
+                }
+            }
+            results.put(new Key(f.target, f.args.clone()),
+                        new Result(f.read, written, values, raRestored, cycles + 1 - f.entryCycles));
+        } else {
+            impure[program.index(f.target)] = true;
+        }
+        if (depth > 0) {
+            Frame caller = frames[depth - 1];
+            fold(caller, f.read, f.written, f.tainted, raRestored);
+            caller.impure |= f.impure;
+            if (Integer.compareUnsigned(f.highest, caller.highest) > 0) {
+                caller.highest = f.highest;
+            }
+        } else {
+            words.clear();
+        }
+    }
+
+    /* Account for a callee that read and wrote these registers in its caller */
+    private static void fold(Frame caller, int read, int written, int tainted, boolean raRestored) {
+        caller.read |= read & ~caller.written;
+        // Anything computed from an argument the caller derived from sp is derived from sp too
+        int taint = (read & caller.tainted & ARGS) != 0 ? written : tainted & written;
+        if (raRestored) {
+            taint &= ~RA;
+        }
+        caller.tainted = (caller.tainted & ~written) | taint;
+        caller.written |= written;
+    }
+
+    private static void use(Frame f, int reg) {
+        if ((f.written & 1 << reg) == 0) {
+            f.read |= 1 << reg;
+        }
+    }
+
+    private static void define(Frame f, int reg, boolean tainted) {
+        if (reg == Registers.ZERO) {
+            return;
+        }
+        f.written |= 1 << reg;
+        if (tainted) {
+            f.tainted |= 1 << reg;
+        } else {
+            f.tainted &= ~(1 << reg);
+        }
+    }
+
+    private static boolean tainted(Frame f, int reg) {
+        return (f.tainted & 1 << reg) != 0;
+    }
+
+    /* Check an access at address; false, and f marked impure, if it's outside every watched frame */
+    private boolean access(Frame f, int address) {
+        int sp = r[Registers.SP];
+        if (Integer.compareUnsigned(address - sp, frames[0].entrySp - sp) >= 0) {
+            f.impure = true;
+            return false;
+        }
+        if (Integer.compareUnsigned(address, f.highest) > 0) {
+            f.highest = address;
+        }
+        return true;
+    }
+
+    /* Whether a load reads a tainted word; marks f impure if the word is garbage to its owner */
+    private boolean load(Frame f, int address) {
+        if (!access(f, address)) {
+            return false;
+        }
+        // The frame the word belongs to has to have written it since it began
+        int owner = depth - 1;
+        while (owner > 0 && Integer.compareUnsigned(address, frames[owner].entrySp) >= 0) {
+            owner--;
+        }
+        Long word = words.get(address & ~3);
+        if (word == null || (word >>> 1) < frames[owner].serial) {
+            f.impure = true;
+            return false;
+        }
+        return (word & 1) != 0;
+    }
+
+    private void store(Frame f, int address, boolean tainted) {
+        if (access(f, address)) {
+            words.put(address & ~3, f.serial << 1 | (tainted ? 1 : 0));
+        }
+    }
+}
@@ -0,0 +1,492 @@
+import java.util.Arrays;
+
+/*
+ * Sparse, byte addressable, little-endian 32-bit address space. Words live in
+ * 4 KiB int[] pages reached through a two level table; a page is only
+ * allocated the first time something is stored to it, so the data segment,
+ * heap and stack each cost just the pages they touch. Unmapped memory reads
+ * as zero.
+ *
+ * copy() is O(1): the copy shares every table and page copy-on-write. Each
+ * second level table and page records the token of the Memory allowed to
+ * write it in place; copying gives both sides fresh tokens, so whichever
+ * writes first copies just that page (and its table) for itself. A shared page
+ * is never written again, so copies can run on different threads.
+ *
+ * The address space has two segments: the program image and heap, from the
+ * lowest loaded address up to the break that sbrk() moves, and the stack,
+ * STACK_SIZE bytes below 0x80000000. Once confined, an access to a page
+ * outside both throws a Fault, as does allocating more pages than the limit
+ * allows. A copy starts with the count of the Memory it came from, so
+ * copying a page it shares doesn't count again.
+ * Checks happen at page granularity, only when an access misses the cached
+ * pages, so the common path costs nothing extra.
+ */
+final class Memory {
+
+    static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final int PAGE_WORDS = PAGE_SIZE / 4;
+    private static final int WORD_MASK = PAGE_WORDS - 1;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int TABLE_BITS = 10;
+    private static final int TABLE_MASK = (1 << TABLE_BITS) - 1;
+    private static final int TABLES = 1 << (32 - PAGE_BITS - TABLE_BITS);
+
+    // Lowest address the heap starts at, where ecall 9 has always put it
+    static final int HEAP_BASE = 0x10008000;
+    static final int STACK_SIZE = 8 << 20;
+    static final int STACK_END = 0x80000000;
+
+    /* An access outside the segments, or past the page limit, once confined */
+    static final class Fault extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int address;
+        final boolean overLimit;
+
+        Fault(int address, boolean overLimit) {
+            super(String.format(overLimit ? "page limit reached writing 0x%08x" : "access to 0x%08x outside every segment",
+                                address), null, false, false);
+            this.address = address;
+            this.overLimit = overLimit;
+        }
+    }
+
+    // What an unallocated page reads as
+    private static final int[] ZERO_PAGE = new int[PAGE_WORDS];
+
+    private final int[][][] tables;
+
+    // Writer of each second level table, and of each page in it
+    private final Object[] tableOwners;
+    private final Object[][] pageOwners;
+    private Object token = new Object();
+
+    // Most recently used page, which nearly every access hits
+    private int cachedNumber = -1;
+    private int[] cachedPage;
+
+    // Most recently written page, which this Memory owns
+    private int writtenNumber = -1;
+    private int[] writtenPage;
+
+    // Layout: image and heap [imageStart, brk), heap from heapBase
+    private int imageStart = Assembler.DATA_BASE;
+    private int heapBase = HEAP_BASE;
+    private int brk = HEAP_BASE;
+
+    private boolean sandboxed;
+    private long maxPages; // pages this Memory may allocate or copy, 0 for no limit
+    private long pages;    // allocated so far, by this Memory or the one it was copied from
+
+    Memory() {
+        this(new int[TABLES][][], new Object[TABLES], new Object[TABLES][]);
+    }
+
+    private Memory(int[][][] tables, Object[] tableOwners, Object[][] pageOwners) {
+        this.tables = tables;
+        this.tableOwners = tableOwners;
+        this.pageOwners = pageOwners;
+    }
+
+    /* Page holding an address, or null if nothing was ever stored there */
+    private int[] page(int address) {
+        int number = address >>> PAGE_BITS;
+        if (number == cachedNumber) {
+            return cachedPage;
+        }
+        if (sandboxed) {
+            check(address);
+        }
+        int[][] table = tables[number >>> TABLE_BITS];
+        if (table == null) {
+            return null;
+        }
+        int[] page = table[number & TABLE_MASK];
+        if (page != null) {
+            cachedNumber = number;
+            cachedPage = page;
+        }
+        return page;
+    }
+
+    /* Page holding an address that this Memory may write, allocating or copying it if needed */
+    private int[] writablePage(int address) {
+        int number = address >>> PAGE_BITS;
+        if (number == writtenNumber) {
+            return writtenPage;
+        }
+        if (sandboxed) {
+            check(address);
+        }
+        int t = number >>> TABLE_BITS;
+        int p = number & TABLE_MASK;
+        int[][] table = tables[t];
+        if (table == null) {
+            table = new int[TABLE_MASK + 1][];
+            tables[t] = table;
+            pageOwners[t] = new Object[TABLE_MASK + 1];
+            tableOwners[t] = token;
+        } else if (tableOwners[t] != token) {
+            table = table.clone();
+            tables[t] = table;
+            pageOwners[t] = pageOwners[t].clone();
+            tableOwners[t] = token;
+        }
+        int[] page = table[p];
+        if (page == null) {
+            if (maxPages > 0 && pages >= maxPages) {
+                throw new Fault(address, true);
+            }
+            pages++;
+            page = new int[PAGE_WORDS];
+            table[p] = page;
+            pageOwners[t][p] = token;
+        } else if (pageOwners[t][p] != token) {
+            page = page.clone();
+            table[p] = page;
+            pageOwners[t][p] = token;
+        }
+        cachedNumber = number;
+        cachedPage = page;
+        writtenNumber = number;
+        writtenPage = page;
+        return page;
+    }
+
+    int loadWord(int address) {
+        if ((address & 3) != 0) {
+            return (loadByte(address) & 0xff)
+                | (loadByte(address + 1) & 0xff) << 8
+                | (loadByte(address + 2) & 0xff) << 16
+                | loadByte(address + 3) << 24;
+        }
+        int[] page = page(address);
+        return page == null ? 0 : page[(address >>> 2) & WORD_MASK];
+    }
+
+    /* Sign extended halfword */
+    int loadHalf(int address) {
+        if ((address & 1) != 0) {
+            return (loadByte(address) & 0xff) | loadByte(address + 1) << 8;
+        }
+        int[] page = page(address);
+        return page == null ? 0 : (short) (page[(address >>> 2) & WORD_MASK] >>> ((address & 3) << 3));
+    }
+
+    /* Sign extended byte */
+    int loadByte(int address) {
+        int[] page = page(address);
+        return page == null ? 0 : (byte) (page[(address >>> 2) & WORD_MASK] >>> ((address & 3) << 3));
+    }
+
+    void storeWord(int address, int value) {
+        if ((address & 3) != 0) {
+            storeByte(address, value);
+            storeByte(address + 1, value >> 8);
+            storeByte(address + 2, value >> 16);
+            storeByte(address + 3, value >> 24);
+            return;
+        }
+        writablePage(address)[(address >>> 2) & WORD_MASK] = value;
+    }
+
+    void storeHalf(int address, int value) {
+        if ((address & 1) != 0) {
+            storeByte(address, value);
+            storeByte(address + 1, value >> 8);
+            return;
+        }
+        int[] page = writablePage(address);
+        int index = (address >>> 2) & WORD_MASK;
+        int shift = (address & 3) << 3;
+        page[index] = (page[index] & ~(0xffff << shift)) | ((value & 0xffff) << shift);
+    }
+
+    void storeByte(int address, int value) {
+        int[] page = writablePage(address);
+        int index = (address >>> 2) & WORD_MASK;
+        int shift = (address & 3) << 3;
+        page[index] = (page[index] & ~(0xff << shift)) | ((value & 0xff) << shift);
+    }
+
+    /* Fault if address is on a page outside both segments */
+    private void check(int address) {
+        int number = address >>> PAGE_BITS;
+        boolean image = number >= imageStart >>> PAGE_BITS
+            && number <= (int) (((brk & 0xffffffffL) - 1) >>> PAGE_BITS);
+        boolean stack = number >= (STACK_END - STACK_SIZE) >>> PAGE_BITS && number < STACK_END >>> PAGE_BITS;
+        if (!image && !stack) {
+            throw new Fault(address, false);
+        }
+    }
+
+    /* Record where a loaded image spans; the heap starts after it, and no lower than HEAP_BASE */
+    void layOut(int start, int end) {
+        imageStart = start;
+        long base = Math.max(HEAP_BASE, ((end & 0xffffffffL) + 7) & ~7L);
+        heapBase = (int) Math.min(base, STACK_END - STACK_SIZE);
+        brk = heapBase;
+    }
+
+    /* Start enforcing the segments, if asked, and a limit on allocated bytes, 0 for none */
+    void confine(boolean sandbox, long maxBytes) {
+        sandboxed = sandbox;
+        maxPages = maxBytes > 0 ? Math.max(1, maxBytes >>> PAGE_BITS) : 0;
+        // Cached pages were never checked
+        cachedNumber = -1;
+        cachedPage = null;
+        writtenNumber = -1;
+        writtenPage = null;
+    }
+
+    /* Move the break by increment bytes; the old break, or -1 if it would leave the heap */
+    int sbrk(int increment) {
+        long next = (brk & 0xffffffffL) + increment;
+        if (next < (heapBase & 0xffffffffL) || next > STACK_END - STACK_SIZE) {
+            return -1;
+        }
+        int old = brk;
+        brk = (int) next;
+        return old;
+    }
+
+    int heapBase() {
+        return heapBase;
+    }
+
+    int brk() {
+        return brk;
+    }
+
+    int imageStart() {
+        return imageStart;
+    }
+
+    /* Restore a layout saved from another Memory */
+    void layOut(int start, int heapBase, int brk) {
+        this.imageStart = start;
+        this.heapBase = heapBase;
+        this.brk = brk;
+    }
+
+    /*
+     * Store count bytes from address: value's low byte, or all of value
+     * repeated if width is 4, in which case address and count are multiples
+     * of 4. Stops short, at a page boundary, where the next page would
+     * fault, and returns the bytes stored.
+     */
+    int fill(int address, int count, int width, int value) {
+        int pattern = width == 4 ? value : (value & 0xff) * 0x01010101;
+        int done = 0;
+        while (done < count) {
+            int at = address + done;
+            int[] page;
+            try {
+                page = writablePage(at);
+            } catch (Fault e) {
+                return done;
+            }
+            int n = Math.min(count - done, PAGE_SIZE - (at & PAGE_MASK));
+            int from = at & PAGE_MASK;
+            int to = from + n;
+            // Ragged bytes at either end, whole words between
+            while (from < to && (from & 3) != 0) {
+                putByte(page, from++, pattern);
+            }
+            while (to > from && (to & 3) != 0) {
+                putByte(page, --to, pattern);
+            }
+            Arrays.fill(page, from >>> 2, to >>> 2, pattern);
+            done += n;
+        }
+        return done;
+    }
+
+    /*
+     * Copy count bytes from one address to another, the way a forward byte
+     * loop would; to must not lie inside (from, from + count). Stops short,
+     * at a page boundary, where the next page would fault, and returns the
+     * bytes copied.
+     */
+    int move(int to, int from, int count) {
+        int done = 0;
+        while (done < count) {
+            int dst = to + done;
+            int src = from + done;
+            int[] target;
+            int[] source;
+            try {
+                // Load first, like the loop; if writing then copies the page, source keeps the same bytes
+                source = page(src);
+                target = writablePage(dst);
+            } catch (Fault e) {
+                return done;
+            }
+            int n = Math.min(count - done, PAGE_SIZE - Math.max(dst & PAGE_MASK, src & PAGE_MASK));
+            if (((dst | src | n) & 3) == 0) {
+                if (source == null) {
+                    Arrays.fill(target, (dst & PAGE_MASK) >>> 2, ((dst & PAGE_MASK) + n) >>> 2, 0);
+                } else {
+                    System.arraycopy(source, (src & PAGE_MASK) >>> 2, target, (dst & PAGE_MASK) >>> 2, n >>> 2);
+                }
+            } else {
+                for (int b = 0; b < n; b++) {
+                    int value = source == null ? 0 : source[((src + b) & PAGE_MASK) >>> 2] >>> (((src + b) & 3) << 3);
+                    putByte(target, (dst + b) & PAGE_MASK, value);
+                }
+            }
+            done += n;
+        }
+        return done;
+    }
+
+    /*
+     * Count the non-zero bytes from address up to the first zero, looking at
+     * no more than limit; a word at a time once aligned. Returns -1 - the
+     * count instead if it stopped because the next page would fault.
+     */
+    int nonZero(int address, int limit) {
+        int count = 0;
+        while (count < limit) {
+            int at = address + count;
+            int[] page;
+            try {
+                page = page(at);
+            } catch (Fault e) {
+                return -1 - count;
+            }
+            if (page == null) {
+                return count;
+            }
+            int end = count + Math.min(limit - count, PAGE_SIZE - (at & PAGE_MASK));
+            while (count < end && ((address + count) & 3) != 0) {
+                if (getByte(page, (address + count) & PAGE_MASK) == 0) {
+                    return count;
+                }
+                count++;
+            }
+            while (end - count >= 4) {
+                int word = page[((address + count) & PAGE_MASK) >>> 2];
+                int zeros = (word - 0x01010101) & ~word & 0x80808080;
+                if (zeros != 0) {
+                    return count + (Integer.numberOfTrailingZeros(zeros) >>> 3);
+                }
+                count += 4;
+            }
+            while (count < end) {
+                if (getByte(page, (address + count) & PAGE_MASK) == 0) {
+                    return count;
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /* Copy length bytes starting at address into bytes */
+    void read(int address, byte[] bytes, int length) {
+        for (int b = 0; b < length; ) {
+            int at = address + b;
+            int[] page = page(at);
+            int end = b + Math.min(length - b, PAGE_SIZE - (at & PAGE_MASK));
+            for (; b < end; b++) {
+                bytes[b] = page == null ? 0 : (byte) getByte(page, (address + b) & PAGE_MASK);
+            }
+        }
+    }
+
+    private static int getByte(int[] page, int offset) {
+        return (page[offset >>> 2] >>> ((offset & 3) << 3)) & 0xff;
+    }
+
+    private static void putByte(int[] page, int offset, int value) {
+        int shift = (offset & 3) << 3;
+        page[offset >>> 2] = (page[offset >>> 2] & ~(0xff << shift)) | ((value & 0xff) << shift);
+    }
+
+    /* Receives allocated pages, by page number, in address order */
+    interface PageVisitor {
+        void visit(int number, int[] words);
+    }
+
+    void forEachPage(PageVisitor visitor) {
+        for (int t = 0; t < tables.length; t++) {
+            if (tables[t] == null) {
+                continue;
+            }
+            for (int p = 0; p <= TABLE_MASK; p++) {
+                if (tables[t][p] != null) {
+                    visitor.visit((t << TABLE_BITS) | p, tables[t][p]);
+                }
+            }
+        }
+    }
+
+    /* Page number's words, allocating the page if needed; callers fill it in place */
+    int[] pageForWrite(int number) {
+        return writablePage(number << PAGE_BITS);
+    }
+
+    /* Independent copy, sharing every page until one side writes it; call it while nothing is writing this */
+    synchronized Memory copy() {
+        Memory copy = new Memory(tables.clone(), tableOwners.clone(), pageOwners.clone());
+        copy.layOut(imageStart, heapBase, brk);
+        copy.sandboxed = sandboxed;
+        copy.maxPages = maxPages;
+        copy.pages = pages;
+        // Neither side owns anything now
+        token = new Object();
+        writtenNumber = -1;
+        writtenPage = null;
+        return copy;
+    }
+
+    /*
+     * Whether this holds the same bytes and layout as other, where one was
+     * copied from the other; pages and tables both still share are skipped.
+     */
+    boolean same(Memory other) {
+        if (imageStart != other.imageStart || heapBase != other.heapBase || brk != other.brk) {
+            return false;
+        }
+        for (int t = 0; t < tables.length; t++) {
+            int[][] table = tables[t];
+            int[][] otherTable = other.tables[t];
+            if (table == otherTable) {
+                continue;
+            }
+            for (int p = 0; p <= TABLE_MASK; p++) {
+                int[] page = table == null || table[p] == null ? ZERO_PAGE : table[p];
+                int[] otherPage = otherTable == null || otherTable[p] == null ? ZERO_PAGE : otherTable[p];
+                if (page != otherPage && !Arrays.equals(page, otherPage)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /* Print every non-zero word in address order */
+    void print() {
+        for (int t = 0; t < tables.length; t++) {
+            if (tables[t] == null) {
+                continue;
+            }
+            for (int p = 0; p <= TABLE_MASK; p++) {
+                int[] page = tables[t][p];
+                if (page == null) {
+                    continue;
+                }
+                int base = ((t << TABLE_BITS) | p) << PAGE_BITS;
+                for (int w = 0; w < PAGE_WORDS; w++) {
+                    if (page[w] != 0) {
+                        System.out.print(Integer.toHexString(base + 4 * w) + " ");
+                        System.out.println(Integer.toHexString(page[w]));
+                    }
+                }
+            }
+        }
+    }
+}
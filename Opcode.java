@@ -0,0 +1,107 @@
+import java.util.HashMap;
+
+/* Instructions understood by the interpreter, along with how each is written */
+enum Opcode {
+    LUI("lui", Format.RD_IMM),
+    ADD("add", Format.R),
+    JAL("jal", Format.JAL),
+    MV("mv", Format.RD_RS),
+    ADDI("addi", Format.I),
+    SW("sw", Format.STORE),
+    LI("li", Format.RD_IMM),
+    LW("lw", Format.LOAD),
+    ECALL("ecall", Format.NONE),
+    BEQ("beq", Format.BRANCH),
+    BNE("bne", Format.BRANCH),
+    BLT("blt", Format.BRANCH),
+    BGE("bge", Format.BRANCH),
+    BLTU("bltu", Format.BRANCH),
+    BGEU("bgeu", Format.BRANCH),
+    BEQZ("beqz", Format.BRANCH_ZERO),
+    BNEZ("bnez", Format.BRANCH_ZERO),
+    BGTZ("bgtz", Format.BRANCH_ZERO),
+    BGEZ("bgez", Format.BRANCH_ZERO),
+    BLEZ("blez", Format.BRANCH_ZERO),
+    BLTZ("bltz", Format.BRANCH_ZERO),
+    JR("jr", Format.JR),
+    LA("la", Format.RD_LABEL),
+    J("j", Format.J),
+    XOR("xor", Format.R),
+    DIV("div", Format.R),
+    SLLI("slli", Format.I),
+    SRLI("srli", Format.I),
+    JALR("jalr", Format.JALR),
+    MUL("mul", Format.R),
+    OR("or", Format.R),
+    AND("and", Format.R),
+    SUB("sub", Format.R),
+    LB("lb", Format.LOAD),
+    SB("sb", Format.STORE),
+    REM("rem", Format.R),
+    SLT("slt", Format.R),
+    SLTU("sltu", Format.R),
+    SLTI("slti", Format.I),
+    SLTIU("sltiu", Format.I),
+    ANDI("andi", Format.I),
+    ORI("ori", Format.I),
+    XORI("xori", Format.I),
+    SLL("sll", Format.R),
+    SRL("srl", Format.R),
+    SRA("sra", Format.R),
+    SRAI("srai", Format.I),
+    MULH("mulh", Format.R),
+    MULHSU("mulhsu", Format.R),
+    MULHU("mulhu", Format.R),
+    DIVU("divu", Format.R),
+    REMU("remu", Format.R),
+    LH("lh", Format.LOAD),
+    LHU("lhu", Format.LOAD),
+    LBU("lbu", Format.LOAD),
+    SH("sh", Format.STORE),
+    AUIPC("auipc", Format.RD_IMM),
+    UNKNOWN(null, Format.NONE),
+    INPUT(null, Format.NONE); // jal $input, which a run stops at rather than executes
+
+    /* How the operands of an instruction are laid out in assembly */
+    enum Format {
+        R,           // rd, rs1, rs2
+        I,           // rd, rs1, imm
+        RD_IMM,      // rd, imm
+        RD_RS,       // rd, rs1
+        RD_LABEL,    // rd, label
+        LOAD,        // rd, imm(rs1) or rd, label
+        STORE,       // rs2, imm(rs1) or rs2, label
+        BRANCH,      // rs1, rs2, label
+        BRANCH_ZERO, // rs1, label
+        JAL,         // [rd,] label
+        J,           // label
+        JR,          // rs1
+        JALR,        // rs1 or rd, rs1[, imm] or rd, imm(rs1)
+        NONE
+    }
+
+    static final Opcode[] VALUES = values();
+    private static final HashMap<String, Opcode> BY_NAME = new HashMap<String, Opcode>();
+
+    static {
+        for (Opcode op : VALUES) {
+            if (op.mnemonic != null) {
+                BY_NAME.put(op.mnemonic, op);
+            }
+        }
+    }
+
+    final String mnemonic;
+    final Format format;
+
+    Opcode(String mnemonic, Format format) {
+        this.mnemonic = mnemonic;
+        this.format = format;
+    }
+
+    /* Find the opcode for an assembly mnemonic, or UNKNOWN */
+    static Opcode lookup(String mnemonic) {
+        Opcode op = BY_NAME.get(mnemonic);
+        return op == null ? UNKNOWN : op;
+    }
+}
@@ -0,0 +1,704 @@
+import java.util.Arrays;
+
+/*
+ * Rewrites straight-line code before the switch engine runs it. The first
+ * time the interpreter reaches an instruction that starts a run of plain
+ * arithmetic, loads and stores, that run, up to the next branch, jump, ecall
+ * or MAX_BLOCK instructions, is turned into a shorter list of operations:
+ *
+ *     constants are propagated, so li/lui/auipc/la feed straight into what
+ *         uses them, arithmetic on constants folds into one li, and a load or
+ *         store from a known address takes it as its offset from x0
+ *     copies are folded, so a use of a mv'd register reads the original
+ *     strength is reduced: mul, divu and remu by powers of two become shifts
+ *         and masks, register operands known to be constant become immediates,
+ *         and identities such as addi rd, rs, 0 become plain moves
+ *     writes nothing reads are dropped, using which registers are live where
+ *         the block ends, worked out over the whole program up front
+ *
+ * A block is charged every instruction it stands for, and only starts if the
+ * remaining budget covers all of them, so cycle counts and where a run stops
+ * are exactly those of the plain interpreter. Loads and stores all stay, in
+ * order, so output and memory are unchanged; only registers the rest of the
+ * program never reads can end up holding something else. A load or store
+ * that faults inside a block is charged and located as the instruction it
+ * came from, through faulted(), and leaves every register as that
+ * instruction would have seen it: writes in front of a load or store are only
+ * dropped if they were constants, which are put back if it faults.
+ */
+final class Optimizer {
+
+    // Returned by run() when the interpreter should run the instruction itself
+    static final long NOT_RUN = -1L;
+
+    // Longest block rewritten
+    private static final int MAX_BLOCK = 32;
+
+    private static final int ALL = -1; // every register live
+
+    /* A rewritten block */
+    private static final class Block {
+        final int cost;  // instructions it stands for
+        final int next;  // address after it
+        final int[] op;
+        final int[] rd;
+        final int[] rs1;
+        final int[] rs2;
+        final int[] imm;
+        final int[] from; // instruction each operation came from, counted from the block's first
+        final int[][] restore; // for loads and stores, {register, value} pairs of the constants known there
+
+        Block(int cost, int next, int[] op, int[] rd, int[] rs1, int[] rs2, int[] imm, int[] from, int[][] restore) {
+            this.cost = cost;
+            this.next = next;
+            this.op = op;
+            this.rd = rd;
+            this.rs1 = rs1;
+            this.rs2 = rs2;
+            this.imm = imm;
+            this.from = from;
+            this.restore = restore;
+        }
+    }
+
+    // Marks an entry whose block isn't worth rewriting
+    private static final Block NONE = new Block(0, 0, null, null, null, null, null, null, null);
+
+    private final DecodedProgram program;
+    private final int[] liveOut; // registers read after each instruction before being written, one bit each
+    private final Block[] blocks;
+    private int faulted; // instructions of the last block run before the one that faulted
+
+    Optimizer(DecodedProgram program) {
+        this.program = program;
+        this.liveOut = liveness(program);
+        this.blocks = new Block[program.length];
+    }
+
+    /*
+     * Run the block starting at instruction i if the budget covers it.
+     * Returns the cycles charged in the upper half and the next address in
+     * the lower half, or NOT_RUN.
+     */
+    long run(int i, int[] r, Memory memory, int budget) {
+        if (i < 0 || i >= blocks.length) {
+            return NOT_RUN;
+        }
+        Block block = blocks[i];
+        if (block == null) {
+            block = rewrite(i);
+            blocks[i] = block;
+        }
+        if (block == NONE || budget < block.cost) {
+            return NOT_RUN;
+        }
+        final int[] op = block.op;
+        final int[] rd = block.rd;
+        final int[] rs1 = block.rs1;
+        final int[] rs2 = block.rs2;
+        final int[] imm = block.imm;
+        int k = 0;
+        try {
+            for (; k < op.length; k++) {
+                step(op[k], rd[k], rs1[k], rs2[k], imm[k], r, memory);
+            }
+        } catch (Memory.Fault e) {
+            int[] restore = block.restore[k];
+            for (int n = 0; n < restore.length; n += 2) {
+                r[restore[n]] = restore[n + 1];
+            }
+            faulted = block.from[k];
+            throw e;
+        }
+        return (long) block.cost << 32 | (block.next & 0xffffffffL);
+    }
+
+    /* Instructions a block completed before the load or store that faulted, to charge and step over */
+    int faulted() {
+        return faulted;
+    }
+
+    /* One rewritten operation, as the interpreter's switch would run it */
+    private static void step(int op, int rd, int rs1, int rs2, int imm, int[] r, Memory memory) {
+        switch (Opcode.VALUES[op]) {
+            case LI:
+                r[rd] = imm;
+                break;
+            case MV:
+                r[rd] = r[rs1];
+                break;
+            case ADDI:
+                r[rd] = r[rs1] + imm;
+                break;
+            case ANDI:
+                r[rd] = r[rs1] & imm;
+                break;
+            case ORI:
+                r[rd] = r[rs1] | imm;
+                break;
+            case XORI:
+                r[rd] = r[rs1] ^ imm;
+                break;
+            case SLLI:
+                r[rd] = r[rs1] << imm;
+                break;
+            case SRLI:
+                r[rd] = r[rs1] >>> imm;
+                break;
+            case SRAI:
+                r[rd] = r[rs1] >> imm;
+                break;
+            case SLTI:
+                r[rd] = Arithmetic.slt(r[rs1], imm);
+                break;
+            case SLTIU:
+                r[rd] = Arithmetic.sltu(r[rs1], imm);
+                break;
+            case ADD:
+                r[rd] = r[rs1] + r[rs2];
+                break;
+            case SUB:
+                r[rd] = r[rs1] - r[rs2];
+                break;
+            case AND:
+                r[rd] = r[rs1] & r[rs2];
+                break;
+            case OR:
+                r[rd] = r[rs1] | r[rs2];
+                break;
+            case XOR:
+                r[rd] = r[rs1] ^ r[rs2];
+                break;
+            case SLL:
+                r[rd] = r[rs1] << r[rs2];
+                break;
+            case SRL:
+                r[rd] = r[rs1] >>> r[rs2];
+                break;
+            case SRA:
+                r[rd] = r[rs1] >> r[rs2];
+                break;
+            case SLT:
+                r[rd] = Arithmetic.slt(r[rs1], r[rs2]);
+                break;
+            case SLTU:
+                r[rd] = Arithmetic.sltu(r[rs1], r[rs2]);
+                break;
+            case MUL:
+                r[rd] = r[rs1] * r[rs2];
+                break;
+            case MULH:
+                r[rd] = Arithmetic.mulh(r[rs1], r[rs2]);
+                break;
+            case MULHSU:
+                r[rd] = Arithmetic.mulhsu(r[rs1], r[rs2]);
+                break;
+            case MULHU:
+                r[rd] = Arithmetic.mulhu(r[rs1], r[rs2]);
+                break;
+            case DIV:
+                r[rd] = Arithmetic.div(r[rs1], r[rs2]);
+                break;
+            case DIVU:
+                r[rd] = Arithmetic.divu(r[rs1], r[rs2]);
+                break;
+            case REM:
+                r[rd] = Arithmetic.rem(r[rs1], r[rs2]);
+                break;
+            case REMU:
+                r[rd] = Arithmetic.remu(r[rs1], r[rs2]);
+                break;
+            case LW:
+                r[rd] = memory.loadWord(r[rs1] + imm);
+                break;
+            case LH:
+                r[rd] = memory.loadHalf(r[rs1] + imm);
+                break;
+            case LHU:
+                r[rd] = memory.loadHalf(r[rs1] + imm) & 0xffff;
+                break;
+            case LB:
+                r[rd] = memory.loadByte(r[rs1] + imm);
+                break;
+            case LBU:
+                r[rd] = memory.loadByte(r[rs1] + imm) & 0xff;
+                break;
+            case SW:
+                memory.storeWord(r[rs1] + imm, r[rs2]);
+                break;
+            case SH:
+                memory.storeHalf(r[rs1] + imm, r[rs2]);
+                break;
+            case SB:
+                memory.storeByte(r[rs1] + imm, r[rs2]);
+                break;
+            default:
+                throw new IllegalStateException("not rewritten: " + Opcode.VALUES[op]);
+        }
+    }
+
+    /* Whether the optimizer takes op into a block */
+    private static boolean straightLine(Opcode op, int rd) {
+        switch (op.format) {
+            case R:
+            case I:
+            case RD_IMM:
+            case RD_RS:
+            case RD_LABEL:
+            case STORE:
+                return true;
+            case LOAD:
+                return rd != 0; // a load into x0 would need x0 put back before the next read
+            default:
+                return false;
+        }
+    }
+
+    /* Fixed point of which registers each instruction's successors may read before writing */
+    private static int[] liveness(DecodedProgram program) {
+        int n = program.length;
+        int[] use = new int[n];
+        int[] def = new int[n];
+        int[] out = new int[n];
+        int[] in = new int[n];
+        for (int i = 0; i < n; i++) {
+            Opcode op = Opcode.VALUES[program.op[i]];
+            int rd = 1 << program.rd[i];
+            int rs1 = 1 << program.rs1[i];
+            int rs2 = 1 << program.rs2[i];
+            switch (op.format) {
+                case R:
+                case BRANCH:
+                    use[i] = rs1 | rs2;
+                    def[i] = op.format == Opcode.Format.R ? rd : 0;
+                    break;
+                case I:
+                case RD_RS:
+                case LOAD:
+                    use[i] = rs1;
+                    def[i] = rd;
+                    break;
+                case RD_IMM:
+                case RD_LABEL:
+                case JAL:
+                    def[i] = rd;
+                    break;
+                case STORE:
+                    use[i] = rs1 | rs2;
+                    break;
+                case BRANCH_ZERO:
+                case JR:
+                case JALR:
+                    use[i] = rs1;
+                    break;
+                case J:
+                    break;
+                default:
+                    // ecall reads its service and argument; anything else, everything
+                    use[i] = op == Opcode.ECALL ? 1 << Registers.A0 | 1 << Registers.A1 : ALL;
+                    break;
+            }
+            in[i] = use[i];
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = n - 1; i >= 0; i--) {
+                int live = successorsLive(program, i, in);
+                if (live != out[i]) {
+                    out[i] = live;
+                    in[i] = use[i] | (live & ~def[i]);
+                    changed = true;
+                }
+            }
+        }
+        return out;
+    }
+
+    private static int successorsLive(DecodedProgram program, int i, int[] in) {
+        Opcode op = Opcode.VALUES[program.op[i]];
+        switch (op.format) {
+            case BRANCH:
+            case BRANCH_ZERO:
+                return live(program, i + 1, in) | liveAt(program, program.target[i], in);
+            case J:
+            case JAL:
+                return liveAt(program, program.target[i], in);
+            case JR:
+            case JALR:
+            case NONE:
+                // Anywhere, or nowhere the program text says
+                return op == Opcode.ECALL ? live(program, i + 1, in) : ALL;
+            default:
+                return live(program, i + 1, in);
+        }
+    }
+
+    private static int live(DecodedProgram program, int i, int[] in) {
+        return i >= 0 && i < program.length ? in[i] : ALL;
+    }
+
+    private static int liveAt(DecodedProgram program, int address, int[] in) {
+        return program.contains(address) ? in[program.index(address)] : ALL;
+    }
+
+    /* Constant propagation, copy folding and strength reduction forward, then dead writes dropped backward */
+    private Block rewrite(int start) {
+        int end = start;
+        while (end < program.length && end - start < MAX_BLOCK
+                && straightLine(Opcode.VALUES[program.op[end]], program.rd[end])) {
+            end++;
+        }
+        int cost = end - start;
+        if (cost < 2) {
+            return NONE;
+        }
+        Rewriter out = new Rewriter(cost);
+        for (int i = start; i < end; i++) {
+            out.current = i - start;
+            out.add(i);
+        }
+        int kept = out.dropDeadWrites(liveOut[end - 1]);
+        if (kept >= cost) {
+            return NONE;
+        }
+        return out.block(cost, program.address(end));
+    }
+
+    /* Operations emitted for one block, with what is known about each register along the way */
+    private final class Rewriter {
+        final int[] op;
+        final int[] rd;
+        final int[] rs1;
+        final int[] rs2;
+        final int[] imm;
+        final int[] from;
+        final int[][] restore;
+        final int[] constants; // registers known to be constant in front of each operation, one bit each
+        final boolean[] kept;
+        int length;
+        int current; // instruction being rewritten, counted from the block's first
+
+        final boolean[] known = new boolean[Registers.COUNT];
+        final int[] value = new int[Registers.COUNT];
+        final int[] copyOf = new int[Registers.COUNT]; // register holding the same value, or -1
+
+        Rewriter(int capacity) {
+            op = new int[capacity];
+            rd = new int[capacity];
+            rs1 = new int[capacity];
+            rs2 = new int[capacity];
+            imm = new int[capacity];
+            from = new int[capacity];
+            restore = new int[capacity][];
+            constants = new int[capacity];
+            kept = new boolean[capacity];
+            Arrays.fill(copyOf, -1);
+            known[Registers.ZERO] = true;
+        }
+
+        /* The register to read for reg's current value */
+        int source(int reg) {
+            return copyOf[reg] >= 0 ? copyOf[reg] : reg;
+        }
+
+        void add(int i) {
+            Opcode code = Opcode.VALUES[program.op[i]];
+            int d = program.rd[i];
+            int a = source(program.rs1[i]);
+            int b = source(program.rs2[i]);
+            int k = program.imm[i];
+            switch (code.format) {
+                case RD_IMM:
+                case RD_LABEL:
+                    constant(d, code == Opcode.LUI ? k << 12
+                             : code == Opcode.AUIPC ? program.address(i) + (k << 12)
+                             : code == Opcode.LA ? program.target[i] : k);
+                    return;
+                case RD_RS:
+                    move(d, a);
+                    return;
+                case LOAD:
+                    if (known[a]) {
+                        emit(code, d, 0, 0, value[a] + k);
+                    } else {
+                        emit(code, d, a, 0, k);
+                    }
+                    written(d);
+                    return;
+                case STORE:
+                    int stored = known[b] && value[b] == 0 ? 0 : b;
+                    if (known[a]) {
+                        emit(code, 0, 0, stored, value[a] + k);
+                    } else {
+                        emit(code, 0, a, stored, k);
+                    }
+                    return;
+                case I:
+                    immediate(code, d, a, k);
+                    return;
+                default:
+                    registers(code, d, a, b);
+                    return;
+            }
+        }
+
+        /* op rd, a, k with a's value perhaps known */
+        void immediate(Opcode code, int d, int a, int k) {
+            if (known[a]) {
+                constant(d, fold(code, value[a], k));
+            } else if (k == 0 && (code == Opcode.ADDI || code == Opcode.ORI || code == Opcode.XORI
+                                  || code == Opcode.SLLI || code == Opcode.SRLI || code == Opcode.SRAI)
+                       || k == -1 && code == Opcode.ANDI) {
+                move(d, a);
+            } else if (k == 0 && code == Opcode.ANDI) {
+                constant(d, 0);
+            } else {
+                compute(code, d, a, 0, k);
+            }
+        }
+
+        /* op rd, a, b, turned into an immediate form or something cheaper where a value is known */
+        void registers(Opcode code, int d, int a, int b) {
+            if (known[a] && known[b]) {
+                constant(d, fold(code, value[a], value[b]));
+                return;
+            }
+            Opcode form = immediateForm(code);
+            if (known[b] && form != null) {
+                immediate(form, d, a, code == Opcode.SUB ? -value[b] : value[b]);
+                return;
+            }
+            if (known[a] && form != null && commutes(code)) {
+                immediate(form, d, b, value[a]);
+                return;
+            }
+            if (a == b && (code == Opcode.SUB || code == Opcode.XOR)) {
+                constant(d, 0);
+                return;
+            }
+            int c = known[b] ? value[b] : known[a] && code == Opcode.MUL ? value[a] : 0;
+            int x = known[b] ? a : b;
+            if (code == Opcode.MUL && (known[a] || known[b])) {
+                if (c == 0) {
+                    constant(d, 0);
+                } else if (Integer.bitCount(c) == 1) {
+                    immediate(Opcode.SLLI, d, x, Integer.numberOfTrailingZeros(c));
+                } else {
+                    compute(code, d, a, b, 0);
+                }
+            } else if ((code == Opcode.DIVU || code == Opcode.REMU) && known[b] && Integer.bitCount(c) == 1) {
+                immediate(code == Opcode.DIVU ? Opcode.SRLI : Opcode.ANDI, d, a,
+                          code == Opcode.DIVU ? Integer.numberOfTrailingZeros(c) : c - 1);
+            } else if ((code == Opcode.DIV || code == Opcode.DIVU) && known[b] && c == 0) {
+                constant(d, -1);
+            } else if ((code == Opcode.REM || code == Opcode.REMU) && known[b] && c == 0) {
+                move(d, a);
+            } else if (code == Opcode.DIV && known[b] && c == 1) {
+                move(d, a);
+            } else {
+                compute(code, d, a, b, 0);
+            }
+        }
+
+        void constant(int d, int k) {
+            if (d == 0) {
+                return;
+            }
+            emit(Opcode.LI, d, 0, 0, k);
+            written(d);
+            known[d] = true;
+            value[d] = k;
+        }
+
+        void move(int d, int a) {
+            if (known[a]) {
+                constant(d, value[a]);
+                return;
+            }
+            if (d == 0 || d == a) {
+                return;
+            }
+            emit(Opcode.MV, d, a, 0, 0);
+            written(d);
+            copyOf[d] = a;
+        }
+
+        void compute(Opcode code, int d, int a, int b, int k) {
+            if (d == 0) {
+                return;
+            }
+            emit(code, d, a, b, k);
+            written(d);
+        }
+
+        /* Forget what was known about d and anything copied from it */
+        void written(int d) {
+            known[d] = false;
+            copyOf[d] = -1;
+            for (int reg = 1; reg < Registers.COUNT; reg++) {
+                if (copyOf[reg] == d) {
+                    copyOf[reg] = -1;
+                }
+            }
+        }
+
+        void emit(Opcode code, int d, int a, int b, int k) {
+            op[length] = code.ordinal();
+            rd[length] = d;
+            rs1[length] = a;
+            rs2[length] = b;
+            imm[length] = k;
+            from[length] = current;
+            if (code.format == Opcode.Format.LOAD || code.format == Opcode.Format.STORE) {
+                int[] pairs = new int[2 * Registers.COUNT];
+                int n = 0;
+                for (int reg = 1; reg < Registers.COUNT; reg++) {
+                    if (known[reg]) {
+                        constants[length] |= 1 << reg;
+                        pairs[n++] = reg;
+                        pairs[n++] = value[reg];
+                    }
+                }
+                restore[length] = Arrays.copyOf(pairs, n);
+            }
+            length++;
+        }
+
+        /* Mark which operations survive, given the registers live after the block; returns how many */
+        int dropDeadWrites(int live) {
+            int count = 0;
+            for (int k = length - 1; k >= 0; k--) {
+                Opcode code = Opcode.VALUES[op[k]];
+                boolean memory = code.format == Opcode.Format.LOAD || code.format == Opcode.Format.STORE;
+                if (!memory && (live & 1 << rd[k]) == 0) {
+                    continue;
+                }
+                kept[k] = true;
+                count++;
+                if (code.format != Opcode.Format.STORE) {
+                    live &= ~(1 << rd[k]);
+                }
+                switch (code.format) {
+                    case R:
+                    case STORE:
+                        live |= 1 << rs1[k] | 1 << rs2[k];
+                        break;
+                    case RD_IMM:
+                        break;
+                    default:
+                        live |= 1 << rs1[k];
+                        break;
+                }
+                if (memory) {
+                    // Should it fault, every register has to hold its value here, bar the constants put back
+                    live |= ~constants[k];
+                }
+            }
+            return count;
+        }
+
+        Block block(int cost, int next) {
+            int n = 0;
+            for (int k = 0; k < length; k++) {
+                if (kept[k]) {
+                    op[n] = op[k];
+                    rd[n] = rd[k];
+                    rs1[n] = rs1[k];
+                    rs2[n] = rs2[k];
+                    imm[n] = imm[k];
+                    from[n] = from[k];
+                    restore[n] = restore[k];
+                    n++;
+                }
+            }
+            return new Block(cost, next, Arrays.copyOf(op, n), Arrays.copyOf(rd, n),
+                             Arrays.copyOf(rs1, n), Arrays.copyOf(rs2, n),
+                             Arrays.copyOf(imm, n), Arrays.copyOf(from, n), Arrays.copyOf(restore, n));
+        }
+    }
+
+    /* The immediate instruction doing what a register one does with a constant second operand */
+    private static Opcode immediateForm(Opcode code) {
+        switch (code) {
+            case ADD:
+            case SUB:
+                return Opcode.ADDI;
+            case AND:
+                return Opcode.ANDI;
+            case OR:
+                return Opcode.ORI;
+            case XOR:
+                return Opcode.XORI;
+            case SLL:
+                return Opcode.SLLI;
+            case SRL:
+                return Opcode.SRLI;
+            case SRA:
+                return Opcode.SRAI;
+            case SLT:
+                return Opcode.SLTI;
+            case SLTU:
+                return Opcode.SLTIU;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean commutes(Opcode code) {
+        return code == Opcode.ADD || code == Opcode.AND || code == Opcode.OR || code == Opcode.XOR;
+    }
+
+    /* What an instruction computes from two known operands, as the interpreter would */
+    private static int fold(Opcode code, int a, int b) {
+        switch (code) {
+            case ADD:
+            case ADDI:
+                return a + b;
+            case SUB:
+                return a - b;
+            case AND:
+            case ANDI:
+                return a & b;
+            case OR:
+            case ORI:
+                return a | b;
+            case XOR:
+            case XORI:
+                return a ^ b;
+            case SLL:
+            case SLLI:
+                return a << b;
+            case SRL:
+            case SRLI:
+                return a >>> b;
+            case SRA:
+            case SRAI:
+                return a >> b;
+            case SLT:
+            case SLTI:
+                return Arithmetic.slt(a, b);
+            case SLTU:
+            case SLTIU:
+                return Arithmetic.sltu(a, b);
+            case MUL:
+                return a * b;
+            case MULH:
+                return Arithmetic.mulh(a, b);
+            case MULHSU:
+                return Arithmetic.mulhsu(a, b);
+            case MULHU:
+                return Arithmetic.mulhu(a, b);
+            case DIV:
+                return Arithmetic.div(a, b);
+            case DIVU:
+                return Arithmetic.divu(a, b);
+            case REM:
+                return Arithmetic.rem(a, b);
+            case REMU:
+                return Arithmetic.remu(a, b);
+            default:
+                throw new IllegalStateException("can't fold " + code);
+        }
+    }
+}
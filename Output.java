@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/*
+ * Destination for everything ecalls print. Without a channel, output is
+ * collected in the interpreter's printer as before. With one, prints are
+ * encoded straight to bytes in a fixed buffer that is written to the channel
+ * whenever it fills, so however much a program prints, a run never holds more
+ * than one buffer of it.
+ *
+ * Output is one byte per character, so a channel receives exactly the
+ * ISO-8859-1 encoding of what the printer would have held. Past the byte cap
+ * nothing more is printed and the run is told to stop.
+ */
+final class Output {
+
+    static final int BUFFER_SIZE = 8192;
+
+    private final StringBuilder printer;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final long limit;
+    private final byte[] digits = new byte[11];
+    private final byte[] chunk = new byte[256];
+
+    long written;      // bytes printed so far, buffered or not
+    boolean truncated; // something was dropped at the cap
+
+    /* Output continuing after written bytes; a limit of 0 means no cap */
+    Output(StringBuilder printer, WritableByteChannel channel, long limit, long written) {
+        this.printer = printer;
+        this.channel = channel;
+        this.buffer = channel == null ? null : ByteBuffer.allocate(BUFFER_SIZE);
+        this.limit = limit > 0 ? limit : Long.MAX_VALUE;
+        this.written = written;
+    }
+
+    /* Print the low byte of b; false once the cap has been reached */
+    boolean put(int b) {
+        if (written >= limit) {
+            truncated = true;
+            return false;
+        }
+        written++;
+        if (channel == null) {
+            printer.append((char) (b & 0xff));
+        } else {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+        return true;
+    }
+
+    /* Print a signed decimal without going through a String */
+    boolean putInt(int value) {
+        long magnitude = Math.abs((long) value);
+        int n = digits.length;
+        do {
+            digits[--n] = (byte) ('0' + magnitude % 10);
+            magnitude /= 10;
+        } while (magnitude != 0);
+        if (value < 0 && !put('-')) {
+            return false;
+        }
+        for (; n < digits.length; n++) {
+            if (!put(digits[n])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Print the NUL-terminated string at address, found a word at a time */
+    boolean putString(Memory memory, int address) {
+        while (true) {
+            int length = memory.nonZero(address, chunk.length);
+            boolean faults = length < 0;
+            if (faults) {
+                length = -1 - length;
+            }
+            memory.read(address, chunk, length);
+            if (!put(chunk, length)) {
+                return false;
+            }
+            if (faults) {
+                memory.loadByte(address + length); // throws, as printing byte by byte would have
+            }
+            if (length < chunk.length) {
+                return true;
+            }
+            address += length;
+        }
+    }
+
+    /* Print length bytes, as far as the cap allows */
+    private boolean put(byte[] bytes, int length) {
+        int n = (int) Math.min(length, limit - written);
+        if (channel == null) {
+            for (int i = 0; i < n; i++) {
+                printer.append((char) (bytes[i] & 0xff));
+            }
+        } else {
+            for (int i = 0; i < n; ) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int count = Math.min(n - i, buffer.remaining());
+                buffer.put(bytes, i, count);
+                i += count;
+            }
+        }
+        written += n;
+        if (n < length) {
+            truncated = true;
+            return false;
+        }
+        return true;
+    }
+
+    boolean putAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!put(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* Hand anything buffered to the channel */
+    void flush() {
+        if (channel != null && buffer.position() > 0) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,330 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * Execution counts for one run. The run loop only bumps a counter per
+ * executed instruction; counts per opcode, basic block and function are
+ * rolled up from those afterwards, using the decoded program.
+ *
+ * Blocks start at the first instruction, the entry point, every branch or
+ * jump target, every la target and after every control transfer or ecall, so
+ * a block is only ever entered at its first instruction. Functions start at
+ * the first instruction, the entry point and every jal target, and own the
+ * instructions up to the next function start; cycles for a function are self
+ * cycles, not including its callees.
+ */
+public final class Profile {
+
+    /* Totals for one basic block */
+    public static final class BlockStats {
+        public final int address;
+        public final String label;  // text label at the block's first instruction, or null
+        public final int length;    // instructions in the block
+        public final long entries;
+        public final long cycles;
+
+        BlockStats(int address, String label, int length, long entries, long cycles) {
+            this.address = address;
+            this.label = label;
+            this.length = length;
+            this.entries = entries;
+            this.cycles = cycles;
+        }
+    }
+
+    /* Totals for one function */
+    public static final class FunctionStats {
+        public final int address;
+        public final String label;
+        public final long calls;    // executed jal instructions targeting the function
+        public final long cycles;
+
+        FunctionStats(int address, String label, long calls, long cycles) {
+            this.address = address;
+            this.label = label;
+            this.calls = calls;
+            this.cycles = cycles;
+        }
+    }
+
+    @Name("precomputer.Run")
+    @Label("Program Run")
+    @Category("RISC-V Precomputer")
+    @StackTrace(false)
+    static final class RunEvent extends Event {
+        @Label("Status")
+        String status;
+        @Label("Cycles")
+        long cycles;
+        @Label("Instructions")
+        int instructions;
+    }
+
+    @Name("precomputer.Block")
+    @Label("Basic Block")
+    @Category("RISC-V Precomputer")
+    @StackTrace(false)
+    static final class BlockEvent extends Event {
+        @Label("Address")
+        int address;
+        @Label("Label")
+        String label;
+        @Label("Entries")
+        long entries;
+        @Label("Cycles")
+        long cycles;
+    }
+
+    @Name("precomputer.Function")
+    @Label("Function")
+    @Category("RISC-V Precomputer")
+    @StackTrace(false)
+    static final class FunctionEvent extends Event {
+        @Label("Address")
+        int address;
+        @Label("Label")
+        String label;
+        @Label("Calls")
+        long calls;
+        @Label("Cycles")
+        long cycles;
+    }
+
+    // Executions of instruction i, bumped by the run loop
+    final long[] counts;
+
+    private final DecodedProgram program;
+    private final String[] names; // text label at each instruction, or null
+    private RunEvent event;
+    private long started;
+
+    // Filled in when the run ends
+    long cycles;
+    long wallNanos;
+    RiscVInterpreter.Status status;
+
+    Profile(DecodedProgram program, Map<String, Integer> labels) {
+        this.program = program;
+        counts = new long[program.length];
+        names = new String[program.length];
+        // Sorted, so the name picked for an address with several labels doesn't depend on hashing
+        for (Map.Entry<String, Integer> label : new TreeMap<String, Integer>(labels).entrySet()) {
+            int address = label.getValue();
+            if (program.contains(address)
+                    && (names[program.index(address)] == null || label.getKey().equals("main"))) {
+                names[program.index(address)] = label.getKey();
+            }
+        }
+    }
+
+    /* Called as each execute() starts; a suspended run is timed slice by slice */
+    void start() {
+        event = new RunEvent();
+        event.begin();
+        started = System.nanoTime();
+    }
+
+    void finish(RiscVInterpreter vm, boolean emit) {
+        wallNanos += System.nanoTime() - started;
+        cycles = vm.cycles;
+        status = vm.status;
+        event.end();
+        if (emit) {
+            emitEvents();
+        }
+    }
+
+    public long cycles() {
+        return cycles;
+    }
+
+    public long wallNanos() {
+        return wallNanos;
+    }
+
+    /* Executions of the instruction at an address */
+    public long count(int address) {
+        return counts[program.index(address)];
+    }
+
+    /* Executions per opcode mnemonic, most executed first */
+    public Map<String, Long> opcodes() {
+        EnumMap<Opcode, Long> totals = new EnumMap<Opcode, Long>(Opcode.class);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                Opcode op = Opcode.VALUES[program.op[i]];
+                Long total = totals.get(op);
+                totals.put(op, (total == null ? 0 : total) + counts[i]);
+            }
+        }
+        ArrayList<Map.Entry<Opcode, Long>> sorted = new ArrayList<Map.Entry<Opcode, Long>>(totals.entrySet());
+        sorted.sort(Map.Entry.<Opcode, Long>comparingByValue().reversed());
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Map.Entry<Opcode, Long> entry : sorted) {
+            Opcode op = entry.getKey();
+            result.put(op == Opcode.UNKNOWN ? "unknown" : op.mnemonic, entry.getValue());
+        }
+        return result;
+    }
+
+    /* Executed basic blocks, most cycles first */
+    public List<BlockStats> blocks() {
+        boolean[] leaders = leaders();
+        ArrayList<BlockStats> blocks = new ArrayList<BlockStats>();
+        for (int start = 0; start < counts.length; ) {
+            int end = start + 1;
+            while (end < counts.length && !leaders[end]) {
+                end++;
+            }
+            long cycles = sum(start, end);
+            if (cycles != 0) {
+                blocks.add(new BlockStats(program.address(start), names[start], end - start, counts[start], cycles));
+            }
+            start = end;
+        }
+        blocks.sort(Comparator.comparingLong((BlockStats block) -> block.cycles).reversed());
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /* Executed functions, most self cycles first */
+    public List<FunctionStats> functions() {
+        boolean[] starts = new boolean[counts.length];
+        long[] calls = new long[counts.length];
+        if (counts.length > 0) {
+            starts[0] = true;
+        }
+        if (program.contains(program.entry)) {
+            starts[program.index(program.entry)] = true;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (program.op[i] == Opcode.JAL.ordinal() && program.contains(program.target[i])) {
+                int callee = program.index(program.target[i]);
+                starts[callee] = true;
+                calls[callee] += counts[i];
+            }
+        }
+        ArrayList<FunctionStats> functions = new ArrayList<FunctionStats>();
+        for (int start = 0; start < counts.length; ) {
+            int end = start + 1;
+            while (end < counts.length && !starts[end]) {
+                end++;
+            }
+            long cycles = sum(start, end);
+            if (cycles != 0 || calls[start] != 0) {
+                String label = names[start] != null ? names[start] : String.format("0x%x", program.address(start));
+                functions.add(new FunctionStats(program.address(start), label, calls[start], cycles));
+            }
+            start = end;
+        }
+        functions.sort(Comparator.comparingLong((FunctionStats function) -> function.cycles).reversed());
+        return Collections.unmodifiableList(functions);
+    }
+
+    /* Commit the run, block and function totals as JFR events, if a recording wants them */
+    void emitEvents() {
+        if (event.shouldCommit()) {
+            event.status = String.valueOf(status);
+            event.cycles = cycles;
+            event.instructions = program.length;
+            event.commit();
+        }
+        BlockEvent probe = new BlockEvent();
+        if (probe.isEnabled()) {
+            for (BlockStats block : blocks()) {
+                BlockEvent event = new BlockEvent();
+                event.address = block.address;
+                event.label = block.label;
+                event.entries = block.entries;
+                event.cycles = block.cycles;
+                event.commit();
+            }
+        }
+        FunctionEvent function = new FunctionEvent();
+        if (function.isEnabled()) {
+            for (FunctionStats stats : functions()) {
+                FunctionEvent event = new FunctionEvent();
+                event.address = stats.address;
+                event.label = stats.label;
+                event.calls = stats.calls;
+                event.cycles = stats.cycles;
+                event.commit();
+            }
+        }
+    }
+
+    /* Short human-readable report of where the cycles went */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d cycles in %.3f ms (%s)%n", cycles, wallNanos / 1e6, status));
+        out.append("opcodes:\n");
+        for (Map.Entry<String, Long> entry : opcodes().entrySet()) {
+            out.append(String.format("  %-8s %12d%n", entry.getKey(), entry.getValue()));
+        }
+        out.append("functions:\n");
+        for (FunctionStats function : functions()) {
+            out.append(String.format("  %-20s %12d cycles %10d calls%n", function.label, function.cycles, function.calls));
+        }
+        out.append("blocks:\n");
+        List<BlockStats> blocks = blocks();
+        for (BlockStats block : blocks.subList(0, Math.min(10, blocks.size()))) {
+            out.append(String.format("  0x%-6x %-14s %12d cycles %10d entries%n", block.address,
+                                     block.label == null ? "" : block.label, block.cycles, block.entries));
+        }
+        return out.toString();
+    }
+
+    /* Instructions that begin a basic block */
+    private boolean[] leaders() {
+        boolean[] leaders = new boolean[counts.length];
+        if (counts.length > 0) {
+            leaders[0] = true;
+        }
+        if (program.contains(program.entry)) {
+            leaders[program.index(program.entry)] = true;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            Opcode op = Opcode.VALUES[program.op[i]];
+            switch (op.format) {
+                case BRANCH:
+                case BRANCH_ZERO:
+                case JAL:
+                case J:
+                case RD_LABEL:
+                    if (program.contains(program.target[i])) {
+                        leaders[program.index(program.target[i])] = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            boolean transfers = op.format == Opcode.Format.BRANCH || op.format == Opcode.Format.BRANCH_ZERO
+                    || op.format == Opcode.Format.JAL || op.format == Opcode.Format.J
+                    || op.format == Opcode.Format.JR || op.format == Opcode.Format.JALR || op == Opcode.ECALL;
+            if (transfers && i + 1 < counts.length) {
+                leaders[i + 1] = true;
+            }
+        }
+        return leaders;
+    }
+
+    private long sum(int from, int to) {
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+}
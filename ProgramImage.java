@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32C;
+
+/*
+ * Binary image of a loaded program: its decoded instruction tables, labels,
+ * initialized memory and initial registers. Reloading one is a memory map, a
+ * checksum and bulk copies into the interpreter's arrays, with no parsing.
+ *
+ * Layout, little-endian throughout:
+ *
+ *     int magic "RVPI", int FORMAT, int RiscVInterpreter.VERSION,
+ *     int body length, long CRC32C of the body
+ *     body:
+ *         int length, textBase, entry, pc; int[32] registers
+ *         int image start, heap base, break
+ *         int[length] op | rd << 8 | rs1 << 16 | rs2 << 24; int[length] imm; int[length] target
+ *         int pages; per page: int number, int[PAGE_WORDS] words
+ *         int texts; per UNKNOWN instruction: int index, int size, UTF-8 text
+ *         int labels; per label: int address, int size, UTF-8 name
+ *
+ * An image from another format or interpreter version is rejected rather
+ * than migrated; the program has to be loaded from source again.
+ */
+final class ProgramImage {
+
+    private static final int MAGIC = 0x52565049; // "RVPI"
+    private static final int FORMAT = 3;
+    private static final int HEADER = 24;
+
+    private ProgramImage() {
+    }
+
+    /* Write a program that has been loaded but not yet run */
+    static void write(RiscVInterpreter vm, Path file) throws IOException {
+        DecodedProgram program = vm.program;
+        if (program == null || vm.status != RiscVInterpreter.Status.SKIPPED) {
+            throw new IllegalStateException("only a loaded program that hasn't run can be saved as an image");
+        }
+        final ArrayList<Integer> numbers = new ArrayList<Integer>();
+        final ArrayList<int[]> pages = new ArrayList<int[]>();
+        vm.memory.forEachPage((number, words) -> {
+            numbers.add(number);
+            pages.add(words);
+        });
+        ArrayList<Integer> unknown = new ArrayList<Integer>();
+        ArrayList<byte[]> texts = new ArrayList<byte[]>();
+        long strings = 0;
+        for (int i = 0; i < program.length; i++) {
+            if (program.op[i] == Opcode.UNKNOWN.ordinal()) {
+                byte[] text = program.text(i).getBytes(StandardCharsets.UTF_8);
+                unknown.add(i);
+                texts.add(text);
+                strings += 8 + text.length;
+            }
+        }
+        ArrayList<byte[]> names = new ArrayList<byte[]>();
+        for (String label : vm.labels.keySet()) {
+            byte[] name = label.getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            strings += 8 + name.length;
+        }
+
+        long body = 28 + 4L * Registers.COUNT + 12L * program.length
+            + 4 + (4 + 4L * Memory.PAGE_WORDS) * pages.size() + 8 + strings;
+        if (HEADER + body > Integer.MAX_VALUE) {
+            throw new IOException("program is too large for an image");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) (HEADER + body)).order(ByteOrder.LITTLE_ENDIAN);
+        out.position(HEADER);
+        out.putInt(program.length).putInt(program.textBase).putInt(program.entry).putInt(vm.pc);
+        out.asIntBuffer().put(vm.regs);
+        out.position(out.position() + 4 * Registers.COUNT);
+        out.putInt(vm.memory.imageStart()).putInt(vm.memory.heapBase()).putInt(vm.memory.brk());
+        for (int i = 0; i < program.length; i++) {
+            out.putInt(program.op[i] | program.rd[i] << 8 | program.rs1[i] << 16 | program.rs2[i] << 24);
+        }
+        out.asIntBuffer().put(program.imm);
+        out.position(out.position() + 4 * program.length);
+        out.asIntBuffer().put(program.target);
+        out.position(out.position() + 4 * program.length);
+        out.putInt(pages.size());
+        for (int p = 0; p < pages.size(); p++) {
+            out.putInt(numbers.get(p));
+            out.asIntBuffer().put(pages.get(p));
+            out.position(out.position() + 4 * Memory.PAGE_WORDS);
+        }
+        out.putInt(unknown.size());
+        for (int k = 0; k < unknown.size(); k++) {
+            out.putInt(unknown.get(k)).putInt(texts.get(k).length).put(texts.get(k));
+        }
+        out.putInt(names.size());
+        int n = 0;
+        for (Integer address : vm.labels.values()) {
+            byte[] name = names.get(n++);
+            out.putInt(address).putInt(name.length).put(name);
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(out.array(), HEADER, (int) body);
+        out.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, RiscVInterpreter.VERSION).putInt(12, (int) body)
+            .putLong(16, crc.getValue());
+        out.position(0);
+
+        // Write beside the target and move into place, so a reader never maps half an image
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* Restore an image into a freshly initialized interpreter */
+    static void read(Path file, RiscVInterpreter vm) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a program image");
+            }
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (in.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a program image");
+        }
+        if (in.getInt(4) != FORMAT || in.getInt(8) != RiscVInterpreter.VERSION) {
+            throw new IOException(file + " was written by another interpreter version");
+        }
+        int body = in.getInt(12);
+        if (body < 0 || HEADER + (long) body != in.limit()) {
+            throw new IOException(file + " is truncated");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(in.slice(HEADER, body));
+        if (crc.getValue() != in.getLong(16)) {
+            throw new IOException(file + " fails its checksum");
+        }
+
+        try {
+            in.position(HEADER);
+            int length = in.getInt();
+            int textBase = in.getInt();
+            int entry = in.getInt();
+            int pc = in.getInt();
+            int[] regs = new int[Registers.COUNT];
+            ints(in, regs);
+            vm.memory.layOut(in.getInt(), in.getInt(), in.getInt());
+            int[] op = new int[length];
+            int[] rd = new int[length];
+            int[] rs1 = new int[length];
+            int[] rs2 = new int[length];
+            int[] imm = new int[length];
+            int[] target = new int[length];
+            ints(in, op);
+            for (int i = 0; i < length; i++) {
+                int packed = op[i];
+                op[i] = packed & 0xff;
+                rd[i] = (packed >>> 8) & 0xff;
+                rs1[i] = (packed >>> 16) & 0xff;
+                rs2[i] = packed >>> 24;
+                if (op[i] >= Opcode.VALUES.length || rd[i] >= Registers.COUNT || rs1[i] >= Registers.COUNT
+                        || rs2[i] >= Registers.COUNT) {
+                    throw new IOException(file + " has an invalid instruction at " + i);
+                }
+            }
+            ints(in, imm);
+            ints(in, target);
+            int pages = in.getInt();
+            for (int p = 0; p < pages; p++) {
+                int number = in.getInt();
+                ints(in, vm.memory.pageForWrite(number));
+            }
+            String[] text = new String[length];
+            int texts = in.getInt();
+            for (int k = 0; k < texts; k++) {
+                int index = in.getInt();
+                text[index] = string(in);
+            }
+            HashMap<String, Integer> labels = new HashMap<String, Integer>();
+            int count = in.getInt();
+            for (int k = 0; k < count; k++) {
+                int address = in.getInt();
+                labels.put(string(in), address);
+            }
+            vm.program = new DecodedProgram(length, op, rd, rs1, rs2, imm, target, text, textBase, entry);
+            vm.labels = labels;
+            vm.pc = pc;
+            System.arraycopy(regs, 0, vm.regs, 0, Registers.COUNT);
+        } catch (RuntimeException e) {
+            // Checksummed but inconsistent, e.g. written by a buggy writer
+            throw new IOException(file + " is not a valid program image", e);
+        }
+    }
+
+    private static void ints(ByteBuffer in, int[] into) {
+        in.asIntBuffer().get(into);
+        in.position(in.position() + 4 * into.length);
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.HashMap;
+
+/* Architectural register numbering, with every ABI and xN name resolved to its index */
+final class Registers {
+
+    static final int ZERO = 0;
+    static final int RA = 1;
+    static final int SP = 2;
+    static final int GP = 3;
+    static final int A0 = 10;
+    static final int A1 = 11;
+    static final int COUNT = 32;
+
+    // ABI name of each register, used when printing them back out
+    static final String[] ABI_NAMES = {
+        "zero", "ra", "sp", "gp", "tp", "t0", "t1", "t2",
+        "s0", "s1", "a0", "a1", "a2", "a3", "a4", "a5",
+        "a6", "a7", "s2", "s3", "s4", "s5", "s6", "s7",
+        "s8", "s9", "s10", "s11", "t3", "t4", "t5", "t6"
+    };
+
+    private static final HashMap<String, Integer> ALIASES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < COUNT; i++) {
+            ALIASES.put(ABI_NAMES[i], i);
+            ALIASES.put("x" + i, i);
+        }
+        ALIASES.put("fp", 8);
+    }
+
+    private Registers() {
+    }
+
+    /* Index of a register name, or -1 if it doesn't name one */
+    static int index(String name) {
+        Integer index = ALIASES.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /* Render a register file as name=value pairs */
+    static String toString(int[] regs) {
+        StringBuilder out = new StringBuilder("{");
+        for (int i = 0; i < COUNT; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(ABI_NAMES[i]).append('=').append(regs[i]);
+        }
+        return out.append('}').toString();
+    }
+}
@@ -0,0 +1,443 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Residual program left over once the interpreter has run as far as it can
+ * without input: an assembly program that prints the output computed so far
+ * and then carries on from where the run stopped.
+ *
+ * A finished run leaves only the printing and the exit. A run stopped at its
+ * first $input call (or at the end of its budget) also reproduces the
+ * machine: the data segment is written out word for word from DATA_BASE,
+ * other memory the run wrote is stored by the entry code, and every
+ * instruction is emitted at its original address. Return addresses and
+ * pointers held in registers and memory therefore stay valid. The entry code
+ * sits after the original instructions, is named by .globl, and finishes by
+ * loading every register and jumping to the stopped pc.
+ *
+ * A finished run's output is laid out just past the data. A resumed run's is
+ * stored above the break and every page the run wrote, under a break grown
+ * over it for the printing, then zeroed and the break moved back, so memory
+ * the program hasn't touched yet still reads as zero. A heap grown with ecall
+ * 9 is grown back to the same break first.
+ */
+final class Residual {
+
+    static final String ENTRY = "__pe_entry";
+    private static final String EXIT_MESSAGE = "Exited with error code ";
+    private static final int WORDS_PER_LINE = 8;
+
+    private final RiscVInterpreter vm;
+    private final DecodedProgram program;
+    private final boolean resumes;
+    private final StringBuilder data = new StringBuilder();
+    private final StringBuilder code = new StringBuilder();
+
+    // Labels by address: the program's own, plus ones made up for unlabelled targets
+    private final TreeMap<Integer, ArrayList<String>> labels = new TreeMap<Integer, ArrayList<String>>();
+    private int dataEnd = Assembler.DATA_BASE;
+
+    private Residual(RiscVInterpreter vm, boolean resumes) {
+        this.vm = vm;
+        this.program = vm.program;
+        this.resumes = resumes;
+    }
+
+    /* Residual of a run that finished, stopped at $input or ran out of budget */
+    static String of(RiscVInterpreter vm) {
+        RiscVInterpreter.Status status = vm.status;
+        boolean resumes = status == RiscVInterpreter.Status.INPUT || status == RiscVInterpreter.Status.CYCLE_LIMIT
+            || status == RiscVInterpreter.Status.SUSPENDED;
+        if (vm.program == null || !resumes && status != RiscVInterpreter.Status.FINISHED) {
+            throw new IllegalStateException("no residual program for a run that is " + status);
+        }
+        if (vm.config.output != null) {
+            throw new IllegalStateException("output was streamed to a channel, so it can't be replayed");
+        }
+        if (resumes && vm.program.textBase != 0) {
+            throw new IllegalStateException("only assembled programs can be resumed from a residual program");
+        }
+        return new Residual(vm, resumes).emit();
+    }
+
+    private String emit() {
+        String output = vm.printer.toString();
+        boolean exitsWithCode = !resumes && output.endsWith(EXIT_MESSAGE + vm.exitCode + "\n");
+        if (exitsWithCode) {
+            // ecall 17 prints this itself
+            output = output.substring(0, output.length() - EXIT_MESSAGE.length()
+                                      - Integer.toString(vm.exitCode).length() - 1);
+        }
+
+        if (resumes) {
+            for (Map.Entry<String, Integer> label : vm.labels.entrySet()) {
+                if (isText(label.getValue()) || label.getValue() >= Assembler.DATA_BASE) {
+                    label(label.getValue(), label.getKey());
+                }
+            }
+            dataEnd = dataEnd();
+            for (int i = 0; i < program.length; i++) {
+                code.append(instruction(i)).append('\n'); // may make up labels, so before any are placed
+            }
+            image();
+        }
+
+        code.append(ENTRY).append(":\n");
+        if (resumes) {
+            int brk = vm.memory.brk();
+            if (brk != vm.memory.heapBase()) {
+                breakAt(brk);
+            }
+            stores();
+            int outputWords = words(output);
+            if (outputWords > 0) {
+                int outputAt = outputAt(outputWords);
+                breakAt(outputAt + 4 * outputWords);
+                place(output, outputAt);
+                print(output, outputAt);
+                clear(outputAt, outputWords);
+                breakAt(brk);
+            }
+            // Every register, zeros too: the code above leaves its own values in a0, a1, t0 and t1
+            for (int r = 1; r < Registers.COUNT; r++) {
+                instruction("li", Registers.ABI_NAMES[r], Integer.toString(vm.regs[r]));
+            }
+            instruction("j", target(vm.pc));
+        } else {
+            print(output, 0);
+            if (exitsWithCode) {
+                instruction("li", "a0", "17");
+                instruction("li", "a1", Integer.toString(vm.exitCode));
+                instruction("ecall");
+            } else {
+                instruction("li", "a0", "10");
+                instruction("ecall");
+            }
+        }
+
+        StringBuilder residual = new StringBuilder();
+        residual.append("# Residual program after ").append(vm.cycles).append(" cycles (").append(vm.status)
+            .append(")\n.globl ").append(ENTRY).append("\n.data\n").append(data).append(".text\n");
+        if (resumes) {
+            // Labels go in front of the instructions they name; whatever is left names the end of the text
+            String[] lines = code.toString().split("\n", -1);
+            for (int i = 0; i < program.length; i++) {
+                placeLabels(residual, program.address(i));
+                residual.append("    ").append(lines[i]).append('\n');
+            }
+            placeLabels(residual, program.address(program.length));
+            for (int i = program.length; i < lines.length - 1; i++) {
+                residual.append(lines[i].endsWith(":") ? "" : "    ").append(lines[i]).append('\n');
+            }
+        } else {
+            for (String line : code.toString().split("\n")) {
+                residual.append(line.endsWith(":") ? "" : "    ").append(line).append('\n');
+            }
+        }
+        return residual.toString();
+    }
+
+    /* Move the break to address with ecall 9, however far the residual's own heap starts from it */
+    private void breakAt(int address) {
+        instruction("li", "a0", "9");
+        instruction("li", "a1", "0");
+        instruction("ecall");
+        instruction("li", "t0", Integer.toString(address));
+        instruction("sub", "a1", "t0", "a0");
+        instruction("li", "a0", "9");
+        instruction("ecall");
+    }
+
+    private boolean isText(int address) {
+        return ((address - program.textBase) & 3) == 0
+            && Integer.compareUnsigned(address - program.textBase, 4 * program.length) <= 0;
+    }
+
+    private void label(int address, String name) {
+        ArrayList<String> names = labels.get(address);
+        if (names == null) {
+            names = new ArrayList<String>();
+            labels.put(address, names);
+        }
+        names.add(name);
+        Collections.sort(names);
+    }
+
+    private void placeLabels(StringBuilder residual, int address) {
+        ArrayList<String> names = labels.get(address);
+        if (names != null) {
+            for (String name : names) {
+                residual.append(name).append(":\n");
+            }
+        }
+    }
+
+    /* End of the data segment: the last non-zero word in the run of pages from DATA_BASE, or the last data label */
+    private int dataEnd() {
+        final int[] next = {Assembler.DATA_BASE >>> Memory.PAGE_BITS};
+        final int[] end = {Assembler.DATA_BASE};
+        vm.memory.forEachPage((number, words) -> {
+            if (number != next[0]) {
+                return;
+            }
+            next[0]++;
+            for (int w = Memory.PAGE_WORDS - 1; w >= 0; w--) {
+                if (words[w] != 0) {
+                    end[0] = ((number << Memory.PAGE_BITS) + 4 * w) + 4;
+                    break;
+                }
+            }
+        });
+        Integer lastLabel = labels.isEmpty() ? null : labels.lastKey();
+        return lastLabel != null && lastLabel >= Assembler.DATA_BASE ? Math.max(end[0], (lastLabel + 3) & ~3) : end[0];
+    }
+
+    /* Write the data segment out as .word lines, with its labels */
+    private void image() {
+        int run = 0;
+        for (int address = Assembler.DATA_BASE; address != dataEnd; address += 4) {
+            if (labels.containsKey(address) || run == WORDS_PER_LINE) {
+                if (run > 0) {
+                    data.append('\n');
+                }
+                run = 0;
+                placeLabels(data, address);
+            }
+            data.append(run == 0 ? "    .word " : ", ").append(vm.memory.loadWord(address));
+            run++;
+        }
+        if (run > 0) {
+            data.append('\n');
+        }
+        placeLabels(data, dataEnd);
+    }
+
+    private boolean inData(int address) {
+        return address >= Assembler.DATA_BASE && address < dataEnd;
+    }
+
+    /* Store every other non-zero word, from a base register kept within a 12-bit offset of it */
+    private void stores() {
+        vm.memory.forEachPage((number, words) -> {
+            int page = number << Memory.PAGE_BITS;
+            boolean based = false;
+            for (int w = 0; w < Memory.PAGE_WORDS; w++) {
+                int address = page + 4 * w;
+                if (words[w] == 0 || inData(address)) {
+                    continue;
+                }
+                if (!based) {
+                    instruction("li", "t0", Integer.toString(page + 2048));
+                    based = true;
+                }
+                instruction("li", "t1", Integer.toString(words[w]));
+                instruction("sw", "t1", (4 * w - 2048) + "(t0)");
+            }
+        });
+    }
+
+    /* Words the output's lines take up, each with its terminating zero */
+    private static int words(String output) {
+        int words = 0;
+        for (String line : output.split("\n")) {
+            if (!line.isEmpty()) {
+                words += line.length() / 4 + 1;
+            }
+        }
+        return words;
+    }
+
+    /* Lowest word past the break and every page written below the stack, with room for the output */
+    private int outputAt(int words) {
+        long limit = Memory.STACK_END - Memory.STACK_SIZE;
+        long[] at = {((vm.memory.brk() & 0xffffffffL) + 3) & ~3L};
+        vm.memory.forEachPage((number, page) -> {
+            long end = (long) (number + 1) << Memory.PAGE_BITS;
+            if (end <= limit) {
+                at[0] = Math.max(at[0], end);
+            }
+        });
+        if (at[0] + 4L * words > limit) {
+            throw new IllegalStateException("no room for the output between the heap and the stack");
+        }
+        return (int) at[0];
+    }
+
+    /* Store the output's lines from address on, leaving out the zero words */
+    private void place(String output, int address) {
+        int based = -1;
+        for (String line : output.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            for (int word : pack(line)) {
+                int page = address & -Memory.PAGE_SIZE;
+                if (word != 0) {
+                    if (page != based) {
+                        instruction("li", "t0", Integer.toString(page + 2048));
+                        based = page;
+                    }
+                    instruction("li", "t1", Integer.toString(word));
+                    instruction("sw", "t1", (address - page - 2048) + "(t0)");
+                }
+                address += 4;
+            }
+        }
+    }
+
+    /*
+     * Print the output a line at a time, from address on as place() stored it,
+     * or laid out past the data if address is 0
+     */
+    private void print(String output, int address) {
+        int words = 0;
+        int start = 0;
+        while (start < output.length()) {
+            int newline = output.indexOf('\n', start);
+            int end = newline < 0 ? output.length() : newline;
+            if (end > start) {
+                String line = output.substring(start, end);
+                instruction("li", "a0", "4");
+                if (address == 0) {
+                    String name = "__pe_out" + words;
+                    data.append(name).append(":\n");
+                    instruction("la", "a1", name);
+                    words += printable(line) ? string(line) : bytes(line);
+                } else {
+                    instruction("li", "a1", Integer.toString(address + 4 * words));
+                    words += line.length() / 4 + 1;
+                }
+                instruction("ecall");
+            }
+            if (newline >= 0) {
+                instruction("li", "a0", "11");
+                instruction("li", "a1", "10");
+                instruction("ecall");
+            }
+            start = end + 1;
+        }
+    }
+
+    /* Whether .string copies a line through unchanged */
+    private static boolean printable(String line) {
+        for (int c = 0; c < line.length(); c++) {
+            char ch = line.charAt(c);
+            if (ch < ' ' || ch > '~' || ch == '"' || ch == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int string(String line) {
+        data.append("    .string \"").append(line).append("\"\n");
+        return (line.length() + 4 - line.length() % 4) / 4;
+    }
+
+    private int bytes(String line) {
+        int[] words = pack(line);
+        data.append("    .word ");
+        for (int w = 0; w < words.length; w++) {
+            data.append(w == 0 ? "" : ", ").append(words[w]);
+        }
+        data.append('\n');
+        return words.length;
+    }
+
+    /* A line as little-endian words with a terminating zero */
+    private static int[] pack(String line) {
+        int[] words = new int[line.length() / 4 + 1];
+        for (int c = 0; c < line.length(); c++) {
+            words[c / 4] |= (line.charAt(c) & 0xff) << (8 * (c % 4));
+        }
+        return words;
+    }
+
+    /* Zero the printed output again */
+    private void clear(int address, int words) {
+        for (int w = 0; w < words; w++) {
+            if (w % Memory.PAGE_WORDS == 0) {
+                instruction("li", "t0", Integer.toString(address + 4 * w + 2048));
+            }
+            instruction("sw", "zero", (4 * (w % Memory.PAGE_WORDS) - 2048) + "(t0)");
+        }
+    }
+
+    private void instruction(String mnemonic, String... operands) {
+        code.append(mnemonic);
+        for (int o = 0; o < operands.length; o++) {
+            code.append(o == 0 ? " " : ", ").append(operands[o]);
+        }
+        code.append('\n');
+    }
+
+    /* Name for an address in the text or data, made up if the program has none there */
+    private String target(int address) {
+        ArrayList<String> names = labels.get(address);
+        if (names != null) {
+            return names.get(0);
+        }
+        if (!isText(address) && !inData(address) && address != dataEnd) {
+            throw new IllegalStateException(String.format("no place for a label at 0x%x", address));
+        }
+        String name = "__pe_" + Integer.toHexString(address);
+        label(address, name);
+        return name;
+    }
+
+    /* Instruction i written back out as assembly that decodes to the same tables */
+    private String instruction(int i) {
+        Opcode code = Opcode.VALUES[program.op[i]];
+        String[] names = Registers.ABI_NAMES;
+        String rd = names[program.rd[i]];
+        String rs1 = names[program.rs1[i]];
+        String rs2 = names[program.rs2[i]];
+        int imm = program.imm[i];
+        int target = program.target[i];
+        switch (code.format) {
+            case R:
+                return code.mnemonic + " " + rd + ", " + rs1 + ", " + rs2;
+            case I:
+                return code.mnemonic + " " + rd + ", " + rs1 + ", " + imm;
+            case RD_IMM:
+                return code.mnemonic + " " + rd + ", " + imm;
+            case RD_RS:
+                return code.mnemonic + " " + rd + ", " + rs1;
+            case RD_LABEL:
+                return isText(target) || inData(target) || target == dataEnd
+                    ? code.mnemonic + " " + rd + ", " + target(target) : "li " + rd + ", " + target;
+            case LOAD:
+                return code.mnemonic + " " + rd + ", " + address(program.rs1[i], imm);
+            case STORE:
+                return code.mnemonic + " " + rs2 + ", " + address(program.rs1[i], imm);
+            case BRANCH:
+                return code.mnemonic + " " + rs1 + ", " + rs2 + ", " + target(target);
+            case BRANCH_ZERO:
+                return code.mnemonic + " " + rs1 + ", " + target(target);
+            case JAL:
+                return code.mnemonic + " " + rd + ", " + target(target);
+            case J:
+                return code.mnemonic + " " + target(target);
+            case JR:
+                return code.mnemonic + " " + rs1;
+            case JALR:
+                return code.mnemonic + " " + rd + ", " + imm + "(" + rs1 + ")";
+            default:
+                if (code == Opcode.ECALL) {
+                    return code.mnemonic;
+                }
+                return program.text(i); // INPUT, or an instruction that fails again if it's reached
+        }
+    }
+
+    /* Memory operand, by label where the program addressed a label */
+    private String address(int base, int offset) {
+        ArrayList<String> names = labels.get(offset);
+        if (base == Registers.ZERO && names != null && !names.get(0).startsWith("__pe_")) {
+            return names.get(0);
+        }
+        return offset + "(" + Registers.ABI_NAMES[base] + ")";
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Remembers what programs printed, so unchanged programs are never
+ * interpreted twice. Results are keyed by a SHA-256 of the program text after
+ * comments and .equiv symbols are cleaned up, together with the interpreter
+ * version, the cycle, output and memory budgets, whether it was sandboxed and
+ * whether it watched for divergence.
+ *
+ * The first tier is an in-memory LRU map. The optional second tier is one
+ * memory-mapped, append-only file of records, indexed in memory by scanning it
+ * on open. When the file would grow past its size limit it is rewritten with
+ * only the most recently used records, filling half the limit.
+ *
+ * Programs that read input are never cached, even when run partially; nor
+ * are runs that were cancelled or suspended before they ended, or whose
+ * output streamed to a channel instead of being collected.
+ */
+public class ResultCache implements Closeable {
+
+    /* Everything a run reports, as stored in the cache */
+    public static class Entry {
+        public final String output;
+        public final RiscVInterpreter.Status status;
+        public final boolean worked;
+        public final boolean badbadbad;
+        public final int exitCode;
+        public final int cycles;
+
+        Entry(String output, RiscVInterpreter.Status status, boolean worked, boolean badbadbad, int exitCode, int cycles) {
+            this.output = output;
+            this.status = status;
+            this.worked = worked;
+            this.badbadbad = badbadbad;
+            this.exitCode = exitCode;
+            this.cycles = cycles;
+        }
+
+        Entry(RiscVInterpreter run) {
+            this(run.printer == null ? "" : run.printer.toString(), run.status, run.worked, run.badbadbad,
+                 run.exitCode, run.cycles);
+        }
+    }
+
+    private static final int MAGIC = 0x52565043; // "RVPC"
+    private static final int FORMAT = 1;
+    private static final int HEADER = 16;        // magic, format, end of last record
+    private static final int KEY = 32;
+
+    private final LinkedHashMap<ByteBuffer, Entry> recent;
+
+    // Disk tier, or null if this cache only lives in memory
+    private final Path file;
+    private final long maxFileBytes;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long end;
+    private final LinkedHashMap<ByteBuffer, Long> index = new LinkedHashMap<ByteBuffer, Long>(16, 0.75f, true);
+
+    /* In-memory cache only */
+    public ResultCache(final int memoryEntries) {
+        recent = new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+        file = null;
+        maxFileBytes = 0;
+    }
+
+    /* In-memory cache backed by a file of at most maxFileBytes */
+    public ResultCache(final int memoryEntries, Path file, long maxFileBytes) throws IOException {
+        recent = new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+        this.file = file;
+        this.maxFileBytes = Math.min(maxFileBytes, Integer.MAX_VALUE);
+        open();
+    }
+
+    /* Cached result for a program, running it first if it isn't cached yet */
+    public Entry precompute(String program, RiscVInterpreter.Config config) throws IOException {
+        if (program.contains("jal $input") || config.output != null) {
+            return new Entry(new RiscVInterpreter(program, config));
+        }
+        ByteBuffer key = key(program, config);
+        Entry entry = get(key);
+        if (entry == null) {
+            RiscVInterpreter run = new RiscVInterpreter(program, config);
+            entry = new Entry(run);
+            if (run.status != RiscVInterpreter.Status.CANCELLED && run.status != RiscVInterpreter.Status.SUSPENDED) {
+                put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /* Content address of a program under a config */
+    static ByteBuffer key(String program, RiscVInterpreter.Config config) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((RiscVInterpreter.VERSION + "\n" + config.maxCycles + "\n" + config.maxOutput + "\n"
+                           + config.maxMemory + "\n" + config.sandbox + "\n" + config.detectDivergence + "\n")
+                          .getBytes(StandardCharsets.UTF_8));
+            digest.update(RiscVInterpreter.normalize(program).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    synchronized Entry get(ByteBuffer key) {
+        Entry entry = recent.get(key);
+        if (entry == null && file != null) {
+            Long offset = index.get(key);
+            if (offset != null) {
+                entry = read(offset);
+                recent.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    synchronized void put(ByteBuffer key, Entry entry) throws IOException {
+        recent.put(key, entry);
+        if (file != null && !index.containsKey(key)) {
+            append(key, entry);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            mapped.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /* Map the file and index its records, starting it over if it isn't one of ours */
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, HEADER));
+        end = HEADER;
+        index.clear();
+        if (size >= HEADER && mapped.getInt(0) == MAGIC && mapped.getInt(4) == FORMAT) {
+            long recorded = Math.min(mapped.getLong(8), size);
+            long offset = HEADER;
+            // Stop at anything torn, e.g. by a crash mid-append
+            while (offset + 4 + KEY <= recorded) {
+                int length = mapped.getInt((int) offset);
+                if (length < KEY || offset + 4 + length > recorded) {
+                    break;
+                }
+                byte[] key = new byte[KEY];
+                mapped.get((int) offset + 4, key);
+                index.put(ByteBuffer.wrap(key), offset);
+                offset += 4 + length;
+            }
+            end = offset;
+        }
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, FORMAT);
+        mapped.putLong(8, end);
+    }
+
+    private Entry read(long offset) {
+        int at = (int) offset + 4 + KEY;
+        RiscVInterpreter.Status status = RiscVInterpreter.Status.values()[mapped.getInt(at)];
+        boolean worked = mapped.get(at + 4) != 0;
+        boolean badbadbad = mapped.get(at + 5) != 0;
+        int exitCode = mapped.getInt(at + 6);
+        int cycles = mapped.getInt(at + 10);
+        byte[] output = new byte[mapped.getInt(at + 14)];
+        mapped.get(at + 18, output);
+        return new Entry(new String(output, StandardCharsets.UTF_8), status, worked, badbadbad, exitCode, cycles);
+    }
+
+    private void append(ByteBuffer key, Entry entry) throws IOException {
+        byte[] output = entry.output.getBytes(StandardCharsets.UTF_8);
+        int length = KEY + 18 + output.length;
+        if (HEADER + 4L + length > maxFileBytes) {
+            return; // would never fit
+        }
+        if (end + 4 + length > maxFileBytes) {
+            compact();
+        }
+        if (end + 4 + length > mapped.capacity()) {
+            long capacity = Math.min(maxFileBytes, Math.max(2L * mapped.capacity(), end + 4 + length));
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        int at = (int) end;
+        mapped.putInt(at, length);
+        mapped.put(at + 4, key.array());
+        at += 4 + KEY;
+        mapped.putInt(at, entry.status.ordinal());
+        mapped.put(at + 4, (byte) (entry.worked ? 1 : 0));
+        mapped.put(at + 5, (byte) (entry.badbadbad ? 1 : 0));
+        mapped.putInt(at + 6, entry.exitCode);
+        mapped.putInt(at + 10, entry.cycles);
+        mapped.putInt(at + 14, output.length);
+        mapped.put(at + 18, output);
+        index.put(key, end);
+        end += 4 + length;
+        mapped.putLong(8, end);
+    }
+
+    /* Rewrite the file keeping only the most recently used records, up to half the limit */
+    private void compact() throws IOException {
+        ArrayList<byte[]> kept = new ArrayList<byte[]>();
+        long budget = maxFileBytes / 2 - HEADER;
+        ArrayList<Long> offsets = new ArrayList<Long>(index.values());
+        for (int i = offsets.size() - 1; i >= 0; i--) {
+            int offset = (int) (long) offsets.get(i);
+            int size = 4 + mapped.getInt(offset);
+            if (size > budget) {
+                break;
+            }
+            byte[] record = new byte[size];
+            mapped.get(offset, record);
+            kept.add(record);
+            budget -= size;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        long written = HEADER;
+        for (byte[] record : kept) {
+            written += record.length;
+        }
+        header.putInt(MAGIC).putInt(FORMAT).putLong(written).flip();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(header);
+            // Least recent first, so access order survives the rewrite
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                out.write(ByteBuffer.wrap(kept.get(i)));
+            }
+        }
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+}
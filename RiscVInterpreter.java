@@ -1,42 +1,123 @@
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 
-import org.apache.tools.ant.util.StringUtils;
-
 public class RiscVInterpreter {
 
+    // Hard stop for programs that never halt
+    static final int MAX_CYCLES = 300000;
+
+    // Cycles between checks for a cancelled run
+    static final int POLL_INTERVAL = 1 << 16;
+
+    // Bump whenever a change can alter what a program outputs, so cached results are dropped
+    static final int VERSION = 4;
+
+    /* Ways of executing the decoded program, which all produce the same output */
+    public enum Engine {
+        SWITCH,  // one opcode switch per instruction
+        CLOSURE, // basic blocks of pre-bound handlers with fused superinstructions
+        TIERED   // switch loop that compiles hot blocks to JVM bytecode
+    }
+
+    /* How a run ended */
+    public enum Status {
+        SKIPPED,      // needs input and the run isn't partial, so never run
+        RUNNING,
+        FINISHED,     // exited through ecall 10 or 17
+        FAILED,       // reached an instruction it couldn't execute
+        CYCLE_LIMIT,  // stopped by the cycle budget
+        CANCELLED,    // thread was interrupted mid-run
+        SUSPENDED,    // stopped at the end of a slice; execute() again or resume a snapshot to continue
+        OUTPUT_LIMIT, // stopped at the output cap, with output cut off there
+        INPUT,        // partial run stopped at its first $input call; residual() continues from there
+        MEMORY_LIMIT, // wrote to more memory than config.maxMemory allows
+        FAULT,        // with config.sandbox, touched memory outside the image, heap and stack
+        DIVERGES      // with config.detectDivergence, came back to an earlier state, so would never end
+    }
+
+    /* Run options; the defaults match the single-argument constructor */
+    public static class Config {
+        public Engine engine = Engine.SWITCH;
+        public int maxCycles = MAX_CYCLES;
+        public int sliceCycles = 0;     // suspend after this many cycles per execute(), 0 for no limit
+        public long sliceNanos = 0;     // suspend after this much wall time per execute(), checked every POLL_INTERVAL cycles
+        public boolean profile = false; // count executions per opcode, block and function; runs on SWITCH
+        public boolean jfr = false;     // with profile, also commit the counts as JFR events
+        public WritableByteChannel output = null; // stream output here rather than into printer; left open
+        public long maxOutput = 0;      // stop with OUTPUT_LIMIT after this many bytes of output, 0 for no limit
+        public boolean partial = false; // run up to the first $input call; the residual program goes in printResult
+        public int memoEntries = 0;     // remember this many results of pure jal calls and skip repeats; runs on SWITCH
+        public int traceEntries = 0;    // keep the last this many executed instructions in a Trace; runs on SWITCH
+        public Path traceFile = null;   // with traceEntries, dump the trace here when a run fails or hits the cycle limit
+        public long maxMemory = 1L << 28; // stop with MEMORY_LIMIT past this many bytes of written pages, 0 for no limit
+        public boolean sandbox = false; // stop with FAULT on an access outside the image, heap and stack
+        public boolean detectDivergence = false; // stop with DIVERGES once the run repeats a state or jumps to itself
+        public boolean optimize = false; // run straight-line code rewritten by Optimizer; runs on SWITCH, not partial
+    }
+
     Boolean worked = false;
     String printResult = "";
-    HashMap<Integer,Integer> memory;
-    HashMap<String, Integer> regs;
-    HashMap<String, String> equivs;
-    ArrayList<String> lines;
+    Memory memory;
+    int[] regs;
     HashMap<String, Integer> labels;
-    ArrayList<String> instructions;
-    Integer address;
     StringBuilder printer;
+    Output out;
     Boolean active;
     Boolean badbadbad = false;
     Boolean debug = false;
+    Status status = Status.SKIPPED;
+    int cycles;
+    int exitCode;
+    int pc;
+
+    // Where the current execute() has to stop
+    int stop;
+    private long deadline;
+
+    // Decoded form of instructions
+    DecodedProgram program;
+    Config config;
+
+    // Execution counts, if the config asked for them
+    Profile profile;
+
+    // Results of pure calls, if the config asked for them
+    Memo memo;
+
+    // Most recently executed instructions, if the config asked for them
+    Trace trace;
 
-    // Instruction level parameters
-    String regTo;
-    String reg1;
-    String reg2;
-    Integer imm;
-    String label;
+    // Looks for a run repeating itself, if the config asked
+    Divergence divergence;
+
+    // Engines kept across execute() calls, so a resumed run doesn't start cold
+    private ClosureEngine closure;
+    private BlockJit jit;
+    private Idioms idioms;
+    private Optimizer optimizer;
 
 
     /* Constructor */
     public RiscVInterpreter(String program) {
+        this(program, new Config());
+    }
+
+    /* Constructor with run options */
+    public RiscVInterpreter(String program, Config config) {
+        this(program, config, true);
+    }
 
-        // We can't precompute a program that requires input
-        if (program.contains("jal $input")) {
+    /* Load a program, and run it unless the caller will run it later */
+    private RiscVInterpreter(String program, Config config, boolean execute) {
+        this(config);
+
+        // We can't precompute a program that requires input, except partially
+        if (!config.partial && program.contains("jal $input")) {
             return;
         }
 
@@ -44,221 +125,233 @@ public class RiscVInterpreter {
             print(program);
         }
 
-        // Initialize internals
-        memory = new HashMap<Integer, Integer>();
-        regs = new HashMap<String, Integer>();
-        equivs = new HashMap<String, String>();
+        Assembler assembler = new Assembler(memory);
+        assembler.assemble(program);
+        adopt(assembler);
+
+        if (execute) {
+            execute();
+        }
+    }
+
+    /* Initialize internals, with nothing loaded yet */
+    private RiscVInterpreter(Config config) {
+        this.config = config;
+        memory = new Memory();
+        regs = new int[Registers.COUNT];
         labels = new HashMap<String, Integer>();
-        instructions = new ArrayList<String>();
         printer = new StringBuilder();
+        out = new Output(printer, config.output, config.maxOutput, 0);
         active = true;
         initRegs();
+    }
 
-        // Process program instructions
-        String[] strLines = program.split("\n");
-        for (int i = 0; i < strLines.length; i++) {
-            strLines[i] = strLines[i].trim();
-        }
-        lines = new ArrayList<String>(Arrays.asList(strLines));
+    /* Interpreter at a snapshot's state */
+    RiscVInterpreter(Snapshot snapshot) {
+        config = snapshot.config;
+        program = snapshot.program;
+        labels = new HashMap<String, Integer>(snapshot.labels);
+        memory = snapshot.memory.copy();
+        regs = snapshot.regs.clone();
+        printer = new StringBuilder(snapshot.output);
+        out = new Output(printer, config.output, config.maxOutput, snapshot.outputBytes);
+        pc = snapshot.pc;
+        cycles = snapshot.cycles;
+        exitCode = snapshot.exitCode;
+        active = snapshot.active;
+        badbadbad = snapshot.badbadbad;
+        status = snapshot.status;
+    }
 
-        // Clean program instructions
-        removeComments();
-        makeEquivs();
-        makeData();
-        makeInstructionList();
+    /* Interpreter carrying on from another's current state, sharing its memory copy-on-write */
+    private RiscVInterpreter(RiscVInterpreter parent) {
+        config = parent.config;
+        program = parent.program;
+        labels = parent.labels;
+        memory = parent.memory.copy();
+        regs = parent.regs.clone();
+        parent.out.flush();
+        printer = new StringBuilder(parent.printer);
+        out = new Output(printer, config.output, config.maxOutput, parent.out.written);
+        pc = parent.pc;
+        cycles = parent.cycles;
+        exitCode = parent.exitCode;
+        active = parent.active;
+        badbadbad = parent.badbadbad;
+        status = parent.status;
+    }
 
-        // Execute
-        runProgram();
+    /* Load a program without running it */
+    static RiscVInterpreter load(String program, Config config) {
+        return new RiscVInterpreter(program, config, false);
+    }
 
-        if (!badbadbad) {
-            worked = true;
-        }
+    /* Load a program from a file, mapping it rather than reading it into a String */
+    public static RiscVInterpreter load(Path file, Config config) throws IOException {
+        RiscVInterpreter vm = new RiscVInterpreter(config);
+        Assembler assembler = new Assembler(vm.memory);
+        assembler.assemble(file);
+        vm.adopt(assembler);
+        return vm;
     }
 
-    /* Initialize program registers */
-    private void initRegs() {
-        for (int i = 0; i <= 7; i++) {
-            regs.put("a" + Integer.toString(i), 0);
-        }
-        for (int i = 0; i <= 6; i++) {
-            regs.put("t" + Integer.toString(i), 0);
-        }
-        for (int i = 1; i <= 11; i++) {
-            regs.put("s" + Integer.toString(i), 0);
-        }
-        regs.put("fp", 0);
-        regs.put("sp", 0x7ffffff0);
-        regs.put("gp", 0x10000000);
-        regs.put("ra", 0);
-        regs.put("zero", 0);
-        regs.put("x0", 0);
-    }
-
-    /* Scrape and replace .equiv directives */
-    private void makeEquivs() {
-        ArrayList<Integer> indices = new ArrayList<Integer>();
-
-        // Create dictionary of .equiv equivalencies
-        for (int i = 0; i < lines.size(); ++i) {
-            String line = lines.get(i);
-            if (line.startsWith(".equiv")) {
-                String[] fields = line.split(" ");
-                fields[1] = fields[1].substring(0, fields[1].length() - 1);
-                equivs.put(fields[1], fields[2]);
-                indices.add(i);
-            }
-        }
-        Collections.reverse(indices);
-        for (Integer ind : indices) {
-            lines.remove((int) ind); // remove in backwards order 
-        }
+    /* Load a program as it streams in */
+    public static RiscVInterpreter load(Reader source, Config config) throws IOException {
+        RiscVInterpreter vm = new RiscVInterpreter(config);
+        Assembler assembler = new Assembler(vm.memory);
+        assembler.assemble(source);
+        vm.adopt(assembler);
+        return vm;
+    }
 
-        // replace equivalent string values + remove comments
-        for (int i = 0; i < lines.size(); ++i) {
-            String line = lines.get(i);
-            if (line.startsWith(".string")) {
-                continue;
-            }
-            for (String key : equivs.keySet()) {
-                line = StringUtils.replace(line, key, equivs.get(key));
-            }
-            lines.set(i, line);
-        }
+    /* Load a 32-bit little-endian RISC-V ELF executable, placing its segments at their link addresses */
+    public static RiscVInterpreter loadElf(Path file, Config config) throws IOException {
+        RiscVInterpreter vm = new RiscVInterpreter(config);
+        HashMap<String, Integer> symbols = new HashMap<String, Integer>();
+        vm.adopt(BinaryLoader.elf(file, vm.memory, symbols), symbols);
+        return vm;
     }
 
-    /* Print memory hashmap in sequential order */
-    private void printMemory() {
-        ArrayList<Integer> hi = new ArrayList<Integer>(memory.keySet());
-        Collections.sort(hi);
-        for (Integer key : hi) {
-            System.out.print(Integer.toHexString(key) + " ");
-            System.out.println(Integer.toHexString(memory.get(key)));
-        }
+    /* Load raw RV32 machine code at base, starting execution there */
+    public static RiscVInterpreter loadFlat(Path file, int base, Config config) throws IOException {
+        RiscVInterpreter vm = new RiscVInterpreter(config);
+        vm.adopt(BinaryLoader.flat(file, base, vm.memory), new HashMap<String, Integer>());
+        return vm;
     }
 
-    /* Initialize data portion of memory under .data directives */ 
-    private void data(Integer i) {
-        String line = lines.get(i);
-        // Record labels
-        if (line.contains(":")) {
-            Integer ind = line.indexOf(":");
-            String label = line.substring(0, ind);
-            labels.put(label, address);
-        } 
+    /* Reload a program saved with saveImage, skipping assembly and decoding */
+    public static RiscVInterpreter loadImage(Path file, Config config) throws IOException {
+        RiscVInterpreter vm = new RiscVInterpreter(config);
+        ProgramImage.read(file, vm);
+        return vm;
+    }
 
-        // Place .word directives into memory
-        else if (line.contains(".word")) {
-            String[] word = line.split(" ");
-            if (word[1].matches("-?(0|[1-9]\\d*)")) {
-                Integer val = Integer.parseInt(word[1]);
-                memory.put(address, val);
-            } else if (labels.containsKey(word[1])) {
-                Integer val = labels.get(word[1]);
-                memory.put(address, val);
-            }
-            address += 4;
-        }
+    /* Save this loaded, not yet run program as an image for loadImage */
+    public void saveImage(Path file) throws IOException {
+        ProgramImage.write(this, file);
+    }
 
-        // Place .string directives into memory
-        else if (line.contains(".string")) {
-            Integer startInd = line.indexOf("\"");
-            Integer endInd = line.lastIndexOf("\"");
-            String literal = line.substring(startInd + 1, endInd);
-            byte[] bytes = literal.getBytes(StandardCharsets.US_ASCII);
-            byte[] padBytes = new byte[4 - (bytes.length % 4)];
-
-            byte[] total = new byte[bytes.length + padBytes.length];
-            System.arraycopy(bytes, 0, total, 0, bytes.length);
-            System.arraycopy(padBytes, 0, total, bytes.length, padBytes.length);
-            
-            ByteBuffer inter = ByteBuffer.wrap(total).order(ByteOrder.LITTLE_ENDIAN);
-            int lengthLeft = total.length;
-            while (lengthLeft > 0) {
-                memory.put(address, inter.getInt());
-                lengthLeft -= 4;
-                address += 4;
-            } 
+    /* Take the assembled program, unless it needs input and so can't be run in full */
+    private void adopt(Assembler assembler) {
+        DecodedProgram decoded = assembler.finish();
+        if (!assembler.needsInput || config.partial) {
+            adopt(decoded, assembler.labels);
         }
     }
 
-    /* Find and record labels within instruction space */
-    private void setMainGlobals() {
-        address = 0x0;
-        Integer startInd = lines.indexOf(".globl main");
-        Integer endInd = lines.lastIndexOf(".data");
-        for (int i = startInd; i < endInd; i++) {
-            String line = lines.get(i);
-            if (line.contains(":")){
-                String label = line.substring(0, line.indexOf(":"));
-                labels.put(label, address);
-            } else if(line.startsWith(".") || line.startsWith("#") || line.length() < 4) {
-                // do nothing
-            } else {
-                address += 4;
-            }
+    private void adopt(DecodedProgram decoded, HashMap<String, Integer> labels) {
+        program = decoded;
+        this.labels = labels;
+        pc = decoded.entry;
+        Integer gp = labels.get("__global_pointer$");
+        if (gp != null) {
+            regs[Registers.GP] = gp;
         }
     }
 
-    /* Populate labels properly */
-    private void makeData() {
-        Integer startInd = lines.indexOf(".data");
-        Integer endInd = lines.indexOf(".text");        
-        address = 0x10000000;
-        for (int i = startInd; i < endInd; i++) {
-            data(i);
+    /* Run a loaded program until it exits, runs out of budget or ends its slice */
+    public void execute() {
+        if (program == null || !active) {
+            return;
         }
-
-        Integer startLast = lines.lastIndexOf(".data");
-        for (int i = startLast; i < lines.size(); i++) {
-            data(i);
+        status = Status.RUNNING;
+        stop = config.sliceCycles > 0 && config.maxCycles - cycles > config.sliceCycles
+            ? cycles + config.sliceCycles : config.maxCycles;
+        deadline = System.nanoTime() + config.sliceNanos;
+        if (config.profile && profile == null) {
+            profile = new Profile(program, labels);
         }
-        setMainGlobals();
-
-        address = 0x10000000;
-
-        // Run two passes to catch forward references
-        for (int i = startInd; i < endInd; i++) {
-            data(i);
+        if (profile != null) {
+            profile.start();
         }
-        for (int i = startLast; i < lines.size(); i++) {
-            data(i);
+        if (config.traceEntries > 0 && trace == null) {
+            trace = new Trace(config.traceEntries);
         }
-    }
-
-    /* Strip comments on surrounding code */
-    private void removeComments() {
-        ArrayList<Integer> removes = new ArrayList<Integer>();
-        for (int i = 0; i < lines.size(); i++) {
-            String line = lines.get(i);
-            Integer commentInd = line.indexOf('#');
-            if (commentInd >= 0) {
-                line = line.substring(0, commentInd).trim();
+        if (config.detectDivergence && divergence == null) {
+            divergence = new Divergence(program);
+        }
+        memory.confine(config.sandbox, config.maxMemory);
+        try {
+            if (config.engine == Engine.CLOSURE && !debug && profile == null && config.memoEntries == 0
+                    && trace == null) {
+                if (closure == null) {
+                    closure = new ClosureEngine(this);
+                }
+                closure.run();
+            } else {
+                runProgram();
             }
-            if (line.length() == 0) {
-                removes.add(i);
+        } finally {
+            out.flush();
+        }
+        if (status == Status.INPUT) {
+            // Engines step past the instruction that stopped them, but the $input call hasn't run
+            pc -= 4;
+            cycles--;
+        } else if (status == Status.RUNNING) {
+            if (badbadbad) {
+                status = Status.FAILED;
+            } else if (!active) {
+                status = Status.FINISHED;
+            } else {
+                status = cycles >= config.maxCycles ? Status.CYCLE_LIMIT : Status.SUSPENDED;
+            }
+        }
+
+        worked = !badbadbad && status != Status.CANCELLED && status != Status.SUSPENDED
+            && status != Status.OUTPUT_LIMIT && status != Status.INPUT && status != Status.MEMORY_LIMIT
+            && status != Status.FAULT && status != Status.DIVERGES;
+        if (profile != null) {
+            profile.finish(this, config.jfr);
+        }
+        if (trace != null && config.traceFile != null && (status == Status.FAILED || status == Status.CYCLE_LIMIT
+                || status == Status.MEMORY_LIMIT || status == Status.FAULT || status == Status.DIVERGES)) {
+            try {
+                trace.write(config.traceFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            lines.set(i, line);
         }
-        Collections.reverse(removes);
-        for (Integer rem : removes) {
-            lines.remove((int) rem);
+        if (config.partial && config.output == null
+                && (status == Status.FINISHED || status == Status.INPUT || status == Status.CYCLE_LIMIT)) {
+            printResult = residual();
         }
     }
 
-    /* Make list of instructions */
-    private void makeInstructionList() {
-        Integer startInd = lines.indexOf(".globl main");
-        Integer endInd = lines.lastIndexOf(".data");
+    /* Assembly program that prints the output so far and carries on from where the run stopped */
+    public String residual() {
+        return Residual.of(this);
+    }
 
-        for(String line : lines.subList(startInd, endInd)) {
-            if (line.startsWith(".")) {
-                continue;
-            } else if (line.contains(":")) {
-                continue;
-            } else {
-                instructions.add(line);
-            }
-        }
+    /*
+     * Independent interpreter at the current state, to run concurrently with
+     * this one; take it between execute() calls. Memory is shared until either
+     * side writes it, so a fork costs the pages it writes, not the program size
+     */
+    public RiscVInterpreter fork() {
+        return new RiscVInterpreter(this);
+    }
+
+    /* Copy of the current state, to resume later or elsewhere; take it between execute() calls */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /* Program text with comments stripped and .equiv symbols substituted */
+    static String normalize(String program) {
+        return Assembler.normalize(program);
+    }
+
+    /* Initialize program registers */
+    private void initRegs() {
+        Arrays.fill(regs, 0);
+        regs[Registers.SP] = 0x7ffffff0;
+        regs[Registers.GP] = 0x10000000;
+    }
+
+    /* Print memory in sequential order */
+    private void printMemory() {
+        memory.print();
     }
 
     /* Convert signed to unsigned integer (JAVA) */
@@ -268,253 +361,427 @@ public class RiscVInterpreter {
 
     /* Perform system call */
     public void ecall() {
-        switch(regs.get("a0")) {
+        switch(regs[Registers.A0]) {
             case 1: // int 
-                printer.append(regs.get("a1"));
+                out.putInt(regs[Registers.A1]);
                 break;
             case 11: // char 
-                printer.append("\n");
+                out.put('\n');
                 break;
             case 4: // str
-                // a0 has address of null terminated string
-                Integer value = memory.get(regs.get("a1"));
-                Integer counter = 0;
-                while (value != 0) {
-                    counter++;
-                    if ((value & 0xff) == 0) {
-                        break;
-                    }
-                    char character = (char) (value & 0xff);
-                    printer.append(character);
-                    if (counter % 4 == 0) {
-                        value = memory.get(regs.get("a1") + counter);
-                    } else {
-                        value = value >> 8;
-                    }
-                }
+                // a1 has address of null terminated string
+                out.putString(memory, regs[Registers.A1]);
                 break;
-            case 9:
-                regs.put("a0", 0x10008000);
+            case 9: // sbrk: a0 gets the old break, or -1 if a1 bytes don't fit
+                regs[Registers.A0] = memory.sbrk(regs[Registers.A1]);
                 break;
             case 10: // exit goodly
                 active = false;
                 break;
             case 17: // exit BADLY
                 active = false;
-                String errorCode = regs.get("a1").toString();
-                printer.append("Exited with error code " + errorCode + "\n");
+                exitCode = regs[Registers.A1];
+                String errorCode = Integer.toString(exitCode);
+                out.putAscii("Exited with error code " + errorCode + "\n");
                 break;
             default:
                 break;
         }
+        if (out.truncated) {
+            status = Status.OUTPUT_LIMIT;
+            active = false;
+        }
         return;
     }
     
     /* Run program */
     private void runProgram() {
-        Integer pc = 0; // program counter
-        Integer cycles = 0;
+        int pc = this.pc; // program counter
+        int cycles = this.cycles;
+        int maxCycles = stop;
+        final Divergence divergence = this.divergence;
+        int nextPoll = nextPoll(cycles);
+        final int[] op = program.op;
+        final int[] rd = program.rd;
+        final int[] rs1 = program.rs1;
+        final int[] rs2 = program.rs2;
+        final int[] imm = program.imm;
+        final int[] target = program.target;
+        final int[] r = regs;
+        final long[] counts = profile == null ? null : profile.counts;
+        if (this.jit == null && config.engine == Engine.TIERED && !debug) {
+            this.jit = new BlockJit(program);
+        }
+        if (memo == null && config.memoEntries > 0) {
+            memo = new Memo(program, regs, config.memoEntries);
+        }
+        final Memo memo = this.memo;
+        final Trace trace = this.trace;
+        final BlockJit jit = counts == null && memo == null && trace == null ? this.jit : null;
+        final Idioms idioms = counts == null && memo == null && trace == null && !debug ? idioms() : null;
+        if (optimizer == null && config.optimize && config.engine == Engine.SWITCH && !config.partial) {
+            optimizer = new Optimizer(program);
+        }
+        final Optimizer optimizer = counts == null && memo == null && trace == null && !debug ? this.optimizer : null;
+        int last = pc - 4; // address of the previous instruction, to spot jumps
 
         // If program doesn't halt, then force terminate
-        while (active && cycles < 300000) {
-            String instruction = processInstruction(instructions.get(pc / 4));
-            if (debug) {
-                print(instructions.get(pc / 4));
-            }
-            switch(instruction) {
-                case "lui":
-                    regs.put(regTo, imm << 12);
-                    break;
-                case "add":
-                    regs.put(regTo, regs.get(reg1) + regs.get(reg2));
-                    break;
-                case "jal": // check if works
-                    regs.put("ra", pc + 4); // save next instruction
-                    pc = labels.get(label) - 4; // cuz we advance later anyway
-                    break;
-                case "mv":
-                    regs.put(regTo, regs.get(reg1));
-                    break;
-                case "addi":
-                    regs.put(regTo, regs.get(reg1) + imm);
-                    break;
-                case "sw":
-                    String[] splitInstr = instructions.get(pc / 4).split(" ");
-                    if (splitInstr[2].contains("(")) {
-                        memory.put(regs.get(reg1) + imm, regs.get(regTo));
-                    } else {
-                        memory.put(labels.get(label), regs.get(regTo));
-                    }
-                    break;
-                case "li":
-                    regs.put(regTo, imm);
-                    break;
-                case "lw":
-                    splitInstr = instructions.get(pc / 4).split(" ");
-                    if (splitInstr[2].contains("(")) {
-                        regs.put(regTo, memory.get(regs.get(reg1) + imm));
-                    } else {
-                        regs.put(regTo, memory.get(labels.get(label)));
-                    }
-                    break;
-                case "ecall":
-                    ecall();
-                    break;
-                case "beq":
-                    if (regs.get(regTo).equals(regs.get(reg1))) {
-                        pc = labels.get(label) - 4;
-                    }
-                    break;
-                case "bne":
-                    if (!regs.get(regTo).equals(regs.get(reg1))) {
-                        pc = labels.get(label) - 4;
-                    }
-                    break;
-                case "blt":
-                    if (regs.get(regTo) < regs.get(reg1)) {
-                        pc = labels.get(label) - 4;
-                    }
-                    break;
-                case "bge":
-                    if (regs.get(regTo) >= regs.get(reg1)) {
-                        pc = labels.get(label) - 4;
-                    }
-                    break;
-                case "bltu":
-                    if (getUnsignedInt(regs.get(regTo)) < getUnsignedInt(regs.get(reg1))) {
-                        pc = labels.get(label) - 4;
-                    }
-                    break;
-                case "bgeu":
-                    if (getUnsignedInt(regs.get(regTo)) >= getUnsignedInt(regs.get(reg1))) {
-                        pc = labels.get(label) - 4;
-                    }
-                    break;
-                case "beqz":
-                    if (regs.get(regTo).equals(0)) {
-                        pc = labels.get(label) - 4;
+        try {
+            while (active && cycles < maxCycles) {
+                if (cycles >= nextPoll) {
+                    nextPoll = nextPoll(cycles);
+                    if (interrupted()) {
+                        break;
                     }
-                    break;
-                case "bnez":
-                    if (!regs.get(regTo).equals(0)) {
-                        pc = labels.get(label) - 4;
+                    if (divergence != null && divergence.repeats(pc, r, memory)) {
+                        diverge();
+                        break;
                     }
+                }
+                if (!program.contains(pc)) {
+                    // Jumped or ran off the end outside the text; blocks return here too
+                    fault(new Memory.Fault(pc, false));
                     break;
-                case "bgtz":
-                    if (regs.get(regTo) > 0) {
-                        pc = labels.get(label) - 4;
+                }
+                if (pc != last + 4) {
+                    if (divergence != null && pc == last && divergence.spins(program.index(pc))) {
+                        diverge();
+                        break;
                     }
-                    break;
-                case "bgez":
-                    if (regs.get(regTo) >= 0) {
-                        pc = labels.get(label) - 4;
+                    if (idioms != null) {
+                        long exit = idioms.run(program.index(pc), r, memory, Math.min(maxCycles, nextPoll) - cycles);
+                        if (exit != Idioms.NOT_RUN) {
+                            cycles += (int) (exit >>> 32);
+                            last = pc;
+                            pc = (int) exit;
+                            continue;
+                        }
                     }
-                    break;
-                case "blez":
-                    if (regs.get(regTo) <= 0) {
-                        pc = labels.get(label) - 4;
+                    if (jit != null) {
+                        int from = program.index(pc);
+                        long exit = jit.enter(from, r, memory, Math.min(maxCycles, nextPoll) - cycles);
+                        if (exit != BlockJit.NOT_COMPILED) {
+                            cycles += (int) (exit >>> 32);
+                            last = program.address(from + jit.length(from) - 1); // so a jump to itself is spotted
+                            pc = (int) exit;
+                            continue;
+                        }
                     }
-                    break;
-                case "bltz":
-                    if (regs.get(regTo) < 0) {
-                        pc = labels.get(label) - 4;
+                }
+                if (optimizer != null) {
+                    long exit;
+                    try {
+                        exit = optimizer.run(program.index(pc), r, memory, Math.min(maxCycles, nextPoll) - cycles);
+                    } catch (Memory.Fault e) {
+                        // Charge the block up to the instruction that faulted, as stepping would have
+                        cycles += optimizer.faulted();
+                        pc += 4 * optimizer.faulted();
+                        throw e;
                     }
-                    break;
-                case "jr":
-                    pc = regs.get(regTo) - 4;
-                    break;
-                case "la":
-                    regs.put(regTo, labels.get(label));
-                    break;
-                case "j":
-                    pc = labels.get(label) - 4;
-                    break;
-                case "xor":
-                    regs.put(regTo, regs.get(reg1) ^ regs.get(reg2));
-                    break;
-                case "div":
-                    regs.put(regTo, regs.get(reg1) / regs.get(reg2));
-                    break;
-                case "slli":
-                    regs.put(regTo, regs.get(reg1) << imm);
-                    break;
-                case "srli":
-                    regs.put(regTo, regs.get(reg1) >> imm);
-                    break;
-                case "jalr":
-                    regs.put("ra", pc + 4);
-                    pc = regs.get(regTo) - 4;
-                    break;
-                case "mul":
-                    regs.put(regTo, regs.get(reg1) * regs.get(reg2));
-                    break;
-                case "or":
-                    regs.put(regTo, regs.get(reg1) | regs.get(reg2));
-                    break;
-                case "and":
-                    regs.put(regTo, regs.get(reg1) & regs.get(reg2));
-                    break;
-                case "sub":
-                    regs.put(regTo, regs.get(reg1) - regs.get(reg2));
-                    break;
-                case "lb":// CHECK
-                    // add immediate, then clear last two bits
-                    Integer actualMemoryAddress = regs.get(reg1) + imm;
-                    Integer memoryAddress = (actualMemoryAddress >> 2) << 2;
-                    Integer locatedWord = memory.get(memoryAddress);
-                    byte[] bytes = ByteBuffer.allocate(4)
-                                             .order(ByteOrder.LITTLE_ENDIAN)
-                                             .putInt(locatedWord)
-                                             .array();
-                    Integer value = (int) bytes[actualMemoryAddress & 0x3];
-                    regs.put(regTo, value);
-                    break;
-                case "sb":
-                    byte store = (byte) ((int) regs.get(regTo));
-                    actualMemoryAddress = regs.get(reg1) + imm;
-                    memoryAddress = (actualMemoryAddress >> 2) << 2;
-                    if (memory.containsKey(memoryAddress)) {
-                        locatedWord =  memory.get(memoryAddress);
-                    } else {
-                        locatedWord = 0;
+                    if (exit != Optimizer.NOT_RUN) {
+                        cycles += (int) (exit >>> 32);
+                        pc = (int) exit;
+                        last = pc - 4;
+                        continue;
                     }
-                    bytes = ByteBuffer.allocate(4)
-                                      .order(ByteOrder.LITTLE_ENDIAN)
-                                      .putInt(locatedWord)
-                                      .array();
-                    bytes[actualMemoryAddress & 0x3] = store;
-                    value = ByteBuffer.wrap(bytes)
-                                      .order(ByteOrder.LITTLE_ENDIAN)
-                                      .getInt();
-                    memory.put(memoryAddress, value);
-                    break;
-                case "rem":
-                    Integer r1 = regs.get(reg1);
-                    Integer r2 = regs.get(reg2);
-                    Integer val = 0;
-                    if (r2.equals(0)) {
-                        val = 0;
-                    } else if (r1.equals(Integer.MIN_VALUE) && r2.equals(-1)) {
-                        val = 0;
-                    } else {
-                        val = r1 % r2;
+                }
+                last = pc;
+                int i = program.index(pc);
+                if (counts != null) {
+                    counts[i]++;
+                }
+                if (debug) {
+                    print(program.text(i));
+                }
+                if (memo != null) {
+                    // Long calls can skip past the next look for divergence, which would move it
+                    int skipped = memo.step(i, pc, cycles, divergence == null ? maxCycles : Math.min(maxCycles, nextPoll));
+                    if (skipped > 0) {
+                        // Answered from the memo: carry on at the return address
+                        pc += 4;
+                        cycles += skipped;
+                        continue;
                     }
-                    regs.put(regTo, val);
-                    break;
-                default:
-                    System.out.println("couldn't");   
-                    System.out.println(instructions.get(pc / 4));
-                    badbadbad = true;
-                    active = false;
-                    break;                 
-            }
-            if (debug) {
-                print(regs);
+                }
+                int address = trace == null ? 0 : r[rs1[i]] + imm[i]; // before a load can overwrite its base
+                switch (Opcode.VALUES[op[i]]) {
+                    case LUI:
+                        r[rd[i]] = imm[i] << 12;
+                        break;
+                    case ADD:
+                        r[rd[i]] = r[rs1[i]] + r[rs2[i]];
+                        break;
+                    case JAL:
+                        r[rd[i]] = pc + 4; // save next instruction
+                        pc = target[i] - 4; // cuz we advance later anyway
+                        break;
+                    case MV:
+                        r[rd[i]] = r[rs1[i]];
+                        break;
+                    case ADDI:
+                        r[rd[i]] = r[rs1[i]] + imm[i];
+                        break;
+                    case SW:
+                        memory.storeWord(r[rs1[i]] + imm[i], r[rs2[i]]);
+                        break;
+                    case LI:
+                        r[rd[i]] = imm[i];
+                        break;
+                    case LW:
+                        r[rd[i]] = memory.loadWord(r[rs1[i]] + imm[i]);
+                        break;
+                    case ECALL:
+                        ecall();
+                        break;
+                    case BEQ:
+                        if (r[rs1[i]] == r[rs2[i]]) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BNE:
+                        if (r[rs1[i]] != r[rs2[i]]) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BLT:
+                        if (r[rs1[i]] < r[rs2[i]]) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BGE:
+                        if (r[rs1[i]] >= r[rs2[i]]) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BLTU:
+                        if (getUnsignedInt(r[rs1[i]]) < getUnsignedInt(r[rs2[i]])) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BGEU:
+                        if (getUnsignedInt(r[rs1[i]]) >= getUnsignedInt(r[rs2[i]])) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BEQZ:
+                        if (r[rs1[i]] == 0) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BNEZ:
+                        if (r[rs1[i]] != 0) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BGTZ:
+                        if (r[rs1[i]] > 0) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BGEZ:
+                        if (r[rs1[i]] >= 0) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BLEZ:
+                        if (r[rs1[i]] <= 0) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case BLTZ:
+                        if (r[rs1[i]] < 0) {
+                            pc = target[i] - 4;
+                        }
+                        break;
+                    case JR:
+                        pc = r[rs1[i]] - 4;
+                        break;
+                    case LA:
+                        r[rd[i]] = target[i];
+                        break;
+                    case J:
+                        pc = target[i] - 4;
+                        break;
+                    case XOR:
+                        r[rd[i]] = r[rs1[i]] ^ r[rs2[i]];
+                        break;
+                    case DIV:
+                        r[rd[i]] = Arithmetic.div(r[rs1[i]], r[rs2[i]]);
+                        break;
+                    case SLLI:
+                        r[rd[i]] = r[rs1[i]] << imm[i];
+                        break;
+                    case SRLI:
+                        r[rd[i]] = r[rs1[i]] >>> imm[i];
+                        break;
+                    case JALR:
+                        int jump = r[rs1[i]] + imm[i];
+                        r[rd[i]] = pc + 4;
+                        pc = jump - 4;
+                        break;
+                    case MUL:
+                        r[rd[i]] = r[rs1[i]] * r[rs2[i]];
+                        break;
+                    case OR:
+                        r[rd[i]] = r[rs1[i]] | r[rs2[i]];
+                        break;
+                    case AND:
+                        r[rd[i]] = r[rs1[i]] & r[rs2[i]];
+                        break;
+                    case SUB:
+                        r[rd[i]] = r[rs1[i]] - r[rs2[i]];
+                        break;
+                    case LB:
+                        r[rd[i]] = memory.loadByte(r[rs1[i]] + imm[i]);
+                        break;
+                    case SB:
+                        memory.storeByte(r[rs1[i]] + imm[i], r[rs2[i]]);
+                        break;
+                    case REM:
+                        r[rd[i]] = Arithmetic.rem(r[rs1[i]], r[rs2[i]]);
+                        break;
+                    case SLT:
+                        r[rd[i]] = Arithmetic.slt(r[rs1[i]], r[rs2[i]]);
+                        break;
+                    case SLTU:
+                        r[rd[i]] = Arithmetic.sltu(r[rs1[i]], r[rs2[i]]);
+                        break;
+                    case SLTI:
+                        r[rd[i]] = Arithmetic.slt(r[rs1[i]], imm[i]);
+                        break;
+                    case SLTIU:
+                        r[rd[i]] = Arithmetic.sltu(r[rs1[i]], imm[i]);
+                        break;
+                    case ANDI:
+                        r[rd[i]] = r[rs1[i]] & imm[i];
+                        break;
+                    case ORI:
+                        r[rd[i]] = r[rs1[i]] | imm[i];
+                        break;
+                    case XORI:
+                        r[rd[i]] = r[rs1[i]] ^ imm[i];
+                        break;
+                    case SLL:
+                        r[rd[i]] = r[rs1[i]] << r[rs2[i]];
+                        break;
+                    case SRL:
+                        r[rd[i]] = r[rs1[i]] >>> r[rs2[i]];
+                        break;
+                    case SRA:
+                        r[rd[i]] = r[rs1[i]] >> r[rs2[i]];
+                        break;
+                    case SRAI:
+                        r[rd[i]] = r[rs1[i]] >> imm[i];
+                        break;
+                    case MULH:
+                        r[rd[i]] = Arithmetic.mulh(r[rs1[i]], r[rs2[i]]);
+                        break;
+                    case MULHSU:
+                        r[rd[i]] = Arithmetic.mulhsu(r[rs1[i]], r[rs2[i]]);
+                        break;
+                    case MULHU:
+                        r[rd[i]] = Arithmetic.mulhu(r[rs1[i]], r[rs2[i]]);
+                        break;
+                    case DIVU:
+                        r[rd[i]] = Arithmetic.divu(r[rs1[i]], r[rs2[i]]);
+                        break;
+                    case REMU:
+                        r[rd[i]] = Arithmetic.remu(r[rs1[i]], r[rs2[i]]);
+                        break;
+                    case LH:
+                        r[rd[i]] = memory.loadHalf(r[rs1[i]] + imm[i]);
+                        break;
+                    case LHU:
+                        r[rd[i]] = memory.loadHalf(r[rs1[i]] + imm[i]) & 0xffff;
+                        break;
+                    case LBU:
+                        r[rd[i]] = memory.loadByte(r[rs1[i]] + imm[i]) & 0xff;
+                        break;
+                    case SH:
+                        memory.storeHalf(r[rs1[i]] + imm[i], r[rs2[i]]);
+                        break;
+                    case AUIPC:
+                        r[rd[i]] = pc + (imm[i] << 12);
+                        break;
+                    default:
+                        fail(i);
+                        break;                 
+                }
+                r[Registers.ZERO] = 0; // x0 is hardwired, so drop anything written to it
+                if (trace != null) {
+                    int value = Opcode.VALUES[op[i]].format == Opcode.Format.STORE ? r[rs2[i]] : r[rd[i]];
+                    trace.record(last, op[i], rd[i], value, address);
+                }
+                if (debug) {
+                    print(Registers.toString(r));
+                }
+                pc += 4;
+                cycles += 1;
             }
-            pc += 4;
-            cycles += 1;
+        } catch (Memory.Fault e) {
+            // pc and cycles stay on the faulting instruction, or the compiled block it was in
+            fault(e);
+        }
+        this.pc = pc;
+        this.cycles = cycles;
+    }
+
+    /* Bulk loops of the program, recognized on first use */
+    Idioms idioms() {
+        if (idioms == null) {
+            idioms = new Idioms(program);
+        }
+        return idioms;
+    }
+
+    /* Check whether the running thread was interrupted, and stop if so */
+    boolean cancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            status = Status.CANCELLED;
+            return true;
         }
+        return false;
+    }
+
+    /* Check whether the run has to stop before its cycle budget: cancelled, or out of wall time */
+    boolean interrupted() {
+        return cancelled() || config.sliceNanos > 0 && System.nanoTime() - deadline >= 0;
+    }
+
+    /* Stop a run that has been shown never to end */
+    void diverge() {
+        status = Status.DIVERGES;
+        active = false;
+    }
+
+    /*
+     * Cycle count, after cycles, of the next check for cancellation, the slice
+     * deadline and divergence. Checks fall on multiples of a fixed interval and
+     * engines keep their blocks short of them, so a divergence check sees the
+     * same states, and a run stops with the same cycles, on every engine.
+     */
+    int nextPoll(int cycles) {
+        int interval = divergence == null ? POLL_INTERVAL : Divergence.INTERVAL;
+        return (int) Math.min(Integer.MAX_VALUE, (long) cycles - cycles % interval + interval);
+    }
 
+    /* Stop on a memory access the config doesn't allow */
+    void fault(Memory.Fault fault) {
+        status = fault.overLimit ? Status.MEMORY_LIMIT : Status.FAULT;
+        active = false;
+    }
+
+    /* Give up on an instruction we can't execute */
+    void fail(int i) {
+        if (program.op[i] == Opcode.INPUT.ordinal()) {
+            status = Status.INPUT;
+            active = false;
+            return;
+        }
+        System.out.println("couldn't");   
+        System.out.println(program.text(i));
+        badbadbad = true;
+        active = false;
     }
 
     /* Print function */
@@ -525,74 +792,4 @@ public class RiscVInterpreter {
         } 
         System.out.println(stuff[stuff.length - 1]);
     }
-
-    /* Grab registers and label from instruction */
-    private String processInstruction(String instr) {
-        String[] splitInstr = instr.split(" ");
-        String instruction = splitInstr[0];
-        if (instruction.equals("ecall")) {
-            return instruction;
-        }
-        if (splitInstr[1].contains(",")) {
-            splitInstr[1] = StringUtils.replace(splitInstr[1], ",", "");
-        }
-        if (splitInstr.length > 2) {
-            if (splitInstr[2].contains(",")) {
-                splitInstr[2] = StringUtils.replace(splitInstr[2], ",", "");
-            }
-            if (splitInstr[2].matches("-?(0|[1-9]\\d*)")) {
-                imm = Integer.parseInt(splitInstr[2]);
-            }    
-            if (regs.containsKey(splitInstr[2])) {
-                reg1 = splitInstr[2];
-            } else {
-                label = splitInstr[2];
-            }
-            if (splitInstr[2].contains("(")) {
-                int firstParen = splitInstr[2].indexOf("(");
-                int lastParen = splitInstr[2].indexOf(")");
-                reg1 = splitInstr[2].substring(firstParen + 1, lastParen);
-                String tempImm = splitInstr[2].substring(0, firstParen);
-                if (tempImm.matches("-?(0|[1-9]\\d*)")) {
-                    imm = Integer.parseInt(tempImm);
-                } else {
-                    Integer ind = Math.max(tempImm.indexOf("+"), tempImm.indexOf("-"));
-                    Integer num1 = Integer.parseInt(tempImm.substring(0, ind));
-                    Integer num2 = Integer.parseInt(tempImm.substring(ind + 1));
-                    if (tempImm.contains("-")) {
-                        imm = num1 - num2;
-                    } else if (tempImm.contains("+")) {
-                        imm = num1 + num2;
-                    } else {
-                        System.out.println("ERRORORORORR");
-                    }
-                }
-            }
-        }
-        if (splitInstr.length > 3) {
-            if (splitInstr[3].contains(",")) {
-                splitInstr[3] = StringUtils.replace(splitInstr[3], ",", "");
-            }
-            if (splitInstr[3].matches("-?(0|[1-9]\\d*)")) {
-                imm = Integer.parseInt(splitInstr[3]);
-            }    
-            if (regs.containsKey(splitInstr[3])) {
-                reg2 = splitInstr[3];
-            } else {
-                label = splitInstr[3];
-            }
-        }
-        if (instruction.equals("jal")) {
-            if (regs.containsKey(splitInstr[1])) {
-                label = splitInstr[2];
-            } else {
-                label = splitInstr[1];
-            }
-        }
-        if (instruction.equals("j")) {
-            label = splitInstr[1];
-        }
-        regTo = splitInstr[1];
-        return instruction;
-    }
 }
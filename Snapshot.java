@@ -0,0 +1,65 @@
+import java.util.Map;
+
+/*
+ * Complete state of a loaded program between runs: where it stopped,
+ * registers, memory and the output printed so far (or, when output streams
+ * to a channel, how much was written to it). The decoded program is immutable
+ * and shared with the interpreter it came from; everything else is copied, so
+ * a snapshot can be resumed any number of times, on any thread, while the
+ * original keeps running.
+ */
+public final class Snapshot {
+
+    final DecodedProgram program;
+    final Map<String, Integer> labels;
+    final RiscVInterpreter.Config config;
+    final int pc;
+    final int[] regs;
+    final Memory memory;
+    final String output;
+    final long outputBytes;
+    final int cycles;
+    final int exitCode;
+    final boolean active;
+    final boolean badbadbad;
+    final RiscVInterpreter.Status status;
+
+    Snapshot(RiscVInterpreter vm) {
+        program = vm.program;
+        labels = vm.labels;
+        config = vm.config;
+        pc = vm.pc;
+        regs = vm.regs.clone();
+        memory = vm.memory.copy();
+        vm.out.flush();
+        output = vm.printer.toString();
+        outputBytes = vm.out.written;
+        cycles = vm.cycles;
+        exitCode = vm.exitCode;
+        active = vm.active;
+        badbadbad = vm.badbadbad;
+        status = vm.status;
+    }
+
+    /* Status of the run when the snapshot was taken */
+    public RiscVInterpreter.Status status() {
+        return status;
+    }
+
+    /* Cycles executed before the snapshot */
+    public int cycles() {
+        return cycles;
+    }
+
+    /* Interpreter at this state, not yet running; call execute() to continue */
+    public RiscVInterpreter restore() {
+        return new RiscVInterpreter(this);
+    }
+
+    /* Continue the run from this state until it finishes or is suspended again */
+    public RiscVInterpreter resume() {
+        RiscVInterpreter vm = restore();
+        vm.execute();
+        return vm;
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * The last instructions a run executed, kept in a ring of ints allocated up
+ * front, so recording one is four array stores. Each record is
+ *     pc, op | rd << 8, value, address
+ * where value is what the instruction left in rd, or what it stored, and
+ * address is the effective address of a load or store. Capacity is rounded
+ * up to a power of two. Calls answered from the memo don't appear.
+ *
+ * write() dumps the ring oldest record first, and decode() turns a dump back
+ * into one line per instruction, e.g.
+ *     0x0000002c  lw       t0 = 17           [0x10000004]
+ *
+ * Dump layout, little-endian throughout:
+ *
+ *     int magic "RVTR", int FORMAT, int RiscVInterpreter.VERSION,
+ *     int records, long instructions recorded over the whole run
+ *     int[4 * records] records, oldest first
+ *
+ * Opcodes are stored by ordinal, so a dump only decodes with the interpreter
+ * version that wrote it.
+ */
+public final class Trace {
+
+    private static final int MAGIC = 0x52565452; // "RVTR"
+    private static final int FORMAT = 1;
+    private static final int HEADER = 24;
+
+    private final int[] ring;
+    private final int mask;
+    private long recorded;
+
+    Trace(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(entries - 1, 1)) << 1;
+        ring = new int[4 * capacity];
+        mask = capacity - 1;
+    }
+
+    void record(int pc, int op, int rd, int value, int address) {
+        int k = (int) (recorded++ & mask) << 2;
+        ring[k] = pc;
+        ring[k + 1] = op | rd << 8;
+        ring[k + 2] = value;
+        ring[k + 3] = address;
+    }
+
+    /* Instructions recorded over the whole run, including those since overwritten */
+    public long recorded() {
+        return recorded;
+    }
+
+    /* Records still held, oldest first */
+    private int[] records() {
+        int held = (int) Math.min(recorded, mask + 1);
+        int[] records = new int[4 * held];
+        int first = (int) ((recorded - held) & mask);
+        int tail = Math.min(held, mask + 1 - first);
+        System.arraycopy(ring, 4 * first, records, 0, 4 * tail);
+        System.arraycopy(ring, 0, records, 4 * tail, 4 * (held - tail));
+        return records;
+    }
+
+    /* Dump the held records, replacing file atomically */
+    public void write(Path file) throws IOException {
+        int[] records = records();
+        ByteBuffer out = ByteBuffer.allocate(HEADER + 4 * records.length).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(FORMAT).putInt(RiscVInterpreter.VERSION).putInt(records.length / 4).putLong(recorded);
+        out.asIntBuffer().put(records);
+        out.position(0);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* Readable text of a dump written by write() */
+    public static String decode(Path file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a trace");
+            }
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (in.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a trace");
+        }
+        if (in.getInt(4) != FORMAT || in.getInt(8) != RiscVInterpreter.VERSION) {
+            throw new IOException(file + " was written by another interpreter version");
+        }
+        int count = in.getInt(12);
+        if (count < 0 || HEADER + 16L * count != in.limit()) {
+            throw new IOException(file + " is truncated");
+        }
+        int[] records = new int[4 * count];
+        in.position(HEADER);
+        in.asIntBuffer().get(records);
+        return text(records, in.getLong(16));
+    }
+
+    /* The held records as text, as decode() renders a dump of them */
+    @Override
+    public String toString() {
+        return text(records(), recorded);
+    }
+
+    private static String text(int[] records, long recorded) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("last %d of %d instructions%n", records.length / 4, recorded));
+        for (int k = 0; k < records.length; k += 4) {
+            int op = records[k + 1] & 0xff;
+            int rd = (records[k + 1] >>> 8) & 0xff;
+            if (op >= Opcode.VALUES.length || rd >= Registers.COUNT) {
+                out.append(String.format("0x%08x  (bad record)%n", records[k]));
+                continue;
+            }
+            Opcode code = Opcode.VALUES[op];
+            String name = code.mnemonic == null ? code.name().toLowerCase() : code.mnemonic;
+            String operands = "";
+            switch (code.format) {
+                case R:
+                case I:
+                case RD_IMM:
+                case RD_RS:
+                case RD_LABEL:
+                case JAL:
+                case JALR:
+                    operands = Registers.ABI_NAMES[rd] + " = " + records[k + 2];
+                    break;
+                case LOAD:
+                    operands = String.format("%-16s [0x%08x]", Registers.ABI_NAMES[rd] + " = " + records[k + 2],
+                                             records[k + 3]);
+                    break;
+                case STORE:
+                    operands = String.format("%-16s [0x%08x]", records[k + 2], records[k + 3]);
+                    break;
+                default:
+                    break;
+            }
+            out.append(String.format("0x%08x  %-8s %s", records[k], name, operands).stripTrailing());
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
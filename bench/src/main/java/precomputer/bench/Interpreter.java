@@ -0,0 +1,150 @@
+package precomputer.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/*
+ * The interpreter sits in the unnamed package, which code in a named package
+ * (as JMH requires) can't import, so it is reached through method handles.
+ */
+final class Interpreter {
+
+    private static final Class<?> INTERPRETER;
+    private static final Class<?> CONFIG;
+    private static final Class<?> ENGINE;
+    private static final MethodHandle NEW;
+    private static final MethodHandle LOAD;
+    private static final MethodHandle LOAD_FILE;
+    private static final MethodHandle EXECUTE;
+    private static final MethodHandle NEW_CONFIG;
+    private static final MethodHandle SET_ENGINE;
+    private static final MethodHandle PRINTER;
+    private static final MethodHandle CYCLES;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            INTERPRETER = Class.forName("RiscVInterpreter");
+            CONFIG = Class.forName("RiscVInterpreter$Config");
+            ENGINE = Class.forName("RiscVInterpreter$Engine");
+            NEW = lookup.unreflectConstructor(INTERPRETER.getConstructor(String.class, CONFIG));
+            LOAD = lookup.unreflect(accessible(INTERPRETER.getDeclaredMethod("load", String.class, CONFIG)));
+            LOAD_FILE = lookup.unreflect(INTERPRETER.getMethod("load", Path.class, CONFIG));
+            EXECUTE = lookup.unreflect(accessible(INTERPRETER.getDeclaredMethod("execute")));
+            Constructor<?> config = CONFIG.getConstructor();
+            NEW_CONFIG = lookup.unreflectConstructor(config);
+            SET_ENGINE = lookup.unreflectSetter(CONFIG.getField("engine"));
+            PRINTER = lookup.unreflectGetter(accessible(INTERPRETER.getDeclaredField("printer")));
+            CYCLES = lookup.unreflectGetter(accessible(INTERPRETER.getDeclaredField("cycles")));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Interpreter() {
+    }
+
+    private static Method accessible(Method method) {
+        method.setAccessible(true);
+        return method;
+    }
+
+    private static Field accessible(Field field) {
+        field.setAccessible(true);
+        return field;
+    }
+
+    /* A RiscVInterpreter.Config selecting the named engine */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object config(String engine) {
+        try {
+            Object config = NEW_CONFIG.invoke();
+            SET_ENGINE.invoke(config, Enum.valueOf((Class) ENGINE, engine));
+            return config;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /* Load and run a program */
+    static Object run(String source, Object config) {
+        try {
+            return NEW.invoke(source, config);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /* Parse, lay out data and decode a program, without running it */
+    static Object load(String source, Object config) {
+        try {
+            return LOAD.invoke(source, config);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /* Load a program from a memory-mapped file, without running it */
+    static Object load(Path file, Object config) {
+        try {
+            return LOAD_FILE.invoke(file, config);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /* Run a program returned by load() */
+    static void execute(Object interpreter) {
+        try {
+            EXECUTE.invoke(interpreter);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static String output(Object interpreter) {
+        try {
+            return PRINTER.invoke(interpreter).toString();
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    static int cycles(Object interpreter) {
+        try {
+            return (int) CYCLES.invoke(interpreter);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /* Source of a program in the benchmark corpus */
+    static String corpus(String name) {
+        try (InputStream in = Interpreter.class.getResourceAsStream("/corpus/" + name + ".s")) {
+            if (in == null) {
+                throw new IllegalArgumentException("no corpus program " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* Fail fast if any engine disagrees with the switch loop on a program */
+    static void checkEnginesAgree(String source, String... engines) {
+        Object reference = run(source, config("SWITCH"));
+        for (String engine : engines) {
+            Object other = run(source, config(engine));
+            if (!output(reference).equals(output(other)) || cycles(reference) != cycles(other)) {
+                throw new IllegalStateException(engine + " engine disagrees with SWITCH");
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package precomputer.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Loading alone: one assembler pass from a String, or from a memory-mapped file */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"alu_loop", "fib", "sort", "strings"})
+    public String program;
+
+    private String source;
+    private Path file;
+    private Object config;
+
+    @Setup
+    public void setup() throws IOException {
+        source = Interpreter.corpus(program);
+        file = Files.createTempFile(program, ".s");
+        Files.writeString(file, source);
+        config = Interpreter.config("SWITCH");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return Interpreter.load(source, config);
+    }
+
+    @Benchmark
+    public Object parseMapped() {
+        return Interpreter.load(file, config);
+    }
+}
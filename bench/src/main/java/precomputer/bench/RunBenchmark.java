@@ -0,0 +1,84 @@
+package precomputer.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Execution alone, and load plus execution, for every engine. Throughput is
+ * reported in programs per second, and the "cycles" counter in interpreted
+ * instructions per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunBenchmark {
+
+    @Param({"alu_loop", "fib", "sort", "strings"})
+    public String program;
+
+    @Param({"SWITCH", "CLOSURE", "TIERED"})
+    public String engine;
+
+    String source;
+    Object config;
+
+    /* Interpreted instructions, reported as a rate */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Cycles {
+        public long cycles;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            cycles = 0;
+        }
+    }
+
+    /* A freshly loaded program for each execute() call */
+    @State(Scope.Thread)
+    public static class Loaded {
+        Object interpreter;
+
+        @Setup(Level.Invocation)
+        public void load(RunBenchmark benchmark) {
+            interpreter = Interpreter.load(benchmark.source, benchmark.config);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        source = Interpreter.corpus(program);
+        config = Interpreter.config(engine);
+        Interpreter.checkEnginesAgree(source, engine);
+    }
+
+    @Benchmark
+    public Object execute(Loaded loaded, Cycles counter) {
+        Interpreter.execute(loaded.interpreter);
+        counter.cycles += Interpreter.cycles(loaded.interpreter);
+        return loaded.interpreter;
+    }
+
+    @Benchmark
+    public Object endToEnd(Cycles counter) {
+        Object interpreter = Interpreter.run(source, config);
+        counter.cycles += Interpreter.cycles(interpreter);
+        return interpreter;
+    }
+}
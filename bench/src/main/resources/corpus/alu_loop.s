@@ -0,0 +1,19 @@
+# Tight ALU loop (mul/rem/add) that runs until the cycle cap
+.text
+.globl main
+main:
+li t0, 0
+li t1, 1000000
+li t4, 0
+loop:
+addi t0, t0, 1
+mul t2, t0, t0
+rem t3, t2, t1
+add t4, t4, t3
+bne t0, t1, loop
+li a0, 1
+mv a1, t4
+ecall
+li a0, 10
+ecall
+.data
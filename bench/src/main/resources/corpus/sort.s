@@ -0,0 +1,77 @@
+# Fills an array with an LCG, bubble sorts it with lw/sw, copies a string with lb/sb and prints it all
+.data
+greeting:
+.string "sorted"
+count:
+.word 48
+.text
+.globl main
+main:
+la s1, array
+lw s2, count
+li t0, 0
+li t1, 12345
+fill:
+li t2, 1103515245
+mul t1, t1, t2
+addi t1, t1, 12345
+srli t3, t1, 16
+slli t4, t0, 2
+add t4, t4, s1
+sw t3, 0(t4)
+addi t0, t0, 1
+blt t0, s2, fill
+li t0, 0
+outer:
+li t1, 0
+addi t5, s2, -1
+sub t5, t5, t0
+inner:
+bge t1, t5, inner_done
+slli t2, t1, 2
+add t2, t2, s1
+lw t3, 0(t2)
+lw t4, 4(t2)
+bge t4, t3, noswap
+sw t4, 0(t2)
+sw t3, 4(t2)
+noswap:
+addi t1, t1, 1
+j inner
+inner_done:
+addi t0, t0, 1
+blt t0, s2, outer
+la t0, greeting
+la t1, buffer
+copy:
+lb t2, 0(t0)
+sb t2, 0(t1)
+addi t0, t0, 1
+addi t1, t1, 1
+bnez t2, copy
+li a0, 4
+la a1, buffer
+ecall
+li a0, 11
+ecall
+li t0, 0
+print:
+slli t2, t0, 2
+add t2, t2, s1
+lw a1, 0(t2)
+li a0, 1
+ecall
+li a0, 11
+ecall
+addi t0, t0, 1
+blt t0, s2, print
+li a0, 10
+ecall
+.data
+buffer:
+.word 0
+.word 0
+.word 0
+.word 0
+array:
+.word 0
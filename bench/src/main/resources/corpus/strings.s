@@ -0,0 +1,29 @@
+# Prints a string through ecall 4 in a loop, then exits with an error code
+.data
+hello:
+.string "hello, world"
+bye:
+.string "done"
+.text
+.globl main
+main:
+li s0, 0
+li s1, 2000
+again:
+li a0, 4
+la a1, hello
+ecall
+li a0, 1
+mv a1, s0
+ecall
+li a0, 11
+ecall
+addi s0, s0, 1
+blt s0, s1, again
+li a0, 4
+la a1, bye
+ecall
+li a0, 17
+li a1, 3
+ecall
+.data
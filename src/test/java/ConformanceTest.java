@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/*
+ * Programs with known results, checked on every engine with and without the
+ * memo and the optimizer. Next to each name.s is a name.expected: "key: value"
+ * lines, then "output:" and the output verbatim to the end of the file. The
+ * keys maxCycles, maxMemory, sandbox and detectDivergence set the config; the
+ * keys status and cycles say how the run has to end.
+ */
+class ConformanceTest {
+
+    private static final String OUTPUT = "output:\n";
+
+    static List<String> programs() {
+        return Corpus.names("conformance");
+    }
+
+    /* The config an expected file asks for, or throws on a key it doesn't know */
+    private static RiscVInterpreter.Config config(String header) {
+        RiscVInterpreter.Config config = new RiscVInterpreter.Config();
+        for (String line : header.split("\n")) {
+            String key = line.substring(0, line.indexOf(':'));
+            String value = line.substring(line.indexOf(':') + 1).trim();
+            switch (key) {
+                case "maxCycles":
+                    config.maxCycles = Integer.parseInt(value);
+                    break;
+                case "maxMemory":
+                    config.maxMemory = Long.parseLong(value);
+                    break;
+                case "sandbox":
+                    config.sandbox = Boolean.parseBoolean(value);
+                    break;
+                case "detectDivergence":
+                    config.detectDivergence = Boolean.parseBoolean(value);
+                    break;
+                case "status":
+                case "cycles":
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown key " + key);
+            }
+        }
+        return config;
+    }
+
+    /* The value of a key in the header */
+    private static String value(String header, String key) {
+        for (String line : header.split("\n")) {
+            if (line.startsWith(key + ":")) {
+                return line.substring(key.length() + 1).trim();
+            }
+        }
+        throw new IllegalArgumentException("no " + key);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("programs")
+    void endsAsExpected(String name) {
+        String source = Corpus.source("conformance", name);
+        String expected = Corpus.read("conformance", name + ".expected");
+        int split = expected.indexOf(OUTPUT);
+        String header = expected.substring(0, split);
+        String output = expected.substring(split + OUTPUT.length());
+        for (RiscVInterpreter.Engine engine : RiscVInterpreter.Engine.values()) {
+            for (String variant : new String[] {"plain", "memo", "optimize"}) {
+                RiscVInterpreter.Config config = config(header);
+                config.engine = engine;
+                config.memoEntries = variant.equals("memo") ? 64 : 0;
+                config.optimize = variant.equals("optimize");
+                RiscVInterpreter vm = new RiscVInterpreter(source, config);
+                String where = engine + " " + variant;
+                assertEquals(value(header, "status"), vm.status.toString(), where);
+                assertEquals(Integer.parseInt(value(header, "cycles")), vm.cycles, where);
+                assertEquals(output, vm.printer.toString(), where);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/* Test programs kept as resources, one directory per suite */
+final class Corpus {
+
+    private Corpus() {
+    }
+
+    /* Names of the programs in a directory, without the .s, in order */
+    static List<String> names(String directory) {
+        ArrayList<String> names = new ArrayList<String>();
+        try {
+            for (URL url : Collections.list(Corpus.class.getClassLoader().getResources(directory))) {
+                try (Stream<Path> files = Files.list(Paths.get(url.toURI()))) {
+                    files.map(file -> file.getFileName().toString())
+                        .filter(name -> name.endsWith(".s"))
+                        .forEach(name -> names.add(name.substring(0, name.length() - 2)));
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /* Contents of a file in a directory */
+    static String read(String directory, String file) {
+        try (InputStream in = Corpus.class.getResourceAsStream("/" + directory + "/" + file)) {
+            if (in == null) {
+                throw new IllegalArgumentException("no test file " + directory + "/" + file);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* Source of a program */
+    static String source(String directory, String name) {
+        return read(directory, name + ".s");
+    }
+}
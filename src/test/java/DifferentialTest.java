@@ -0,0 +1,97 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/*
+ * Every engine, with and without the memo and the optimizer, has to end a run
+ * exactly as the switch loop does: same status, pc, cycles, exit code, output
+ * and registers. Each program in the corpus, the benchmark programs among
+ * them, is run under configs that stop it in each way a run can stop.
+ */
+class DifferentialTest {
+
+    private static final int PAGE = 4096;
+    private static final int MAX_CYCLES = 100000;
+    private static final long MAX_MEMORY = 1 << 22;
+
+    // Configs to run every program under, by name
+    private static final Map<String, Consumer<RiscVInterpreter.Config>> CONFIGS =
+        new LinkedHashMap<String, Consumer<RiscVInterpreter.Config>>();
+
+    static {
+        CONFIGS.put("default", config -> { });
+        CONFIGS.put("one cycle", config -> config.maxCycles = 1);
+        CONFIGS.put("777 cycles", config -> config.maxCycles = 777);
+        CONFIGS.put("5003 cycles", config -> config.maxCycles = 5003);
+        CONFIGS.put("sliced", config -> config.sliceCycles = 333);
+        CONFIGS.put("400 pages", config -> config.maxMemory = 400 * PAGE);
+        CONFIGS.put("sandbox", config -> config.sandbox = true);
+        CONFIGS.put("divergence", config -> config.detectDivergence = true);
+        CONFIGS.put("sliced divergence", config -> {
+            config.detectDivergence = true;
+            config.sliceCycles = 1000;
+        });
+    }
+
+    static List<String> programs() {
+        ArrayList<String> programs = new ArrayList<String>();
+        for (String name : Corpus.names("corpus")) {
+            programs.add("corpus/" + name);
+        }
+        for (String name : Corpus.names("memo")) {
+            programs.add("memo/" + name);
+        }
+        return programs;
+    }
+
+    /* A config with bounds that keep the runaway programs quick, then the named changes */
+    private static RiscVInterpreter.Config config(Consumer<RiscVInterpreter.Config> changes) {
+        RiscVInterpreter.Config config = new RiscVInterpreter.Config();
+        config.maxCycles = MAX_CYCLES;
+        config.maxMemory = MAX_MEMORY;
+        changes.accept(config);
+        return config;
+    }
+
+    /* Run to the end, resuming across slices, and describe how it ended */
+    private static String run(String source, RiscVInterpreter.Config config, boolean withRegisters) {
+        RiscVInterpreter vm = RiscVInterpreter.load(source, config);
+        do {
+            vm.execute();
+        } while (vm.status == RiscVInterpreter.Status.SUSPENDED);
+        return vm.status + " pc=" + vm.pc + " cycles=" + vm.cycles + " exit=" + vm.exitCode
+            + (withRegisters ? " regs=" + Arrays.toString(vm.regs) : "") + "\n" + vm.printer;
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("programs")
+    void enginesAgree(String program) {
+        int slash = program.indexOf('/');
+        String source = Corpus.source(program.substring(0, slash), program.substring(slash + 1));
+        for (Map.Entry<String, Consumer<RiscVInterpreter.Config>> named : CONFIGS.entrySet()) {
+            RiscVInterpreter.Config reference = config(named.getValue());
+            String expected = run(source, reference, true);
+            String expectedOptimized = run(source, reference, false);
+            for (RiscVInterpreter.Engine engine : RiscVInterpreter.Engine.values()) {
+                for (String variant : new String[] {"plain", "memo", "optimize"}) {
+                    RiscVInterpreter.Config config = config(named.getValue());
+                    config.engine = engine;
+                    config.memoEntries = variant.equals("memo") ? 64 : 0;
+                    config.optimize = variant.equals("optimize");
+                    // Optimized blocks may leave registers nothing reads holding something else
+                    assertEquals(config.optimize ? expectedOptimized : expected,
+                                 run(source, config, !config.optimize),
+                                 engine + " " + variant + " under " + named.getKey());
+                }
+            }
+        }
+    }
+}
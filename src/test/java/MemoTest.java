@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Runs with the memo have to be indistinguishable from runs without it:
+ * same output, status, cycles, pc and registers, whatever the memo's size
+ * and wherever the cycle cap falls.
+ */
+class MemoTest {
+
+    private static final int[] CAPACITIES = {1, 4, 1024};
+    private static final int[] MAX_CYCLES = {RiscVInterpreter.MAX_CYCLES, 5000, 777};
+
+    private static RiscVInterpreter run(String source, int memoEntries, int maxCycles) {
+        RiscVInterpreter.Config config = new RiscVInterpreter.Config();
+        config.memoEntries = memoEntries;
+        config.maxCycles = maxCycles;
+        return new RiscVInterpreter(source, config);
+    }
+
+    /* Run with and without the memo and check nothing tells them apart; returns the memo's hits */
+    private static long assertSameRun(String name, int memoEntries, int maxCycles) {
+        String source = Corpus.source("memo", name);
+        RiscVInterpreter plain = run(source, 0, maxCycles);
+        RiscVInterpreter memo = run(source, memoEntries, maxCycles);
+        String where = name + " with " + memoEntries + " entries and " + maxCycles + " cycles";
+        assertEquals(plain.printer.toString(), memo.printer.toString(), where);
+        assertEquals(plain.status, memo.status, where);
+        assertEquals(plain.cycles, memo.cycles, where);
+        assertEquals(plain.pc, memo.pc, where);
+        assertArrayEquals(plain.regs, memo.regs, where);
+        return memo.memo.hits;
+    }
+
+    @Test
+    void matchesPlainRuns() {
+        for (String name : Corpus.names("memo")) {
+            for (int capacity : CAPACITIES) {
+                for (int maxCycles : MAX_CYCLES) {
+                    assertSameRun(name, capacity, maxCycles);
+                }
+            }
+        }
+    }
+
+    @Test
+    void answersRepeatedPureCalls() {
+        assertTrue(assertSameRun("fib27", 1024, RiscVInterpreter.MAX_CYCLES) > 0);
+    }
+
+    @Test
+    void branchOnStackPointerIsNotPure() {
+        // The two calls share a key but take different sides of a branch on sp
+        assertEquals(0, assertSameRun("spbranch", 16, RiscVInterpreter.MAX_CYCLES));
+    }
+}
@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Residual programs have to carry on exactly where the run stopped. Each run
+ * here is cut short at every cycle in turn, and the residual it leaves must
+ * end with the same output, status and registers as the uncut run.
+ */
+class ResidualTest {
+
+    // Grows the heap, writes it and the stack, prints as it goes, and keeps
+    // a0, a1, t0 and t1 at zero for much of the time
+    private static final String PROGRAM = String.join("\n",
+        ".data",
+        "msg: .string \"step \"",
+        ".text",
+        ".globl main",
+        "main:",
+        "    li a0, 9",
+        "    li a1, 64",
+        "    ecall",
+        "    mv s1, a0",
+        "    li a0, 0",
+        "    li a1, 0",
+        "    li s0, 0",
+        "    li s2, 6",
+        "    li s3, 2",
+        "    li s4, 3",
+        "loop:",
+        "    rem t0, s0, s3",
+        "    rem t1, s0, s4",
+        "    slli t2, s0, 2",
+        "    add t2, t2, s1",
+        "    sw t0, 0(t2)",
+        "    addi sp, sp, -4",
+        "    sw t1, 0(sp)",
+        "    la a1, msg",
+        "    li a0, 4",
+        "    ecall",
+        "    mv a1, s0",
+        "    li a0, 1",
+        "    ecall",
+        "    li a0, 11",
+        "    li a1, 10",
+        "    ecall",
+        "    li a0, 0",
+        "    li a1, 0",
+        "    addi s0, s0, 1",
+        "    bne s0, s2, loop",
+        "    lw t0, 0(sp)",
+        "    lw t1, 4(s1)",
+        "    add a1, t0, t1",
+        "    li a0, 1",
+        "    ecall",
+        "    li t0, 0",
+        "    li t1, 0",
+        "    li a0, 17",
+        "    li a1, 3",
+        "    ecall",
+        "");
+
+    // Stores into a heap of 16 KiB, then prints far more than that before reading the store back
+    private static final String LONG_OUTPUT = String.join("\n",
+        ".data",
+        "line: .string \"" + "0123456789abcdef".repeat(6) + "\"",
+        ".text",
+        ".globl main",
+        "main:",
+        "    li a0, 9",
+        "    li a1, 16384",
+        "    ecall",
+        "    mv s1, a0",
+        "    li t0, 12000",
+        "    add s2, s1, t0",
+        "    li t1, 77",
+        "    sw t1, 0(s2)",
+        "    li s0, 1000",
+        "loop:",
+        "    la a1, line",
+        "    li a0, 4",
+        "    ecall",
+        "    li a0, 11",
+        "    li a1, 10",
+        "    ecall",
+        "    addi s0, s0, -1",
+        "    bnez s0, loop",
+        "    lw a1, 0(s2)",
+        "    li a0, 1",
+        "    ecall",
+        "    li a0, 10",
+        "    ecall",
+        "");
+
+    private static RiscVInterpreter run(String source, RiscVInterpreter.Engine engine, int maxCycles) {
+        return run(source, engine, maxCycles, false);
+    }
+
+    private static RiscVInterpreter run(String source, RiscVInterpreter.Engine engine, int maxCycles,
+                                        boolean sandbox) {
+        RiscVInterpreter.Config config = new RiscVInterpreter.Config();
+        config.engine = engine;
+        config.maxCycles = maxCycles;
+        config.sandbox = sandbox;
+        return new RiscVInterpreter(source, config);
+    }
+
+    @Test
+    void resumesFromEveryCycle() {
+        for (RiscVInterpreter.Engine engine : RiscVInterpreter.Engine.values()) {
+            RiscVInterpreter full = run(PROGRAM, engine, RiscVInterpreter.MAX_CYCLES);
+            assertEquals(RiscVInterpreter.Status.FINISHED, full.status);
+            for (int cut = 1; cut < full.cycles; cut++) {
+                RiscVInterpreter stopped = run(PROGRAM, engine, cut);
+                assertEquals(RiscVInterpreter.Status.CYCLE_LIMIT, stopped.status);
+                RiscVInterpreter rest = run(stopped.residual(), engine, RiscVInterpreter.MAX_CYCLES);
+                String where = engine + " cut at " + cut;
+                assertEquals(full.status, rest.status, where);
+                assertEquals(full.printer.toString(), rest.printer.toString(), where);
+                assertEquals(full.exitCode, rest.exitCode, where);
+                assertArrayEquals(full.regs, rest.regs, where);
+            }
+        }
+    }
+
+    @Test
+    void outputLeavesTheHeapAlone() {
+        // The output printed by the cut is several times the heap, which the residual must restore intact
+        for (RiscVInterpreter.Engine engine : RiscVInterpreter.Engine.values()) {
+            for (boolean sandbox : new boolean[] {false, true}) {
+                RiscVInterpreter full = run(LONG_OUTPUT, engine, RiscVInterpreter.MAX_CYCLES, sandbox);
+                assertEquals(RiscVInterpreter.Status.FINISHED, full.status);
+                assertTrue(full.printer.toString().endsWith("\n77"));
+                RiscVInterpreter stopped = run(LONG_OUTPUT, engine, 5000, sandbox);
+                assertTrue(stopped.printer.length() > 3 * 16384);
+                RiscVInterpreter rest = run(stopped.residual(), engine, RiscVInterpreter.MAX_CYCLES, sandbox);
+                String where = engine + (sandbox ? " sandboxed" : "");
+                assertEquals(full.status, rest.status, where);
+                assertEquals(full.printer.toString(), rest.printer.toString(), where);
+                assertArrayEquals(full.regs, rest.regs, where);
+            }
+        }
+    }
+
+    @Test
+    void entryRestoresZeroedScratchRegisters() {
+        // First stop with a0, a1, t0 and t1 all zero, which the entry code uses for itself
+        int t0 = Registers.index("t0");
+        int t1 = Registers.index("t1");
+        RiscVInterpreter stopped = null;
+        for (int cut = 1; stopped == null; cut++) {
+            RiscVInterpreter vm = run(PROGRAM, RiscVInterpreter.Engine.SWITCH, cut);
+            if (vm.regs[Registers.A0] == 0 && vm.regs[Registers.A1] == 0 && vm.regs[t0] == 0
+                && vm.regs[t1] == 0 && vm.status == RiscVInterpreter.Status.CYCLE_LIMIT) {
+                stopped = vm;
+            }
+        }
+        String residual = stopped.residual();
+        int entry = run(residual, RiscVInterpreter.Engine.SWITCH, 1).labels.get(Residual.ENTRY);
+
+        // Run the residual just until its entry code jumps back into the program
+        RiscVInterpreter resumed;
+        int cycles = 0;
+        do {
+            resumed = run(residual, RiscVInterpreter.Engine.SWITCH, ++cycles);
+        } while (resumed.pc >= entry);
+        assertEquals(stopped.pc, resumed.pc);
+        assertArrayEquals(stopped.regs, resumed.regs);
+    }
+}
@@ -0,0 +1,35 @@
+# calls and returns through jal and jalr, with the link register read back
+.text
+main:
+li s0, 0
+jal ra, twice
+jal ra, twice
+mv a1, s0
+li a0, 1
+ecall
+li a0, 11
+ecall
+la t0, thrice
+jalr ra, t0, 0
+mv a1, s0
+li a0, 1
+ecall
+li a0, 11
+ecall
+la t0, link
+jal t1, link
+link:
+sub t2, t1, t0
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li a0, 10
+ecall
+twice:
+addi s0, s0, 2
+jr ra
+thrice:
+addi s0, s0, 3
+jalr zero, ra, 0
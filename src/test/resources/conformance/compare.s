@@ -0,0 +1,169 @@
+# set-less-than and branches compare signed or unsigned as the opcode says
+.text
+main:
+li t0, -1
+li t1, 1
+slt t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sltu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+slt t2, t1, t0
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sltu t2, t1, t0
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+slti t2, t0, 0
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sltiu t2, t1, -1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sltiu t2, t0, -1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sltiu t2, zero, 1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+slti t2, t1, 1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+blt t0, t1, taken1
+li t2, 0
+taken1:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+bltu t0, t1, taken2
+li t2, 0
+taken2:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+bge t0, t1, taken3
+li t2, 0
+taken3:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+bgeu t0, t1, taken4
+li t2, 0
+taken4:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+beq t0, t0, taken5
+li t2, 0
+taken5:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+bne t0, t0, taken6
+li t2, 0
+taken6:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+bltz t0, taken7
+li t2, 0
+taken7:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+bgez t0, taken8
+li t2, 0
+taken8:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+blez t0, taken9
+li t2, 0
+taken9:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+bgtz t0, taken10
+li t2, 0
+taken10:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+beqz t0, taken11
+li t2, 0
+taken11:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t2, 1
+bnez t0, taken12
+li t2, 0
+taken12:
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li a0, 10
+ecall
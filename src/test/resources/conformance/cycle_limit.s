@@ -0,0 +1,12 @@
+# counts forever, so the cycle budget stops it partway through a line
+.text
+main:
+li s0, 0
+loop:
+addi s0, s0, 1
+mv a1, s0
+li a0, 1
+ecall
+li a0, 11
+ecall
+j loop
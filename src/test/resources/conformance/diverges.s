@@ -0,0 +1,11 @@
+# prints, then loops on the same state forever
+.text
+main:
+li a0, 1
+li a1, 42
+ecall
+li t0, 5
+loop:
+addi t0, t0, 1
+addi t0, t0, -1
+j loop
@@ -0,0 +1,197 @@
+# division and remainder, including by zero and the one overflowing quotient
+.text
+main:
+li t0, -7
+li t1, 2
+div t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 7
+li t1, -2
+div t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -7
+li t1, -2
+div t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 5
+li t1, 0
+div t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -5
+li t1, 0
+div t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -2147483648
+li t1, -1
+div t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -7
+li t1, 2
+divu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 7
+li t1, -2
+divu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -7
+li t1, -2
+divu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 5
+li t1, 0
+divu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -5
+li t1, 0
+divu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -2147483648
+li t1, -1
+divu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -7
+li t1, 2
+rem t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 7
+li t1, -2
+rem t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -7
+li t1, -2
+rem t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 5
+li t1, 0
+rem t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -5
+li t1, 0
+rem t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -2147483648
+li t1, -1
+rem t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -7
+li t1, 2
+remu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 7
+li t1, -2
+remu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -7
+li t1, -2
+remu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 5
+li t1, 0
+remu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -5
+li t1, 0
+remu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -2147483648
+li t1, -1
+remu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li a0, 10
+ecall
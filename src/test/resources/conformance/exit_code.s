@@ -0,0 +1,15 @@
+# a string, then exit through ecall 17 with a code
+.data
+msg: .string "bye"
+.text
+main:
+la a1, msg
+li a0, 4
+ecall
+li a0, 11
+ecall
+li a0, 17
+li a1, 3
+ecall
+li a0, 1
+ecall
@@ -0,0 +1,112 @@
+# byte and halfword loads sign- or zero-extend; narrow stores leave the other bytes alone
+.data
+word:
+.word 0, 0
+.text
+main:
+la s0, word
+li t0, -2130739455
+sw t0, 0(s0)
+lb t2, 0(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lbu t2, 0(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lb t2, 1(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lbu t2, 1(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lb t2, 2(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lbu t2, 2(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lb t2, 3(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lbu t2, 3(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lh t2, 0(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lhu t2, 0(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lh t2, 2(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lhu t2, 2(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t1, 300
+sb t1, 1(s0)
+lw t2, 0(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t1, -2
+sh t1, 2(s0)
+lw t2, 0(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sw t0, 4(s0)
+lh t2, 3(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lw t2, 2(s0)
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li a0, 10
+ecall
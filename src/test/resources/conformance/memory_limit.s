@@ -0,0 +1,12 @@
+# writes one word per page upward from the heap until the memory limit stops it
+.text
+main:
+li a0, 9
+li a1, 0
+ecall
+mv t0, a0
+li t1, 4096
+loop:
+sw t1, 0(t0)
+add t0, t0, t1
+j loop
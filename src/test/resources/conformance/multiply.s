@@ -0,0 +1,197 @@
+# low and high words of products, signed, unsigned and mixed
+.text
+main:
+li t0, -1
+li t1, -1
+mul t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -2147483648
+li t1, -2147483648
+mul t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -1
+li t1, 2
+mul t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 2
+li t1, -1
+mul t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 65536
+li t1, 65536
+mul t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 123456789
+li t1, 987654321
+mul t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -1
+li t1, -1
+mulh t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -2147483648
+li t1, -2147483648
+mulh t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -1
+li t1, 2
+mulh t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 2
+li t1, -1
+mulh t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 65536
+li t1, 65536
+mulh t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 123456789
+li t1, 987654321
+mulh t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -1
+li t1, -1
+mulhu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -2147483648
+li t1, -2147483648
+mulhu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -1
+li t1, 2
+mulhu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 2
+li t1, -1
+mulhu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 65536
+li t1, 65536
+mulhu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 123456789
+li t1, 987654321
+mulhu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -1
+li t1, -1
+mulhsu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -2147483648
+li t1, -2147483648
+mulhsu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, -1
+li t1, 2
+mulhsu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 2
+li t1, -1
+mulhsu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 65536
+li t1, 65536
+mulhsu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t0, 123456789
+li t1, 987654321
+mulhsu t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li a0, 10
+ecall
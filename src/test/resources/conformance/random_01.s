@@ -0,0 +1,126 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -32768
+li t1, 1095513148
+li t2, -32768
+li t3, -1496396773
+li t4, 2
+li t5, 0
+li t6, 1674216077
+li a2, -1020999291
+li a3, -1306387880
+li a4, -1195976450
+li a5, -1755982655
+li a6, -423365831
+li a7, 0
+li s2, 32
+li s3, -2147483648
+li s4, -132969406
+li s5, 124729223
+li s6, -1014896497
+li s7, 2129497364
+li s8, 1484771968
+li s9, 2
+li s10, -205108489
+li s11, 0
+li s0, 120
+la s1, buf
+loop:
+lh s6, 161(s1)
+li a4, 2147483647
+sb s5, 212(s1)
+sb a4, 249(s1)
+sw a7, 122(s1)
+sll a7, s2, s10
+mulh s11, s10, zero
+sll s10, s5, t3
+addi a7, a6, 1796
+mulhsu s8, s7, s7
+addi t5, s5, 2047
+sb a2, 88(s1)
+li s7, -2
+slli s8, zero, 8
+addi s6, t6, -1
+srli t6, s5, 22
+mul t0, s6, s6
+sll t0, a2, s9
+ori t5, t2, -2048
+slt t0, s3, t0
+mulh t3, s8, t5
+rem t5, t5, a3
+li s10, 32768
+divu s11, a5, s4
+mulhu a4, a7, a5
+lbu a3, 250(s1)
+sra s8, s2, t0
+sll t4, t1, zero
+remu s5, s10, s2
+lb s9, 57(s1)
+xori t0, a7, 1444
+ori t4, t6, -1469
+mulhu a4, zero, t5
+addi t4, t0, 2047
+sub s11, s8, s5
+mulhu a6, t3, t6
+slli s4, t3, 18
+slli t0, a5, 18
+and t6, a5, s7
+or t6, a3, s10
+lbu s6, 124(s1)
+lw s6, 21(s1)
+slt t5, s6, t6
+lhu s8, 86(s1)
+divu a4, a2, s8
+sub s6, t3, a5
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,128 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -224079237
+li t1, 393353683
+li t2, -1
+li t3, -1418497137
+li t4, 1080542040
+li t5, -1688773679
+li t6, 65535
+li a2, -2147483648
+li a3, -843233325
+li a4, -22249801
+li a5, 1597986795
+li a6, 1910634194
+li a7, -424309273
+li s2, 0
+li s3, 2147483647
+li s4, 1819395238
+li s5, -2036876336
+li s6, -1
+li s7, 0
+li s8, -1
+li s9, 32
+li s10, 32
+li s11, 781011850
+li s0, 70
+la s1, buf
+loop:
+lbu zero, 90(s1)
+div s3, t5, a7
+srli a2, s4, 22
+srai s3, s3, 29
+sll a2, a5, s11
+sh a3, 77(s1)
+li s11, 32
+ori s8, s7, 1
+xori s10, s8, 0
+li t3, 65535
+or s7, a2, s10
+lh t4, 241(s1)
+sw s11, 92(s1)
+xor a2, s10, t0
+add t2, t0, t1
+sll t4, t5, zero
+addi t0, a7, 0
+li t0, 65535
+srli t3, a4, 1
+sub s6, s8, zero
+sw s8, 121(s1)
+li t2, 2147483647
+lbu t0, 149(s1)
+lh s4, 223(s1)
+li a3, -2147483648
+addi s11, s6, 24
+sra t5, t3, s3
+andi s11, t1, 1594
+mulh s7, a2, s8
+add s2, a3, s5
+or a7, s2, t5
+slti t2, a2, 0
+lbu t3, 171(s1)
+mulhsu a4, s6, s9
+mulhu t6, zero, s2
+slli s7, s7, 11
+sw s4, 132(s1)
+li t3, -2
+slli a6, a4, 6
+div t6, s10, t0
+srl s9, s4, s3
+sh t2, 6(s1)
+divu zero, t2, a2
+div s7, a6, a7
+slt a6, a7, t3
+mulhsu t2, s8, a5
+li s11, 33
+srli t1, zero, 18
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,123 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 32
+li t1, 33
+li t2, -1800226563
+li t3, 0
+li t4, 2015337560
+li t5, 2
+li t6, 32768
+li a2, -702392715
+li a3, 1705680002
+li a4, 646892613
+li a5, -1
+li a6, -2047921104
+li a7, 0
+li s2, 275012945
+li s3, 33
+li s4, -32768
+li s5, -2
+li s6, -1207642080
+li s7, 1664766190
+li s8, -338878626
+li s9, -1167690061
+li s10, 1909632882
+li s11, 576166047
+li s0, 70
+la s1, buf
+loop:
+slt t4, s4, t6
+li s2, -2147483648
+srai a7, s7, 26
+ori a5, s10, -2048
+sw s7, 182(s1)
+ori s9, s7, -1029
+mulh s9, s4, t2
+lhu s2, 109(s1)
+lbu t3, 194(s1)
+remu s11, s7, a5
+sw s5, 79(s1)
+sub t3, s8, s6
+sh a4, 39(s1)
+sltiu a5, a5, 1
+remu s5, a7, s9
+sra s5, a3, s2
+sh a3, 140(s1)
+add s2, s7, a5
+sub s7, s9, t4
+xori a5, s3, -2048
+add s7, t1, s10
+li a3, -2
+sltiu a5, t5, -1
+lw a3, 197(s1)
+lh s7, 79(s1)
+xori s9, a3, -2048
+mul s11, t3, t3
+sw a2, 20(s1)
+div s9, t6, s7
+srl t3, t1, s5
+mul s7, t5, a3
+lhu s9, 150(s1)
+div a4, s5, a3
+mulhu s2, a4, s2
+add s2, t4, t6
+remu s8, s5, s2
+li s11, 32768
+sltu s10, zero, s5
+ori a2, t2, 0
+mulhu s11, s5, t6
+slti t0, s4, 2047
+remu s10, t0, s5
+and s8, t3, a5
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,118 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 1
+li t1, 2056767043
+li t2, 1
+li t3, 32
+li t4, -857050625
+li t5, 252746182
+li t6, 32
+li a2, -32768
+li a3, 1
+li a4, 0
+li a5, -830421840
+li a6, -2
+li a7, -2
+li s2, 32768
+li s3, -650561823
+li s4, 372452042
+li s5, 1449132580
+li s6, -2121912375
+li s7, 2
+li s8, 383739014
+li s9, -782187056
+li s10, -1942876279
+li s11, 30972418
+li s0, 70
+la s1, buf
+loop:
+slli a4, s5, 27
+andi s2, s3, -1
+lb t1, 160(s1)
+li s5, 31
+slti t4, s10, 0
+xori s3, a3, -2048
+xori s9, s6, -1221
+andi a3, s7, -1
+sw s3, 91(s1)
+xori a4, zero, -1
+xor t4, s9, s2
+and t6, s3, a4
+add s8, t5, a5
+mulh s3, t5, a6
+li s7, 2
+sub t6, t3, t1
+and t5, s8, s10
+andi s6, s4, 585
+srl s5, a4, s2
+divu a2, s3, s2
+mulhu s2, s3, a2
+lw s4, 65(s1)
+mulhu s5, t6, a2
+sh a5, 144(s1)
+sub s7, a7, s9
+sll t2, s2, t6
+mul s10, s4, s9
+lhu s5, 86(s1)
+sb t2, 171(s1)
+slt a7, s8, t4
+srli t1, t5, 30
+andi a7, t6, -764
+slli a3, t3, 14
+xori t6, t5, 2047
+or t2, t1, s11
+sub a3, s8, t4
+mulh s5, t0, a4
+lb t2, 52(s1)
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,140 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -1109016423
+li t1, 32768
+li t2, -1117127127
+li t3, -2018463451
+li t4, 31
+li t5, 1069673014
+li t6, -425629125
+li a2, 2147483647
+li a3, 1059022248
+li a4, 1
+li a5, 56325017
+li a6, 1752995436
+li a7, -32768
+li s2, -32768
+li s3, 596001514
+li s4, 1910554750
+li s5, 0
+li s6, 22819762
+li s7, 2
+li s8, 712347993
+li s9, 1242556253
+li s10, 2
+li s11, -1383707580
+li s0, 70
+la s1, buf
+loop:
+sltu s11, t6, a7
+slt s2, t5, t4
+add a4, s8, s7
+ori s11, a5, -1
+divu a5, t5, s4
+xori t1, a3, 1263
+addi s2, a6, 1661
+andi s8, t6, -1
+slti s5, a3, -1
+rem t2, t6, a5
+srai t4, a5, 5
+xor a5, a4, t5
+srli zero, s11, 10
+slli t2, s8, 2
+div s8, a6, a3
+addi t4, t1, -1
+lh t4, 161(s1)
+sh t3, 95(s1)
+div s2, a4, t4
+sh t5, 245(s1)
+slt zero, a5, s4
+mulhsu a7, t4, t3
+lb s6, 222(s1)
+rem t2, s4, a3
+lhu s5, 177(s1)
+srai t1, a4, 17
+lhu a3, 244(s1)
+sw t5, 121(s1)
+ori a3, a5, -1
+lhu s9, 70(s1)
+sltiu zero, s2, -1
+li s5, -1
+xor a6, s4, a4
+srai zero, s2, 26
+add s6, s9, a3
+sll s7, s3, s8
+sub s10, t5, s9
+li a2, -1
+remu t5, s4, t6
+xor s3, a6, a7
+addi a2, s11, 1
+li s2, 32
+sltu t1, s6, s8
+sltu s6, s5, a5
+li t4, 33
+sltiu a6, s3, 2047
+xor t6, t4, s8
+or s10, t0, a7
+mul s8, s6, t4
+slli s7, a7, 14
+mulhsu s4, s11, a7
+li t5, -2
+slli a4, s4, 1
+and a4, s4, a4
+div t3, s10, s8
+add t1, t4, a7
+divu s6, a3, a2
+lh a2, 184(s1)
+li a4, 31
+addi s8, zero, -1
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
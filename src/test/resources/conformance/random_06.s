@@ -0,0 +1,123 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -764701546
+li t1, -32768
+li t2, 0
+li t3, 33
+li t4, -1031949076
+li t5, 1371750992
+li t6, 1171229348
+li a2, 850862735
+li a3, 1778144096
+li a4, -1978904320
+li a5, 828863742
+li a6, -1290535810
+li a7, 1140404236
+li s2, -1674835262
+li s3, -668802311
+li s4, -41934752
+li s5, -32768
+li s6, 1075832060
+li s7, 402783642
+li s8, -1285280999
+li s9, 1250623880
+li s10, 0
+li s11, 862748621
+li s0, 3
+la s1, buf
+loop:
+rem t6, s5, s7
+li t0, 2
+slti a4, a6, 2047
+sb t6, 169(s1)
+divu zero, t6, a7
+rem s8, t6, s11
+mul t5, t0, s9
+ori s10, s8, 1
+srli a4, t4, 3
+or s8, zero, a7
+li a2, 65535
+sw s3, 132(s1)
+xor a4, s11, s2
+divu s10, a3, s3
+srai t5, t0, 7
+rem a6, t6, a3
+mulhu s5, a3, s2
+srli a3, s8, 31
+div a7, s4, a4
+mulhsu s10, t5, s8
+slli a3, a5, 31
+addi t5, a4, 1633
+mulh s8, s7, t3
+srl s4, s7, t1
+mulhu a3, s8, t0
+lb s5, 59(s1)
+sra a6, t4, s10
+slti t4, t1, -1185
+addi s3, zero, 2047
+lhu t2, 232(s1)
+lw s9, 202(s1)
+srli t6, s3, 28
+slti s4, s11, -1
+slt t1, t2, s5
+mulh s4, s2, s3
+sra t2, a2, s8
+xori t1, zero, 987
+mulhu zero, t6, s11
+or t2, t5, zero
+divu t4, s3, zero
+srai t4, t2, 1
+sltu s11, t4, t5
+andi s5, s7, -2048
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,131 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -1
+li t1, 0
+li t2, 32
+li t3, 33
+li t4, 32
+li t5, 1
+li t6, 300026767
+li a2, 32
+li a3, -743664465
+li a4, -225701795
+li a5, 65535
+li a6, 265695473
+li a7, 1703729684
+li s2, 2
+li s3, -1
+li s4, -1
+li s5, -1842911656
+li s6, 65535
+li s7, 33
+li s8, 806899909
+li s9, 32
+li s10, -1871023933
+li s11, 2
+li s0, 1
+la s1, buf
+loop:
+srli s2, a5, 23
+xor t5, s11, a2
+srli s5, s4, 18
+slli t2, t3, 10
+lw t4, 246(s1)
+xori s6, s7, 2047
+slt s3, t2, t2
+sltu s10, t2, t1
+slli s10, s3, 22
+or s3, a6, t5
+sra t6, a4, t4
+div s4, t2, t5
+remu a3, t4, s2
+mulhsu s2, a6, s10
+li t4, -1
+sll a2, t0, s4
+remu t0, t4, s2
+rem s7, a5, t4
+li s9, 0
+mulhsu s10, s6, a7
+mulhsu t3, s4, s9
+sll t2, t6, s3
+add s8, t1, t3
+addi s6, t3, 0
+xori t4, s9, 1
+divu s4, s3, s4
+mul t4, t3, zero
+srai s4, s11, 1
+remu s5, a6, t4
+sw a4, 178(s1)
+lhu s5, 197(s1)
+sra s6, s5, a5
+andi t6, a2, 2047
+slt zero, t0, t0
+mulh t6, s11, s8
+xor zero, a6, a6
+mul a2, s4, t6
+divu s8, s8, t0
+sb s9, 30(s1)
+sw t6, 111(s1)
+lb a5, 118(s1)
+sll t2, zero, t5
+li t0, 31
+lb t4, 168(s1)
+sw s6, 5(s1)
+rem zero, s9, t3
+andi t4, s2, -1
+mul s5, a2, s7
+mulh s2, t4, t1
+sh s7, 211(s1)
+sw t4, 134(s1)
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
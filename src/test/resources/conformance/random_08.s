@@ -0,0 +1,112 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -2147483648
+li t1, 32768
+li t2, -1
+li t3, 32
+li t4, 65535
+li t5, 31
+li t6, 2125934466
+li a2, -440924616
+li a3, 384681428
+li a4, -1034982744
+li a5, -2
+li a6, 2037201860
+li a7, 1628116529
+li s2, -1447566358
+li s3, 1
+li s4, -2147483648
+li s5, 0
+li s6, 32768
+li s7, 65535
+li s8, 892993798
+li s9, 610477966
+li s10, -1976905362
+li s11, 2098808063
+li s0, 3
+la s1, buf
+loop:
+div s7, s3, zero
+sll a6, s2, t4
+lhu t3, 179(s1)
+srl s9, s4, s5
+rem a6, s5, a4
+andi s5, s11, 0
+sh a5, 8(s1)
+mulhu a7, a4, s11
+add a7, t3, t5
+add t5, a4, t3
+lbu a7, 111(s1)
+sh s2, 104(s1)
+or s7, t2, a4
+rem s10, t3, s5
+and s5, s4, s11
+li t2, -1
+sltu s10, s7, t3
+divu a6, t0, s9
+sll s8, t1, s7
+xor s2, s3, t3
+and a2, s4, s4
+div t3, s7, zero
+slti zero, s3, 2047
+sub a6, s3, a2
+srl s3, t3, t3
+addi s11, s8, 1
+andi zero, s8, -1
+andi zero, s5, -1
+slli t2, zero, 14
+xori t2, s6, 2047
+or a6, a4, s9
+sltu a6, a7, s7
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,100 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 1603362544
+li t1, -1
+li t2, 27638352
+li t3, 31
+li t4, 347096279
+li t5, 33
+li t6, -1167405460
+li a2, 32768
+li a3, -209288620
+li a4, 674984870
+li a5, 0
+li a6, 32
+li a7, -38725207
+li s2, -969762966
+li s3, -903682873
+li s4, 436666885
+li s5, 880297003
+li s6, -1178082251
+li s7, -474267213
+li s8, -2
+li s9, 1703138836
+li s10, -32768
+li s11, 32768
+li s0, 70
+la s1, buf
+loop:
+sw a7, 6(s1)
+add zero, t3, s8
+mul s7, t6, t6
+add t2, t4, s6
+andi s7, s4, 1393
+and s9, t2, s11
+sub s8, zero, t1
+slt s10, s8, t4
+slli s7, t1, 15
+mulh s5, t1, zero
+lw s5, 222(s1)
+srl s7, a6, s3
+mulhsu s7, zero, t0
+lw a5, 54(s1)
+sltu a3, a5, t2
+addi t3, s5, 2047
+lh s4, 144(s1)
+slti s2, s9, 2047
+sltu s6, a6, t4
+sll a3, t0, t1
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
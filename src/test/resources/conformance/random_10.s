@@ -0,0 +1,127 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 1842064464
+li t1, 63704871
+li t2, 31
+li t3, -1488324155
+li t4, 147762233
+li t5, 1407773507
+li t6, 32768
+li a2, 191368220
+li a3, 595665893
+li a4, 1638985225
+li a5, -743681185
+li a6, 1962074861
+li a7, -2
+li s2, 571136778
+li s3, -601084372
+li s4, -131476833
+li s5, 1611656385
+li s6, 0
+li s7, 2
+li s8, 1300776207
+li s9, -979014274
+li s10, 1350182240
+li s11, 1935411051
+li s0, 3
+la s1, buf
+loop:
+rem s9, s7, a5
+sub a2, s2, a2
+xor a4, s8, s10
+xori t2, t4, -822
+li t3, -32768
+div a6, s2, s2
+rem a3, t4, s8
+sltu t3, a3, s3
+divu s9, t5, t5
+lw a5, 139(s1)
+slti a5, a5, 1
+sra t5, a7, s4
+srli a3, s5, 4
+and s10, s3, a7
+mulhsu s7, a6, s6
+or t5, s6, s3
+li s2, 31
+sltiu t1, a6, 2047
+mulhu s4, t4, s3
+lhu s3, 229(s1)
+lbu s3, 232(s1)
+addi zero, a2, -2048
+sw s9, 206(s1)
+sltu a4, s2, a2
+sw s8, 209(s1)
+mulh s10, s4, t4
+slti t6, a6, 1
+div t3, s10, a4
+sh s5, 114(s1)
+xori s6, t6, -2048
+lbu t0, 104(s1)
+sh t6, 204(s1)
+mulh t1, a6, a3
+sltu t6, s9, zero
+rem a4, s5, s4
+sh s3, 89(s1)
+srli s4, s3, 5
+slli zero, a6, 10
+li s2, 1
+xori zero, a4, 590
+sltiu s8, a6, 0
+xor s6, t1, a2
+li t6, 31
+sw t0, 86(s1)
+lbu s7, 195(s1)
+lbu a5, 12(s1)
+sll a6, a7, a5
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
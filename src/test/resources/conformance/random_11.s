@@ -0,0 +1,117 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -1890763225
+li t1, -939661307
+li t2, -2113805635
+li t3, 815623033
+li t4, 32
+li t5, -1658034195
+li t6, 404257171
+li a2, 609005468
+li a3, -32768
+li a4, -1570013342
+li a5, -2147483648
+li a6, -1486391402
+li a7, -1502933704
+li s2, 0
+li s3, 271291275
+li s4, 2
+li s5, -1719627227
+li s6, 31
+li s7, 33
+li s8, -2065346208
+li s9, -2
+li s10, -1449768209
+li s11, 65535
+li s0, 120
+la s1, buf
+loop:
+slt s6, t2, s11
+add a2, s5, a4
+sltu t3, a7, t3
+srl t0, s10, t0
+mulhsu t1, s4, a7
+slt s7, s9, t6
+mulhu a4, a5, t0
+lw t3, 2(s1)
+remu s4, t5, s10
+and s5, t6, zero
+mulhu a7, t3, a7
+li t0, -2
+li t0, -2147483648
+li s8, 1
+slt t4, t6, s3
+mulhsu s8, a5, a4
+sra t2, t6, s7
+div a6, a6, s8
+and s7, s4, s7
+sh s9, 232(s1)
+srl s8, a2, zero
+mulhsu s9, s6, t6
+sw t2, 26(s1)
+mulhsu s5, a3, a2
+rem s8, s4, a4
+sra zero, t2, t4
+xor s9, s8, s8
+xor t6, zero, t0
+sub s3, a2, t1
+and a6, s5, s7
+rem t4, s3, a5
+addi t4, s7, -1
+slti t1, t0, 1902
+slti a5, t4, 2047
+and t1, zero, zero
+lb a5, 230(s1)
+add s2, t0, s4
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
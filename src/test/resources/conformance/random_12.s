@@ -0,0 +1,110 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -1471144404
+li t1, 1502316763
+li t2, 0
+li t3, 2072488418
+li t4, -32768
+li t5, -582635748
+li t6, -1897559290
+li a2, 33
+li a3, 31
+li a4, 2147483647
+li a5, 252648553
+li a6, 857419699
+li a7, 65535
+li s2, -1368220929
+li s3, -676872354
+li s4, 0
+li s5, -1451504603
+li s6, 390747471
+li s7, 1820247317
+li s8, 483302519
+li s9, -123173608
+li s10, 2147483647
+li s11, -1897666131
+li s0, 70
+la s1, buf
+loop:
+li t1, 32
+lbu a7, 120(s1)
+xor a7, s6, t0
+li s10, 2147483647
+sw s10, 64(s1)
+rem a6, a6, s5
+rem a7, s2, t1
+mulhsu s10, s2, t1
+sra s8, t3, s6
+mulhu s11, a3, t1
+sub a6, s8, s9
+ori a6, t6, 1
+srli s4, a2, 23
+add zero, a2, s8
+sw t5, 128(s1)
+remu s8, t3, a6
+ori t0, a5, 0
+lhu s5, 67(s1)
+srli s3, zero, 18
+srai t1, a3, 28
+srai t6, zero, 16
+and t0, s11, t0
+andi a3, s2, 1
+slt t1, s6, s7
+lw s2, 230(s1)
+mulh t6, s7, s6
+li s9, 33
+add s11, s11, t4
+lh t2, 202(s1)
+sw s11, 79(s1)
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,122 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 65535
+li t1, -850383550
+li t2, 797679261
+li t3, -1433722097
+li t4, 2
+li t5, 804765948
+li t6, 32
+li a2, -1096538770
+li a3, -2147483648
+li a4, 65535
+li a5, 61986635
+li a6, -711326171
+li a7, -32768
+li s2, -833022490
+li s3, 31
+li s4, -217654271
+li s5, -2
+li s6, 2
+li s7, -1052250456
+li s8, -79793770
+li s9, 1564238337
+li s10, -1552009432
+li s11, 1
+li s0, 120
+la s1, buf
+loop:
+lb s9, 141(s1)
+srli t4, s3, 11
+slt t5, s5, a6
+mulhsu a3, s8, a3
+sw s4, 144(s1)
+and t6, s11, a6
+mulhsu s9, s9, s3
+and s2, t1, a2
+slt s11, s3, s9
+mulh s2, zero, a3
+and s9, a6, s5
+sb s8, 127(s1)
+sub s8, t1, s7
+sll zero, s7, a5
+or t5, s10, s6
+sb t2, 152(s1)
+srli s6, s11, 21
+ori s5, t0, 1
+xor a3, s7, s8
+sw a6, 81(s1)
+rem s4, s6, s6
+lhu a2, 204(s1)
+and s5, s11, t5
+mulhu s10, t6, a3
+ori a6, a2, 0
+slli s2, t1, 29
+sltu t1, s8, t0
+mul s4, s6, a7
+and s5, s2, t4
+sw a6, 78(s1)
+mulh a7, a4, t1
+mulhu a6, s4, s3
+sub s6, a4, t4
+add s6, zero, t4
+sh t4, 238(s1)
+sub a6, a3, t6
+srli s10, a2, 12
+addi s8, t1, 2047
+mulhsu s6, a6, s6
+xor s6, a4, a3
+add t0, t5, zero
+mul s11, a3, t2
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,140 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 32768
+li t1, -2031038930
+li t2, 1164431025
+li t3, 1249904198
+li t4, -1466945998
+li t5, 2004110538
+li t6, 1703700322
+li a2, 1
+li a3, 2147483647
+li a4, -2
+li a5, 65535
+li a6, 642971903
+li a7, 65535
+li s2, 708447352
+li s3, 1
+li s4, 2147483647
+li s5, -2
+li s6, -2147483648
+li s7, -41091533
+li s8, -444909593
+li s9, -547198676
+li s10, -488961023
+li s11, 33
+li s0, 3
+la s1, buf
+loop:
+srli t5, t3, 12
+sltu s8, t6, s4
+ori t3, t3, 251
+rem zero, s2, t3
+sltiu s2, s4, 1
+or s3, s2, s2
+divu a7, a2, s3
+slt t4, s4, s11
+slli t0, s11, 1
+slt s7, a6, s4
+remu s5, t6, t1
+or a3, t3, a7
+rem a4, t0, t0
+sub a6, a3, t3
+li t6, -2
+sw t5, 154(s1)
+xori a5, a4, 2047
+sb t5, 215(s1)
+mulhsu s4, a7, a2
+addi a5, s4, -2048
+sh a5, 206(s1)
+and t6, t1, s11
+remu s4, s3, t4
+sb t3, 94(s1)
+andi s2, t4, 0
+lh t5, 165(s1)
+sb s8, 180(s1)
+divu s2, s3, a3
+remu t2, a6, t1
+lw t2, 212(s1)
+ori t5, t2, 0
+li s7, 31
+add s4, s11, s5
+rem a3, a2, a4
+mulh a2, zero, t0
+sh a7, 75(s1)
+and a5, t0, a3
+srl s7, s11, a4
+slti s3, t0, -1
+slli s8, s2, 12
+lh a7, 99(s1)
+lh t3, 65(s1)
+lb t2, 221(s1)
+ori t1, t0, 1
+xor zero, t2, s9
+srli t5, s11, 12
+srl s8, a6, s4
+lbu a6, 212(s1)
+li t1, 65535
+remu a3, s4, a4
+sltu t1, s5, t0
+sll s9, a4, a6
+xor t0, t6, s5
+li s7, -2147483648
+xori s8, a6, 2047
+slti a5, s5, -1924
+srl a3, t5, a4
+lh t6, 238(s1)
+mulhsu s8, s3, t3
+lbu s3, 210(s1)
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
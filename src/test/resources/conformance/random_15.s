@@ -0,0 +1,111 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 50056527
+li t1, 155376646
+li t2, 2
+li t3, -32768
+li t4, -612709800
+li t5, 1577509421
+li t6, 2147483647
+li a2, 1527888695
+li a3, -2
+li a4, 2
+li a5, -869232704
+li a6, -2
+li a7, -2098650087
+li s2, -1816128854
+li s3, 1803350796
+li s4, 1980438854
+li s5, 1546035543
+li s6, 1353580868
+li s7, -1522259904
+li s8, -958255418
+li s9, -20732170
+li s10, 0
+li s11, 32
+li s0, 120
+la s1, buf
+loop:
+ori s11, zero, 0
+sw t3, 18(s1)
+rem s6, a4, a7
+xor s6, s5, a6
+mul a4, t5, s9
+xor s4, a5, s3
+lw a3, 173(s1)
+xor a7, t0, a3
+slt t1, s3, t1
+divu s4, s7, s4
+div t1, s4, t2
+slt s7, s3, s11
+xori s8, t0, 1
+div s8, s11, a4
+add t0, s2, a7
+sb s8, 0(s1)
+mul a2, s4, s5
+mul a2, s10, s7
+sra t0, s8, a6
+rem t1, t5, s9
+slli t3, zero, 21
+sh a5, 87(s1)
+divu s8, s6, s8
+addi t3, a7, 0
+andi s3, t5, -1
+or s6, s9, s5
+li zero, -1
+lbu s10, 145(s1)
+xori s2, t0, -1
+srl t5, t1, s3
+xor s9, a3, t6
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
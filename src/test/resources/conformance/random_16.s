@@ -0,0 +1,100 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 31
+li t1, 2
+li t2, 1758856660
+li t3, -1241239290
+li t4, 65535
+li t5, -2
+li t6, 2147483647
+li a2, -207527823
+li a3, 1331904807
+li a4, 2
+li a5, 1088800030
+li a6, -1
+li a7, -1428424655
+li s2, 1995995748
+li s3, -1603101917
+li s4, -62578033
+li s5, -2
+li s6, -2147483648
+li s7, 1493706065
+li s8, -2075572056
+li s9, -221691002
+li s10, -1809231300
+li s11, 1
+li s0, 3
+la s1, buf
+loop:
+ori a2, s4, -1
+divu t2, t5, s11
+addi t0, s3, -2048
+lb s3, 167(s1)
+mulhsu t4, s11, a2
+sb s6, 166(s1)
+xor a5, s4, s5
+remu t3, s11, t2
+sub t0, a7, s9
+sw zero, 240(s1)
+lhu a7, 61(s1)
+sra t0, a2, s5
+sh s9, 99(s1)
+div a7, s3, zero
+srl t1, t1, t0
+or a3, s5, a7
+lw t3, 72(s1)
+sra s2, t4, a7
+rem t4, a7, s2
+divu t5, a6, s10
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,126 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -830256800
+li t1, 2147483647
+li t2, -32768
+li t3, -1974888721
+li t4, 473142372
+li t5, 1069030695
+li t6, 32768
+li a2, -602562966
+li a3, 1363373343
+li a4, -1355342457
+li a5, 1724819962
+li a6, 32
+li a7, -32768
+li s2, 648177039
+li s3, -2006363891
+li s4, -192466667
+li s5, 1421789144
+li s6, -504847190
+li s7, 297119437
+li s8, 1
+li s9, -606734638
+li s10, -15778943
+li s11, -1363175021
+li s0, 3
+la s1, buf
+loop:
+lhu a5, 146(s1)
+divu zero, a6, t1
+or t0, a7, a2
+addi a2, s5, 140
+lbu t6, 136(s1)
+ori t4, a3, -1
+slt t3, s7, s7
+div t1, a6, t0
+andi s4, s9, -1
+rem s11, s4, t0
+slli a7, s4, 11
+or a3, t4, s10
+sh s6, 207(s1)
+sltu t5, s2, t2
+lw s10, 138(s1)
+remu s9, a2, a2
+li s7, 0
+srli s4, s7, 14
+slti s5, s9, 0
+add a5, t6, a6
+li s7, -2147483648
+remu a5, s7, t5
+srl a5, a6, t5
+xor a6, s3, s7
+srai s5, t0, 11
+remu s3, s5, t4
+ori s3, t0, -541
+lh s3, 13(s1)
+add s5, s10, s11
+srl s4, s11, a4
+li t3, 32
+lb a2, 203(s1)
+sub t1, zero, s6
+mulh s6, a3, a3
+mulhsu s6, s7, s2
+sb a5, 212(s1)
+lhu s9, 82(s1)
+divu t4, s6, a2
+lh s3, 18(s1)
+srli a4, s10, 23
+sltu s5, s7, t4
+rem s3, s5, a7
+sltiu t4, s10, 2047
+slli a5, s4, 4
+andi t5, s11, 2047
+sltu s3, s5, t4
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,135 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 65535
+li t1, 1028628612
+li t2, 31
+li t3, 785867954
+li t4, 1968517120
+li t5, 842320188
+li t6, 32768
+li a2, 32
+li a3, -914079830
+li a4, -32768
+li a5, 2
+li a6, 2147483647
+li a7, 867022908
+li s2, -464883767
+li s3, -705291948
+li s4, -1218523211
+li s5, 0
+li s6, -2147483648
+li s7, 32768
+li s8, 1485697314
+li s9, -2032654356
+li s10, -2
+li s11, 1302186232
+li s0, 70
+la s1, buf
+loop:
+and s4, s7, s5
+srl s9, t5, t6
+srai s2, t4, 30
+ori s11, t6, -2048
+srli t2, s4, 9
+remu a2, s9, t2
+remu s9, a7, s7
+slti s5, t0, 1
+lh t5, 69(s1)
+sltiu s10, s11, -1
+slli s8, a4, 1
+sb t4, 189(s1)
+lbu s2, 143(s1)
+lbu s6, 197(s1)
+remu zero, a7, s4
+sll s2, t4, a2
+sb a6, 76(s1)
+sll t2, a6, s6
+li s5, -2
+sw s7, 33(s1)
+sw s7, 91(s1)
+sll s8, a3, a6
+rem s2, s5, s2
+li t0, -32768
+ori s7, a3, 0
+div a6, t4, s11
+remu a5, s10, a3
+lh s5, 181(s1)
+xor s3, a5, t5
+rem s6, s9, s4
+lhu s5, 116(s1)
+lh s5, 4(s1)
+xor s10, a6, s11
+srai a3, t6, 8
+andi a5, t0, -1
+rem s2, s10, zero
+sra s2, t4, s4
+xori s4, t1, 2047
+add s11, a4, s11
+srl s9, s5, s7
+mulhu a4, a2, t6
+div s6, t5, t0
+srli a2, s3, 30
+slt s3, a5, s9
+mul t4, t6, a7
+srai s11, s10, 16
+sb t6, 167(s1)
+slti s8, t4, 1
+li a3, 31
+mul t2, a6, t4
+sub s2, a6, t6
+sb a2, 38(s1)
+sub s9, t6, t0
+sra a5, t4, t1
+ori zero, t5, 2047
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
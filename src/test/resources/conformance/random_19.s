@@ -0,0 +1,134 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -923798714
+li t1, 518352914
+li t2, 1690218514
+li t3, 32
+li t4, -1
+li t5, 462429816
+li t6, 2147483647
+li a2, -710778168
+li a3, 2147483647
+li a4, 98185619
+li a5, 865998257
+li a6, -341877775
+li a7, 32
+li s2, -575119158
+li s3, -845852858
+li s4, 0
+li s5, 32768
+li s6, -632233996
+li s7, 65535
+li s8, -1843672284
+li s9, -713794060
+li s10, 65535
+li s11, 1000045731
+li s0, 120
+la s1, buf
+loop:
+andi t3, t6, 0
+srli t3, s6, 0
+li s4, 32
+mulhu s5, s4, a6
+sw t0, 6(s1)
+slt s3, t3, s10
+sh a4, 75(s1)
+ori s3, s3, -1677
+div s10, s2, t3
+add s5, s3, s10
+xor s9, a3, t2
+or s2, a4, s3
+mulhu s4, s10, t2
+slli s9, t4, 18
+li t1, 33
+rem a3, t6, a3
+srl t0, a3, s9
+rem a4, s5, s3
+remu a5, s5, a3
+sb zero, 190(s1)
+slli a4, s9, 30
+sh t4, 218(s1)
+sh s7, 183(s1)
+mul a7, s10, a5
+or s3, a5, zero
+slli s10, s5, 2
+sh a5, 117(s1)
+ori a6, t1, 198
+li a7, -1
+rem s11, s6, t3
+sub t1, s7, s2
+andi t4, s8, -1
+div a2, a4, t3
+remu s11, s3, a4
+or a2, a6, zero
+srli a3, t4, 14
+srli a4, t1, 7
+li s8, -1
+div a3, s4, a6
+sra s2, t0, s7
+slli s6, a2, 26
+sltiu s11, s6, 0
+slli s4, t2, 28
+andi s7, s10, -1
+mulhsu t5, zero, s5
+and s3, s2, t0
+divu s2, t0, a3
+sw a2, 198(s1)
+xor a4, t0, t3
+xor t2, s6, s3
+li t2, 31
+or a5, a3, t4
+li t1, -1
+slt a5, s4, a6
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
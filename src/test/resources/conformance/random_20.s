@@ -0,0 +1,114 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -1347528133
+li t1, -515552192
+li t2, 1115950379
+li t3, -647079201
+li t4, -549195854
+li t5, -1
+li t6, -2147483648
+li a2, 443445945
+li a3, 31
+li a4, 1930161564
+li a5, 858203856
+li a6, 65535
+li a7, -2147483648
+li s2, 32
+li s3, 2113611752
+li s4, 886237718
+li s5, 150741121
+li s6, 1
+li s7, 32768
+li s8, 1310237539
+li s9, 701580516
+li s10, -405068019
+li s11, 32768
+li s0, 1
+la s1, buf
+loop:
+sw s7, 3(s1)
+lh s8, 177(s1)
+sltiu s8, zero, 2047
+lw t5, 176(s1)
+sra s7, s2, a6
+srl s8, t1, s5
+sltu t5, t2, t3
+mulhsu s9, a5, s10
+li s5, 65535
+add s3, s6, a5
+mul zero, t3, t2
+sub t2, s10, a4
+lbu t6, 179(s1)
+rem t0, s10, zero
+sh t4, 27(s1)
+sra t6, a2, t6
+and t4, s6, a7
+sltiu s3, s4, -2048
+mulh t3, a4, t6
+slti t4, s10, -1
+sltu a7, a6, zero
+divu s3, t3, t2
+rem t0, s11, zero
+add s6, s8, a5
+add a4, s8, t3
+li t1, 2
+slti a7, s11, -1
+mulhsu s9, t4, s8
+sh a7, 0(s1)
+lb s3, 81(s1)
+mul t6, a4, s3
+and s8, t1, a6
+li zero, -32768
+sltu a2, s6, t4
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,102 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 32768
+li t1, 1207989654
+li t2, 927774550
+li t3, 2038594426
+li t4, -2093984497
+li t5, 32
+li t6, 0
+li a2, 33
+li a3, 622435680
+li a4, 997517819
+li a5, -1314609927
+li a6, 32768
+li a7, 1747059899
+li s2, 146329760
+li s3, -1975043478
+li s4, 497399335
+li s5, -266671470
+li s6, -1
+li s7, 379949556
+li s8, 0
+li s9, -1924133002
+li s10, 1723756116
+li s11, 802767035
+li s0, 120
+la s1, buf
+loop:
+srl a2, t2, t6
+slti s10, s7, 2047
+and a7, t6, a5
+sh a4, 128(s1)
+add s4, a7, a3
+lb t5, 0(s1)
+rem s6, s8, zero
+or s8, a5, s6
+mul t5, s9, a6
+or s8, a4, a2
+sll t5, s2, a6
+andi s10, s5, 0
+li s7, 31
+sltiu s10, a2, 1
+lhu zero, 13(s1)
+sh a4, 63(s1)
+and t2, a5, s9
+li zero, 0
+divu s9, s5, zero
+mulh t6, a6, t4
+srli s2, s4, 19
+add s7, a3, t4
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,132 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, 602878526
+li t1, 33
+li t2, 791363372
+li t3, -1118438227
+li t4, 1484533269
+li t5, 342126167
+li t6, 0
+li a2, 33
+li a3, 32
+li a4, -327065341
+li a5, -499997734
+li a6, 0
+li a7, 1334365607
+li s2, 775375262
+li s3, -1791757751
+li s4, -1164431097
+li s5, -166678900
+li s6, 262731330
+li s7, -1665053068
+li s8, -1
+li s9, 1342058618
+li s10, -555292012
+li s11, -1499475982
+li s0, 120
+la s1, buf
+loop:
+sll a3, s10, s11
+mulhu a5, s6, t1
+sh a4, 101(s1)
+xori t5, a4, 2047
+remu s7, s8, s6
+slti s10, s5, 1
+srl s2, a7, t1
+srli a7, t0, 12
+sll s6, a7, a6
+div a6, s9, t6
+srl s6, t4, s9
+slli t3, t1, 7
+lw s7, 127(s1)
+srli t4, s7, 30
+slti s9, s11, 72
+xor s5, a6, s9
+mulhu t5, s9, s11
+andi t5, t1, -2048
+divu t6, s6, a3
+sw t0, 148(s1)
+or t6, a7, a6
+andi s5, t5, 2047
+mulhsu t6, s4, s9
+div s11, s11, s2
+xor a2, t3, a3
+sb t5, 81(s1)
+slt s4, t5, s8
+slt s4, s11, t0
+lb t0, 216(s1)
+sltiu s3, s6, -1
+mulhsu s11, t0, s11
+srai t3, t5, 23
+slt s5, a3, t6
+divu t5, a6, s5
+srli t4, s6, 25
+rem t2, a7, s10
+mulhsu t5, t2, t1
+and t1, s5, s5
+rem a6, s8, t0
+sub t0, t3, s5
+lw t2, 235(s1)
+mulhu s5, a4, a5
+xori s5, zero, -2048
+sb t1, 166(s1)
+li s10, 2
+add t3, a5, a4
+sh t3, 235(s1)
+mulhsu s4, a4, s2
+remu a7, a4, a2
+div s8, a6, t1
+li s5, 1
+and a2, a4, s6
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,110 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -220736497
+li t1, 1
+li t2, -2
+li t3, -2018256626
+li t4, 32768
+li t5, 31
+li t6, 33
+li a2, 106373326
+li a3, 32768
+li a4, 84093566
+li a5, -1141563318
+li a6, -984516907
+li a7, -32768
+li s2, 2147483647
+li s3, -1627829286
+li s4, 32768
+li s5, -32768
+li s6, -135027069
+li s7, -1458003492
+li s8, -1834012925
+li s9, 31
+li s10, 31
+li s11, 1921789819
+li s0, 120
+la s1, buf
+loop:
+rem t5, s6, a5
+mulhu t3, t2, t3
+mul a3, s7, a3
+div a4, s6, a4
+slti a3, t4, 0
+or t4, zero, s7
+sw s3, 161(s1)
+add t0, t5, a2
+li zero, 31
+srli a6, t0, 12
+srl a3, s3, s6
+lw s3, 26(s1)
+srai s9, t5, 15
+div s2, t5, t0
+lbu s10, 176(s1)
+lh t2, 139(s1)
+remu s2, a4, s6
+and a4, t3, t0
+sra s6, zero, s2
+remu s10, t2, a5
+srli t3, a2, 28
+li a3, -2147483648
+srl t4, zero, a7
+lb t0, 190(s1)
+slt t2, s2, s11
+remu s11, s6, zero
+xor s6, a4, a3
+add t1, s4, a7
+xori s8, s2, -1
+lb a3, 10(s1)
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
@@ -0,0 +1,119 @@
+# random RV32IM arithmetic, loads and stores in a loop; prints every register, then the buffer
+.data
+dump: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0
+buf: .word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.word 0, 0, 0, 0, 0, 0, 0, 0
+.text
+main:
+li t0, -688054885
+li t1, 937454715
+li t2, 833633749
+li t3, 65535
+li t4, -32768
+li t5, -831575782
+li t6, -1183481146
+li a2, 54596156
+li a3, -576503189
+li a4, -1566903166
+li a5, 32
+li a6, 31
+li a7, 1907855821
+li s2, 2146448122
+li s3, 365580719
+li s4, 1090529223
+li s5, 677318602
+li s6, -170803229
+li s7, 32
+li s8, -1457037746
+li s9, -323702156
+li s10, 2147483647
+li s11, 298974518
+li s0, 1
+la s1, buf
+loop:
+divu s10, s8, t4
+sh s6, 236(s1)
+and s7, s4, t4
+and t6, s10, s8
+remu a3, s5, a2
+lhu t2, 80(s1)
+andi s9, a2, 1
+sll a6, a5, a3
+xori s2, a5, -1772
+sh a5, 201(s1)
+lb t1, 207(s1)
+mulhu s4, s7, s5
+sh a4, 75(s1)
+add zero, t2, s7
+sb t0, 107(s1)
+div a7, a4, a3
+add a6, a5, zero
+xor t0, s4, s3
+srl a2, t4, s5
+sw t5, 211(s1)
+divu a2, t0, s6
+sll a5, a4, t3
+rem s5, t2, s8
+div s11, a4, a3
+and a7, s2, s10
+sll t6, s5, t4
+and a5, a4, a2
+sra a4, zero, s9
+sw t2, 96(s1)
+li s7, 2147483647
+li s3, 0
+sw t6, 3(s1)
+sra a4, s4, s10
+sh a2, 141(s1)
+sltu t0, a2, a6
+sh a2, 85(s1)
+mulh a6, s3, s3
+li s4, 2
+sltu t5, s5, t0
+addi s0, s0, -1
+bnez s0, loop
+la s0, dump
+sw t0, 0(s0)
+sw t1, 4(s0)
+sw t2, 8(s0)
+sw t3, 12(s0)
+sw t4, 16(s0)
+sw t5, 20(s0)
+sw t6, 24(s0)
+sw a2, 28(s0)
+sw a3, 32(s0)
+sw a4, 36(s0)
+sw a5, 40(s0)
+sw a6, 44(s0)
+sw a7, 48(s0)
+sw s2, 52(s0)
+sw s3, 56(s0)
+sw s4, 60(s0)
+sw s5, 64(s0)
+sw s6, 68(s0)
+sw s7, 72(s0)
+sw s8, 76(s0)
+sw s9, 80(s0)
+sw s10, 84(s0)
+sw s11, 88(s0)
+li s2, 348
+add s2, s2, s0
+print:
+lw a1, 0(s0)
+li a0, 1
+ecall
+li a0, 11
+li a1, 10
+ecall
+addi s0, s0, 4
+bne s0, s2, print
+li a0, 10
+ecall
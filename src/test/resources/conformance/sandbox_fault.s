@@ -0,0 +1,12 @@
+# a store below the stack and outside every segment faults in the sandbox, after the output before it
+.text
+main:
+li a0, 1
+li a1, 7
+ecall
+li t0, 16
+sw t0, 0(t0)
+li a0, 1
+ecall
+li a0, 10
+ecall
@@ -0,0 +1,138 @@
+# shifts by register and immediate, arithmetic and logical, with shift amounts past 31
+.text
+main:
+li t0, -2147483648
+li t3, -16
+srli t2, t0, 31
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+srai t2, t0, 31
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+srli t2, t3, 2
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+srai t2, t3, 2
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+slli t2, t3, 28
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+slli t2, t3, 0
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t1, 1
+sll t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+srl t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sra t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t1, 31
+sll t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+srl t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sra t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t1, 32
+sll t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+srl t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sra t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t1, 33
+sll t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+srl t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sra t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t1, -1
+sll t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+srl t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+sra t2, t3, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li a0, 10
+ecall
@@ -0,0 +1,41 @@
+# upper immediates: lui fills the top 20 bits, auipc adds them to its own address
+.text
+main:
+lui t2, 1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lui t2, 524288
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+lui t2, 1048575
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+here:
+auipc t0, 0
+la t1, here
+sub t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+there:
+auipc t0, 3
+la t1, there
+sub t2, t0, t1
+mv a1, t2
+li a0, 1
+ecall
+li a0, 11
+ecall
+li a0, 10
+ecall
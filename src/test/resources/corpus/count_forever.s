@@ -0,0 +1,8 @@
+# counts up and stores forever: never repeats a state
+.text
+main:
+li t0, 0
+l:
+addi t0, t0, 1
+sw t0, -4(sp)
+j l
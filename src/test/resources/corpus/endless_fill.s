@@ -0,0 +1,16 @@
+# steps past the end of a small heap buffer until memory runs out
+.text
+main:
+# memset that never meets its end: step 4 towards an odd distance
+li a0, 9
+li a1, 64
+ecall
+mv t0, a0
+addi t2, t0, 3
+li t1, 7
+run:
+sw t1, 0(t0)
+addi t0, t0, 4
+bne t0, t2, run
+li a0, 10
+ecall
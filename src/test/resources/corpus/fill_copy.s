@@ -0,0 +1,141 @@
+# fills, copies and measures strings in bulk-friendly loops
+.data
+msg:
+.string "hello, bulk world"
+.text
+main:
+# heap buffer of 70000 bytes
+li a0, 9
+li a1, 70000
+ecall
+mv s0, a0
+# byte memset with bne end pointer, odd start
+addi t0, s0, 3
+li t1, 0x1ab
+li t2, 65001
+add t2, t2, t0
+fill:
+sb t1, 0(t0)
+addi t0, t0, 1
+bne t0, t2, fill
+# word memset counted with blt
+mv t0, s0
+li t3, 0
+li t4, 1000
+li t1, -559038737
+wfill:
+addi t3, t3, 1
+sw t1, 4(t0)
+addi t0, t0, 4
+blt t3, t4, wfill
+# byte copy, decrementing count with bnez
+addi a1, s0, 4
+li a2, 5000
+li a3, 40000
+add a3, a3, s0
+copy:
+lbu t5, 0(a1)
+sb t5, 0(a3)
+addi a1, a1, 1
+addi a3, a3, 1
+addi a2, a2, -1
+bnez a2, copy
+mv a1, t5
+li a0, 1
+ecall
+li a0, 11
+ecall
+# overlapping copy dst < src
+addi a1, s0, 10
+addi a3, s0, 7
+li a2, 3000
+ocopy:
+lb t5, 0(a1)
+addi a1, a1, 1
+sb t5, 0(a3)
+addi a3, a3, 1
+addi a2, a2, -1
+bgtz a2, ocopy
+# overlapping copy dst > src (must step)
+addi a1, s0, 100
+addi a3, s0, 101
+li a2, 50
+rcopy:
+lb t5, 0(a1)
+sb t5, 0(a3)
+addi a1, a1, 1
+addi a3, a3, 1
+addi a2, a2, -1
+bnez a2, rcopy
+# word copy with lw/sw counting down via bltu
+addi a1, s0, 0
+li a3, 50000
+add a3, a3, s0
+li a2, 0
+li a4, 300
+wcopy:
+lw t6, 0(a1)
+sw t6, 0(a3)
+addi a1, a1, 4
+addi a3, a3, 4
+addi a2, a2, 1
+bltu a2, a4, wcopy
+mv a1, t6
+li a0, 1
+ecall
+li a0, 11
+ecall
+# terminate a string, then strlen S1
+li t0, 60000
+add t0, t0, s0
+sb zero, 0(t0)
+mv a0, s0
+mv s1, s0
+slen:
+lbu t1, 0(s1)
+addi s1, s1, 1
+bnez t1, slen
+sub a1, s1, s0
+li a0, 1
+ecall
+li a0, 11
+ecall
+# strlen S2 with extra counter
+la a0, msg
+li a1, 0
+mv s2, a0
+slen2:
+lb t1, 0(s2)
+beqz t1, done2
+addi s2, s2, 1
+addi a1, a1, 1
+j slen2
+done2:
+li a0, 1
+ecall
+li a0, 11
+ecall
+la a1, msg
+li a0, 4
+ecall
+li a0, 11
+ecall
+addi a1, s0, 60
+li a0, 4
+ecall
+li a0, 11
+ecall
+# checksum a stretch of the buffer
+mv t0, s0
+li t2, 2000
+add t2, t2, t0
+li a1, 0
+sum:
+lw t1, 0(t0)
+add a1, a1, t1
+addi t0, t0, 4
+blt t0, t2, sum
+li a0, 1
+ecall
+li a0, 10
+ecall
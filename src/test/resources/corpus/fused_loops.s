@@ -0,0 +1,63 @@
+# sums, walks and calls through the pairs the closure engine fuses: slli+add+lw, lw+addi, addi+bne/blt and li+ecall
+.data
+arr:
+.word 3
+.word -7
+.word 1000
+.word 42
+.word -1
+.word 65536
+.word 9
+.word -123456
+.text
+.globl main
+main:
+la s0, arr
+li s1, 0
+li s2, 8
+li s3, 0
+sum:
+slli t0, s1, 2
+add t0, t0, s0
+lw t1, 0(t0)
+add s3, s3, t1
+addi s1, s1, 1
+blt s1, s2, sum
+mv a1, s3
+li a0, 1
+ecall
+li a0, 11
+ecall
+# xor of every word, walking a pointer
+mv t2, s0
+li s1, 0
+li s3, 0
+walk:
+lw t1, 0(t2)
+addi t2, t2, 4
+xor s3, s3, t1
+addi s1, s1, 1
+bne s1, s2, walk
+mv a1, s3
+li a0, 1
+ecall
+li a0, 11
+ecall
+# a call, then writes to zero, which are dropped
+li a1, 5
+jal ra, square
+add zero, a1, a1
+addi zero, zero, 9
+li a0, 1
+ecall
+li a0, 11
+ecall
+mv a1, zero
+li a0, 1
+ecall
+li a0, 10
+ecall
+square:
+mul a1, a1, a1
+jr ra
+.data
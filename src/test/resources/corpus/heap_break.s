@@ -0,0 +1,50 @@
+# grows the heap, uses it and the stack, then reads unmapped memory
+.data
+msg:
+.string "ok"
+.text
+main:
+li a0, 9
+li a1, 100
+ecall
+mv s0, a0
+li a0, 9
+li a1, 8192
+ecall
+mv s1, a0
+li a0, 1
+mv a1, s0
+ecall
+li a0, 11
+ecall
+li a0, 1
+mv a1, s1
+ecall
+li a0, 11
+ecall
+li t0, 12345
+sw t0, 8000(s1)
+lw a1, 8000(s1)
+li a0, 1
+ecall
+li a0, 11
+ecall
+addi sp, sp, -16
+sw t0, 0(sp)
+lw a1, 0(sp)
+li a0, 1
+ecall
+li a0, 11
+ecall
+li a0, 9
+li a1, 0
+ecall
+mv a1, a0
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t1, 0x20000000
+lw a1, 0(t1)
+li a0, 10
+ecall
@@ -0,0 +1,8 @@
+# jumps into the middle of an instruction
+.text
+main:
+la t0, main
+addi t0, t0, 6
+jr t0
+li a0, 10
+ecall
@@ -0,0 +1,8 @@
+# jumps to an address past the last instruction
+.text
+main:
+li a0, 1
+li a1, 1
+ecall
+li t0, 64
+jr t0
@@ -0,0 +1,16 @@
+# loads into x0 still read memory: the last one faults in the sandbox
+.data
+word: .word 77
+.text
+main:
+la t0, word
+lw zero, 0(t0)
+lh zero, 2(t0)
+lbu zero, 1(t0)
+mv a1, zero
+li a0, 1
+ecall
+li t0, 0
+lw zero, 0(t0)
+li a0, 10
+ecall
@@ -0,0 +1,15 @@
+# never halts, and its loop is seven instructions long, so the cycle cap falls partway through a block
+.text
+.globl main
+main:
+li t0, 0
+li t1, 0
+loop:
+addi t0, t0, 1
+slli t2, t0, 3
+add t1, t1, t2
+xor t1, t1, t0
+srli t3, t1, 2
+sub t1, t1, t3
+j loop
+.data
@@ -0,0 +1,12 @@
+# reads address 0, outside every segment
+.text
+main:
+li a0, 1
+li a1, 7
+ecall
+li t0, 0
+lw a1, 0(t0)
+li a0, 1
+ecall
+li a0, 10
+ecall
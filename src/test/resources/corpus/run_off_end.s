@@ -0,0 +1,10 @@
+# counts down, printing, then runs off the end of the text without exiting
+.text
+main:
+li t0, 300
+loop:
+mv a1, t0
+li a0, 1
+ecall
+addi t0, t0, -1
+bnez t0, loop
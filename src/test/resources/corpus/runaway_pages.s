@@ -0,0 +1,9 @@
+# writes a new page every trip until the page limit
+.text
+main:
+li t0, 0x20000000
+li t1, 4096
+loop:
+sw t1, 0(t0)
+add t0, t0, t1
+j loop
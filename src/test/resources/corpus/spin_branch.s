@@ -0,0 +1,8 @@
+# a branch that keeps jumping to itself
+.text
+main:
+li t0, 3
+w:
+bnez t0, w
+li a0, 10
+ecall
@@ -0,0 +1,12 @@
+# asks for the break and flips a stack word forever
+.text
+main:
+addi sp, sp, -16
+li t0, 0
+l:
+xori t0, t0, 1
+sw t0, 4(sp)
+li a0, 9
+li a1, 0
+ecall
+j l
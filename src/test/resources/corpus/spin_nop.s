@@ -0,0 +1,9 @@
+# adds zero forever
+.text
+.globl main
+main:
+li t0, 5
+spin:
+addi t0, t0, 0
+j spin
+.data
@@ -0,0 +1,7 @@
+# prints the same character forever
+.text
+main:
+li a0, 11
+l:
+ecall
+j l
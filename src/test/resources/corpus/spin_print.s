@@ -0,0 +1,8 @@
+# prints once, then jumps to itself
+.text
+main:
+li a0, 1
+li a1, 42
+ecall
+stop:
+j stop
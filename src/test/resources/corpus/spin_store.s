@@ -0,0 +1,10 @@
+# stores the same stack word forever
+.text
+main:
+addi sp, sp, -16
+li t1, 5
+sw t1, 0(sp)
+l:
+lw t1, 0(sp)
+sw t1, 0(sp)
+j l
@@ -0,0 +1,10 @@
+# cycles through a few register values forever
+.text
+main:
+li t0, 7
+l:
+slli t1, t0, 1
+xor t0, t0, t1
+andi t0, t0, 255
+ori t0, t0, 1
+j l
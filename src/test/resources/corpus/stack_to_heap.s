@@ -0,0 +1,40 @@
+.text
+main:
+# word copy from the stack down into the heap, then a fill from below the heap that runs into the stack
+addi sp, sp, -4096
+mv t0, sp
+li t1, 0
+li t2, 1024
+s:
+sw t1, 0(t0)
+addi t1, t1, 3
+addi t0, t0, 4
+addi t2, t2, -1
+bnez t2, s
+li a0, 9
+li a1, 4096
+ecall
+mv a3, a0
+mv a1, sp
+li a2, 1024
+c:
+lw t5, 0(a1)
+sw t5, 0(a3)
+addi a1, a1, 4
+addi a3, a3, 4
+addi a2, a2, -1
+bnez a2, c
+lw a1, -4(a3)
+li a0, 1
+ecall
+li a0, 11
+ecall
+li t1, 0x55
+li t2, 200000
+add t2, t2, a3
+g:
+sb t1, 0(a3)
+addi a3, a3, 1
+bltu a3, t2, g
+li a0, 10
+ecall
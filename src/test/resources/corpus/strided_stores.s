@@ -0,0 +1,14 @@
+# writes a new page every trip, counting trips in t2
+.text
+main:
+li t0, 0x20000000
+li t1, 4096
+li t2, 0
+li t3, 100000
+loop:
+addi t2, t2, 1
+sw t2, 0(t0)
+add t0, t0, t1
+blt t2, t3, loop
+li a0, 10
+ecall
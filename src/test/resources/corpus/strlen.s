@@ -0,0 +1,25 @@
+.text
+main:
+# strlen off the end of the heap into nothing
+li a0, 9
+li a1, 5000
+ecall
+mv s0, a0
+mv t0, a0
+li t1, 65
+li t2, 5000
+add t2, t2, t0
+f:
+sb t1, 0(t0)
+addi t0, t0, 1
+bne t0, t2, f
+mv t0, s0
+l:
+lb t1, 0(t0)
+addi t0, t0, 1
+bnez t1, l
+sub a1, t0, s0
+li a0, 1
+ecall
+li a0, 10
+ecall
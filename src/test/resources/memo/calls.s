@@ -0,0 +1,104 @@
+.text
+.globl main
+main:
+li s0, 5
+li s2, 0
+outer:
+li a0, 15
+jal fib
+mv a1, a0
+li a0, 1
+ecall
+li a0, 11
+ecall
+# reads a global that changes
+la t0, counter
+lw t1, 0(t0)
+addi t1, t1, 1
+sw t1, 0(t0)
+li a0, 3
+jal addglobal
+mv a1, a0
+li a0, 1
+ecall
+li a0, 11
+ecall
+# reads s0, which changes
+li a0, 2
+jal adds0
+mv a1, a0
+li a0, 1
+ecall
+addi s0, s0, 1
+# returns sp-derived pointer difference
+addi sp, sp, -16
+li a0, 1
+jal spthing
+sub a1, a0, sp
+li a0, 1
+ecall
+addi sp, sp, 16
+# prints inside
+li a0, 7
+jal printer
+# gcd
+li a0, 1071
+li a1, 462
+jal gcd
+mv a1, a0
+li a0, 1
+ecall
+li a0, 11
+ecall
+addi s2, s2, 1
+li t0, 4
+blt s2, t0, outer
+li a0, 10
+ecall
+fib:
+li t0, 2
+blt a0, t0, fib_base
+addi sp, sp, -12
+sw ra, 8(sp)
+sw a0, 4(sp)
+addi a0, a0, -1
+jal fib
+sw a0, 0(sp)
+lw a0, 4(sp)
+addi a0, a0, -2
+jal fib
+lw t0, 0(sp)
+add a0, a0, t0
+lw ra, 8(sp)
+addi sp, sp, 12
+jr ra
+fib_base:
+jr ra
+addglobal:
+la t0, counter
+lw t0, 0(t0)
+add a0, a0, t0
+jr ra
+adds0:
+add a0, a0, s0
+jr ra
+spthing:
+addi a0, sp, 0
+jr ra
+printer:
+mv a1, a0
+li a0, 1
+ecall
+li a0, 11
+ecall
+jr ra
+gcd:
+beqz a1, gcd_done
+rem t0, a0, a1
+mv a0, a1
+mv a1, t0
+j gcd
+gcd_done:
+jr ra
+.data
+counter: .word 0
@@ -0,0 +1,32 @@
+.text
+.globl main
+main:
+li a0, 27
+jal fib
+mv a1, a0
+li a0, 1
+ecall
+li a0, 11
+ecall
+li a0, 10
+ecall
+fib:
+li t0, 2
+blt a0, t0, fib_base
+addi sp, sp, -12
+sw ra, 8(sp)
+sw a0, 4(sp)
+addi a0, a0, -1
+jal fib
+sw a0, 0(sp)
+lw a0, 4(sp)
+addi a0, a0, -2
+jal fib
+lw t0, 0(sp)
+add a0, a0, t0
+lw ra, 8(sp)
+addi sp, sp, 12
+jr ra
+fib_base:
+jr ra
+.data
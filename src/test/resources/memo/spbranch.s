@@ -0,0 +1,27 @@
+# f's result depends on sp only through a branch, so it mustn't be memoized
+.text
+.globl main
+main:
+li s0, 0
+li a0, 0
+jal f
+add s0, s0, a0
+addi sp, sp, -16
+li a0, 0
+jal f
+add s0, s0, a0
+addi sp, sp, 16
+mv a1, s0
+li a0, 1
+ecall
+li a0, 10
+ecall
+f:
+andi t0, sp, 16
+beqz t0, f_clear
+li a0, 11
+li t0, 0
+jr ra
+f_clear:
+li a0, 10
+jr ra